@@ -0,0 +1,104 @@
+package edu.grinnell.csc207.bench;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.Hash;
+import edu.grinnell.csc207.blockchains.HashValidator;
+import edu.grinnell.csc207.blockchains.Transaction;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of hashing and mining single blocks.
+ *
+ * @author Sal & Koast
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockBench {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The number of leading zero bytes mined hashes need. */
+  @Param({"0", "1", "2"})
+  int difficulty;
+
+  /** A block to rehash. */
+  Block block;
+
+  /** The transaction for new blocks. */
+  Transaction transaction;
+
+  /** The previous hash for new blocks. */
+  Hash prevHash;
+
+  /** The validator for mining. */
+  HashValidator validator;
+
+  /** A counter that varies what we mine. */
+  int counter;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Make the block and validator.
+   */
+  @Setup
+  public void setup() {
+    transaction = new Transaction("Source", "Target", 207);
+    prevHash = new Block(0, new Transaction("", "", 0), new Hash(new byte[0]), 0).getHash();
+    block = new Block(1, transaction, prevHash, 12345);
+    validator = HashValidator.leadingZeroBytes(difficulty);
+    counter = 0;
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Rehash an existing block.
+   *
+   * @return the hash.
+   */
+  @Benchmark
+  public Hash calculateHash() {
+    return block.calculateHash(block);
+  } // calculateHash()
+
+  /**
+   * Build a block with a known nonce, which hashes it once.
+   *
+   * @return the block.
+   */
+  @Benchmark
+  public Block construct() {
+    return new Block(1, transaction, prevHash, counter++);
+  } // construct()
+
+  /**
+   * Mine a block from scratch.
+   *
+   * @return the block.
+   */
+  @Benchmark
+  public Block mine() {
+    return new Block(1, new Transaction("Source", "Target", counter++), prevHash, validator);
+  } // mine()
+} // class BlockBench
@@ -0,0 +1,199 @@
+package edu.grinnell.csc207.bench;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.Transaction;
+import edu.grinnell.csc207.main.GenerateChain;
+import edu.grinnell.csc207.util.Workload;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of operations on whole chains. The query benchmarks share one chain across threads
+ * (use -t to vary the number of threads); append and remove need a chain per thread.
+ *
+ * @author Sal & Koast
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainBench {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /** The number of distinct users in each chain. */
+  static final int USERS = 1000;
+
+  /** The seed for each chain's workload, so every run builds the same chains. */
+  static final long SEED = 207;
+
+  /**
+   * Build a chain of the given size with a trivial validator.
+   *
+   * @param size The number of blocks, including the genesis block.
+   * @return the chain.
+   */
+  static BlockChain build(int size) {
+    return GenerateChain.generate(new Workload(SEED, USERS, 1.0, 0.25, 1000), size, (h) -> true);
+  } // build(int)
+
+  // +--------+------------------------------------------------------
+  // | States |
+  // +--------+
+
+  /** A chain shared by every thread. */
+  @State(Scope.Benchmark)
+  public static class Shared {
+    /** The number of blocks in the chain. */
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int chainSize;
+
+    /** The chain. */
+    BlockChain chain;
+
+    /**
+     * Build the chain.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+      chain = build(chainSize);
+    } // setup()
+  } // class Shared
+
+  /** A chain for each thread, with a block ready to append. */
+  @State(Scope.Thread)
+  public static class Owned {
+    /** The number of blocks in the chain. */
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int chainSize;
+
+    /** The chain. */
+    BlockChain chain;
+
+    /** A block that fits on the end of the chain. */
+    Block next;
+
+    /**
+     * Build the chain and the block.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+      chain = build(chainSize);
+      next = chain.mine(new Transaction("", "newcomer", 1));
+    } // setup()
+  } // class Owned
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Append a block and remove it again.
+   *
+   * @param state The chain.
+   * @return the size of the chain after appending.
+   */
+  @Benchmark
+  public int appendRemove(Owned state) {
+    state.chain.append(state.next);
+    int size = state.chain.getSize();
+    state.chain.removeLast();
+    return size;
+  } // appendRemove(Owned)
+
+  /**
+   * Mine the next block with a trivial validator.
+   *
+   * @param state The chain.
+   * @return the block.
+   */
+  @Benchmark
+  public Block mine(Owned state) {
+    return state.chain.mine(new Transaction("user1", "user2", 1));
+  } // mine(Owned)
+
+  /**
+   * Look up a balance.
+   *
+   * @param state The chain.
+   * @return the balance.
+   */
+  @Benchmark
+  public int balance(Shared state) {
+    return state.chain.balance("user42");
+  } // balance(Shared)
+
+  /**
+   * List the users.
+   *
+   * @param state The chain.
+   * @return the number of users.
+   */
+  @Benchmark
+  public int users(Shared state) {
+    int count = 0;
+    Iterator<String> users = state.chain.users();
+    while (users.hasNext()) {
+      users.next();
+      count++;
+    } // while
+    return count;
+  } // users(Shared)
+
+  /**
+   * Check the whole chain.
+   *
+   * @param state The chain.
+   * @return whether it is correct.
+   */
+  @Benchmark
+  public boolean check(Shared state) {
+    return state.chain.isCorrect();
+  } // check(Shared)
+
+  /**
+   * Iterate over every transaction.
+   *
+   * @param state The chain.
+   * @return the total amount transferred.
+   */
+  @Benchmark
+  public long iterate(Shared state) {
+    long total = 0;
+    for (Transaction t : state.chain) {
+      total += t.getAmount();
+    } // for
+    return total;
+  } // iterate(Shared)
+
+  /**
+   * Iterate over every block.
+   *
+   * @param state The chain.
+   * @return the sum of the block numbers.
+   */
+  @Benchmark
+  public long blocks(Shared state) {
+    long total = 0;
+    Iterator<Block> blocks = state.chain.blocks();
+    while (blocks.hasNext()) {
+      total += blocks.next().getNum();
+    } // while
+    return total;
+  } // blocks(Shared)
+} // class ChainBench
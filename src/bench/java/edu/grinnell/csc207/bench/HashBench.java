@@ -0,0 +1,126 @@
+package edu.grinnell.csc207.bench;
+
+import edu.grinnell.csc207.blockchains.Hash;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the Hash value type.
+ *
+ * @author Sal & Koast
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBench {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** A SHA-256 sized hash. */
+  Hash hash;
+
+  /** A hash with the same bytes. */
+  Hash same;
+
+  /** A hash that differs in the last byte. */
+  Hash different;
+
+  /** The hash, in hex. */
+  String hex;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Make the hashes.
+   */
+  @Setup
+  public void setup() {
+    byte[] bytes = new byte[32];
+    new Random(207).nextBytes(bytes);
+    hash = new Hash(bytes);
+    same = new Hash(bytes);
+    bytes[31]++;
+    different = new Hash(bytes);
+    hex = hash.toString();
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Compute a hash code.
+   *
+   * @return the hash code.
+   */
+  @Benchmark
+  public int hashCodeOf() {
+    return hash.hashCode();
+  } // hashCodeOf()
+
+  /**
+   * Compare equal hashes.
+   *
+   * @return whether they are equal.
+   */
+  @Benchmark
+  public boolean equalsSame() {
+    return hash.equals(same);
+  } // equalsSame()
+
+  /**
+   * Compare different hashes.
+   *
+   * @return whether they are equal.
+   */
+  @Benchmark
+  public boolean equalsDifferent() {
+    return hash.equals(different);
+  } // equalsDifferent()
+
+  /**
+   * Convert to hex.
+   *
+   * @return the hex string.
+   */
+  @Benchmark
+  public String toHex() {
+    return hash.toString();
+  } // toHex()
+
+  /**
+   * Order different hashes.
+   *
+   * @return the comparison.
+   */
+  @Benchmark
+  public int compare() {
+    return hash.compareTo(different);
+  } // compare()
+
+  /**
+   * Parse hex.
+   *
+   * @return the hash.
+   */
+  @Benchmark
+  public Hash fromHex() {
+    return Hash.parse(hex);
+  } // fromHex()
+} // class HashBench
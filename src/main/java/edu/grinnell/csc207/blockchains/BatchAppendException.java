@@ -0,0 +1,64 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * Thrown when a batch of blocks cannot be appended to a chain. None of the batch is appended.
+ *
+ * @author Sal & Koast
+ */
+public class BatchAppendException extends IllegalArgumentException {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The version of the serialized form. */
+  private static final long serialVersionUID = 1L;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The position in the batch of the first bad block. */
+  private final int index;
+
+  /** The first bad block. */
+  private final transient Block block;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an exception for a bad block.
+   *
+   * @param position The position in the batch of the block.
+   * @param blk The block.
+   * @param reason Why the block cannot be appended.
+   */
+  public BatchAppendException(int position, Block blk, String reason) {
+    super("Block " + position + " of the batch (number " + blk.getNum() + "): " + reason);
+    this.index = position;
+    this.block = blk;
+  } // BatchAppendException(int, Block, String)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the position in the batch of the first bad block.
+   *
+   * @return the position, counting from 0.
+   */
+  public int getIndex() {
+    return this.index;
+  } // getIndex()
+
+  /**
+   * Get the first bad block.
+   *
+   * @return the block.
+   */
+  public Block getBlock() {
+    return this.block;
+  } // getBlock()
+} // class BatchAppendException
@@ -1,17 +1,62 @@
 package edu.grinnell.csc207.blockchains;
 
-import java.nio.ByteBuffer;
+import edu.grinnell.csc207.metrics.MineEvent;
+import edu.grinnell.csc207.metrics.MiningProgressEvent;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /** Blocks to be stored in blockchains. */
 public class Block {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** Each thread's hasher. */
+  private static final ThreadLocal<Hasher> HASHER = ThreadLocal.withInitial(Hasher::new);
+
+  /** Writes big-endian ints into byte arrays. */
+  private static final VarHandle INTS =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+  /** Writes big-endian longs into byte arrays. */
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  // +---------------+-----------------------------------------------
+  // | Local classes |
+  // +---------------+
+
+  /** What each thread needs to hash blocks without allocating. */
+  static final class Hasher {
+    /** The digest, which is always reset between hashes. */
+    final MessageDigest md;
+
+    /** Room for a number, a nonce, or a digest. */
+    final byte[] scratch = new byte[Hash.SIZE];
+
+    /**
+     * Set up a hasher.
+     */
+    Hasher() {
+      try {
+        this.md = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      } // try/catch
+    } // Hasher()
+  } // class Hasher
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
   /** Block number. */
   int number;
 
-  /** The transaction for the block. */
+  /** The transaction for the block, or null once the block has been pruned. */
   Transaction transactionF;
 
   /** Current hash of the block. */
@@ -32,6 +77,9 @@ public class Block {
   /** Next block in the chain. */
   Block nextBlock;
 
+  /** An earlier ancestor, used to find ancestors in logarithmic time. */
+  Block skip;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -80,11 +128,47 @@ public class Block {
    * @param check HashValidator
    */
   private void mine(HashValidator check) {
+    MineEvent event = new MineEvent();
+    event.begin();
     while (!check.isValid(calculateHash(this))) {
       this.nonceF++; // Increment nonce until a valid hash is found
+      MiningProgressEvent.sample(this.number, this.nonceF);
     } // while
+    event.finish(this.number, this.nonceF + 1, this.nonceF);
   } // mine(HashValidator)
 
+  /**
+   * Find the number of the ancestor that a block's skip pointer refers to. Like the skip lists
+   * in Bitcoin's block index, these are chosen so that any ancestor is reachable in O(log n)
+   * steps.
+   *
+   * @param num The number of the block.
+   * @return the number of the block's skip ancestor.
+   */
+  static int skipNum(int num) {
+    if (num < 2) {
+      return 0;
+    } // if
+    if ((num & 1) == 0) {
+      return num & (num - 1);
+    } // if
+    int n = num - 1;
+    n &= n - 1;
+    n &= n - 1;
+    return n + 1;
+  } // skipNum(int)
+
+  /**
+   * Link this block to the block before it, setting up its skip pointer. This does not change
+   * the previous block's next block, so it can also be used for blocks on side branches.
+   *
+   * @param parent The previous block (or null).
+   */
+  void link(Block parent) {
+    this.prevBlock = parent;
+    this.skip = (parent == null) ? null : parent.ancestorAt(skipNum(this.number));
+  } // link(Block)
+
   /** Compute the hash of the block given all the other info already stored in the block. */
   public void computeHash() {
     this.curHash = calculateHash(this); // Recompute the hash
@@ -97,20 +181,21 @@ public class Block {
    * @return Hash
    */
   public Hash calculateHash(Block block) {
+    Hasher hasher = HASHER.get();
+    MessageDigest md = hasher.md;
+    byte[] scratch = hasher.scratch;
+    INTS.set(scratch, 0, block.getNum());
+    md.update(scratch, 0, Integer.BYTES);
+    md.update(block.getTransaction().encoded());
+    block.getPrevHash().writeTo(md);
+    LONGS.set(scratch, 0, block.getNonce());
+    md.update(scratch, 0, Long.BYTES);
     try {
-      MessageDigest md = MessageDigest.getInstance("SHA-256");
-      md.update(ByteBuffer.allocate(4).putInt(block.getNum()).array());
-      md.update(block.getTransaction().getSource().getBytes());
-      md.update(block.getTransaction().getTarget().getBytes());
-      md.update(ByteBuffer.allocate(4).putInt(block.getTransaction().getAmount()).array());
-      md.update(block.getPrevHash().getBytes());
-      md.update(ByteBuffer.allocate(Long.BYTES).putLong(block.getNonce()).array());
-      byte[] hash = md.digest();
-      return new Hash(hash); // Return the computed hash as a new Hash object
-    } catch (Exception e) {
-      // Handle the exception (optional logging)
+      md.digest(scratch, 0, scratch.length);
+    } catch (DigestException e) {
+      throw new IllegalStateException(e);
     } // try/catch
-    return null;
+    return new Hash(scratch);
   } // calculateHash(Block)
 
   // +---------+-----------------------------------------------------
@@ -143,7 +228,7 @@ public class Block {
     if (this.prevBlock != null && prevBlk != null) {
       this.prevBlock.nextBlock = null;
     } // if
-    this.prevBlock = prevBlk;
+    link(prevBlk);
     if (this.prevBlock != null) {
       prevBlk.nextBlock = this;
     } // if
@@ -160,10 +245,71 @@ public class Block {
     } // if
     this.nextBlock = nextBlk;
     if (this.nextBlock != null) {
-      nextBlk.prevBlock = this;
+      nextBlk.link(this);
     } // if
   } // setNextBlock(Block)
 
+  /**
+   * Find the ancestor of this block with a given number, following skip pointers where they
+   * help. This takes O(log n) steps.
+   *
+   * @param height The number of the ancestor.
+   * @return the ancestor, this block if height is its own number, or null if there is no such
+   *     ancestor.
+   */
+  public Block ancestorAt(int height) {
+    if (height > this.number || height < 0) {
+      return null;
+    } // if
+    Block walk = this;
+    int walkNum = this.number;
+    while (walk != null && walkNum > height) {
+      int skipTo = skipNum(walkNum);
+      int skipPrev = skipNum(walkNum - 1);
+      if (walk.skip != null
+          && (skipTo == height
+              || (skipTo > height && !(skipPrev < skipTo - 2 && skipPrev >= height)))) {
+        walk = walk.skip;
+        walkNum = skipTo;
+      } else {
+        walk = walk.prevBlock;
+        walkNum--;
+      } // if/else
+    } // while
+    return walk;
+  } // ancestorAt(int)
+
+  /**
+   * Find the most recent block that two blocks both descend from. The blocks at or below that
+   * ancestor are shared and those above it are not, so we binary search for its height, which
+   * takes O(log n) calls to ancestorAt and so O(log^2 n) steps however deep the fork is.
+   *
+   * @param a One block.
+   * @param b Another block.
+   * @return the common ancestor, or null if they do not share one that is still linked to them.
+   */
+  public static Block commonAncestor(Block a, Block b) {
+    int height = Math.min(a.number, b.number);
+    Block result = a.ancestorAt(height);
+    if (result == b.ancestorAt(height)) {
+      return result;
+    } // if
+    result = null;
+    int lo = 0;
+    int hi = height - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      Block candidate = a.ancestorAt(mid);
+      if (candidate == b.ancestorAt(mid)) {
+        result = candidate;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      } // if/else
+    } // while
+    return result;
+  } // commonAncestor(Block, Block)
+
   /**
    * Get the number of the block.
    *
@@ -176,12 +322,29 @@ public class Block {
   /**
    * Get the transaction stored in this block.
    *
-   * @return the transaction.
+   * @return the transaction, or null if the block has been pruned.
    */
   public Transaction getTransaction() {
     return this.transactionF;
   } // getTransaction()
 
+  /**
+   * Drop the transaction, keeping only the header. The hash stays as it was, so the block can
+   * still be linked and validated.
+   */
+  void prune() {
+    this.transactionF = null;
+  } // prune()
+
+  /**
+   * Determine if the block has been pruned.
+   *
+   * @return true if the transaction has been dropped.
+   */
+  public boolean isPruned() {
+    return this.transactionF == null;
+  } // isPruned()
+
   /**
    * Get the nonce of this block.
    *
@@ -217,17 +380,23 @@ public class Block {
   public String toString() {
     StringBuilder output = new StringBuilder();
     output.append("Block " + this.number + " (Transaction: [");
-    if (this.transactionF.getSource().equals("")) {
+    if (this.transactionF == null) {
+      output.append("Pruned]");
+    } else if (this.transactionF.getSource().equals("")) {
       output.append("Deposit,");
     } else {
       output.append("Source: " + this.transactionF.getSource());
     } // if/else
+    if (this.transactionF != null) {
+      output.append(
+          ", Target: "
+              + this.transactionF.getTarget()
+              + ", Amount: "
+              + this.transactionF.getAmount()
+              + "]");
+    } // if
     output.append(
-        ", Target: "
-            + this.transactionF.getTarget()
-            + ", Amount: "
-            + this.transactionF.getAmount()
-            + "], Nonce: "
+        ", Nonce: "
             + this.nonceF
             + ", prevHash: "
             + this.previousHash
@@ -0,0 +1,251 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of decoded archived blocks, bounded by the number of blocks it holds. Blocks are loaded
+ * a chunk at a time, since that is how the archive reads them.
+ *
+ * <p>The cache is a segmented LRU. A chunk loaded on a miss goes into the probation segment. A
+ * chunk hit while on probation moves to the protected segment. Chunks are evicted from the
+ * probation segment, so a burst of lookups that each touch a chunk once cannot push out chunks
+ * that are used again and again. Sequential scans read the archive directly and never pass
+ * through the cache. The most recent blocks stay in memory in the chain itself, so they are
+ * never evicted.
+ *
+ * <p>Like BlockChain, the cache is not safe for use by several threads at once.
+ *
+ * @author Sal & Koast
+ */
+public class BlockCache {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The share of the capacity given to the protected segment, in whole chunks. */
+  static final double PROTECTED_SHARE = 0.8;
+
+  /** The smallest capacity, which leaves room for one chunk in each segment. */
+  public static final int MIN_BLOCKS = 2 * SegmentArchive.CHUNK;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** Where misses are loaded from. */
+  private final SegmentArchive archive;
+
+  /** The most blocks the cache holds. */
+  private final int capacity;
+
+  /** The most blocks the protected segment holds. */
+  private final int protectedCapacity;
+
+  /** Chunks seen once, by first block number, least recently used first. */
+  private final LinkedHashMap<Integer, Block[]> probation;
+
+  /** Chunks seen more than once, by first block number, least recently used first. */
+  private final LinkedHashMap<Integer, Block[]> protect;
+
+  /** The number of blocks on probation. */
+  private int probationBlocks;
+
+  /** The number of blocks protected. */
+  private int protectedBlocks;
+
+  /** The number of lookups the cache answered. */
+  private long hits;
+
+  /** The number of lookups that went to the archive. */
+  private long misses;
+
+  /** The number of chunks evicted. */
+  private long evictions;
+
+  /** The total time spent loading chunks, in nanoseconds. */
+  private long loadNanos;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an empty cache over an archive.
+   *
+   * @param segments The archive.
+   * @param blocks The most blocks to hold.
+   * @throws IllegalArgumentException if blocks is less than MIN_BLOCKS.
+   */
+  public BlockCache(SegmentArchive segments, int blocks) {
+    if (blocks < MIN_BLOCKS) {
+      throw new IllegalArgumentException(
+          "Capacity must be at least " + MIN_BLOCKS + " blocks: " + blocks);
+    } // if
+    this.archive = segments;
+    this.capacity = blocks;
+    // Whole chunks move between the segments, so a protected segment smaller than a chunk would
+    // demote every chunk it gains, and probation needs room for the chunk being loaded.
+    int share = (int) (blocks * PROTECTED_SHARE);
+    this.protectedCapacity =
+        Math.min(share - share % SegmentArchive.CHUNK, blocks - SegmentArchive.CHUNK);
+    this.probation = new LinkedHashMap<Integer, Block[]>(16, 0.75f, true);
+    this.protect = new LinkedHashMap<Integer, Block[]>(16, 0.75f, true);
+  } // BlockCache(SegmentArchive, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Move the least recently used protected chunks back to probation until the protected
+   * segment fits.
+   */
+  private void demote() {
+    Iterator<Map.Entry<Integer, Block[]>> oldest = protect.entrySet().iterator();
+    while (protectedBlocks > protectedCapacity && oldest.hasNext()) {
+      Map.Entry<Integer, Block[]> entry = oldest.next();
+      oldest.remove();
+      protectedBlocks -= entry.getValue().length;
+      probation.put(entry.getKey(), entry.getValue());
+      probationBlocks += entry.getValue().length;
+    } // while
+  } // demote()
+
+  /**
+   * Evict the least recently used probation chunks until the cache fits, keeping the chunk
+   * just loaded.
+   *
+   * @param keep The first block number of the chunk just loaded.
+   */
+  private void evict(int keep) {
+    Iterator<Map.Entry<Integer, Block[]>> oldest = probation.entrySet().iterator();
+    while (probationBlocks + protectedBlocks > capacity && oldest.hasNext()) {
+      Map.Entry<Integer, Block[]> entry = oldest.next();
+      if (entry.getKey() == keep) {
+        continue;
+      } // if
+      oldest.remove();
+      probationBlocks -= entry.getValue().length;
+      evictions++;
+    } // while
+  } // evict(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get an archived block, loading its chunk if need be.
+   *
+   * @param height The number of the block.
+   * @return the block.
+   * @throws IOException if the archive cannot be read.
+   * @throws IndexOutOfBoundsException if the block has not been archived.
+   */
+  public Block get(int height) throws IOException {
+    if (height < 0 || height >= archive.size()) {
+      throw new IndexOutOfBoundsException("Block " + height + " is not archived");
+    } // if
+    Integer start = archive.chunkStart(height);
+    Block[] chunk = protect.get(start);
+    if (chunk == null) {
+      chunk = probation.remove(start);
+      if (chunk != null) {
+        probationBlocks -= chunk.length;
+        protect.put(start, chunk);
+        protectedBlocks += chunk.length;
+        demote();
+      } // if
+    } // if
+    if (chunk != null) {
+      hits++;
+      return chunk[height - start];
+    } // if
+
+    misses++;
+    long before = System.nanoTime();
+    chunk = archive.chunkFor(height);
+    loadNanos += System.nanoTime() - before;
+    probation.put(start, chunk);
+    probationBlocks += chunk.length;
+    evict(start);
+    return chunk[height - start];
+  } // get(int)
+
+  /**
+   * Get the number of blocks the cache holds.
+   *
+   * @return the number of blocks.
+   */
+  public int size() {
+    return probationBlocks + protectedBlocks;
+  } // size()
+
+  /**
+   * Get the most blocks the cache holds.
+   *
+   * @return the capacity.
+   */
+  public int capacity() {
+    return capacity;
+  } // capacity()
+
+  /**
+   * Get the number of lookups the cache answered.
+   *
+   * @return the number of hits.
+   */
+  public long hits() {
+    return hits;
+  } // hits()
+
+  /**
+   * Get the number of lookups that went to the archive.
+   *
+   * @return the number of misses.
+   */
+  public long misses() {
+    return misses;
+  } // misses()
+
+  /**
+   * Get the share of lookups the cache answered.
+   *
+   * @return the hit rate, between 0 and 1, or 0 before any lookups.
+   */
+  public double hitRate() {
+    long total = hits + misses;
+    return (total == 0) ? 0 : (double) hits / total;
+  } // hitRate()
+
+  /**
+   * Get the number of chunks evicted.
+   *
+   * @return the number of evictions.
+   */
+  public long evictions() {
+    return evictions;
+  } // evictions()
+
+  /**
+   * Get the average time to load a chunk from the archive.
+   *
+   * @return the time in microseconds, or 0 before any misses.
+   */
+  public double meanLoadMicros() {
+    return (misses == 0) ? 0 : loadNanos / 1000.0 / misses;
+  } // meanLoadMicros()
+
+  /**
+   * Summarize the cache.
+   *
+   * @return a one-line summary.
+   */
+  public String toString() {
+    return String.format("%d/%d blocks, %d hits, %d misses (%.1f%%), %d evictions, %.1f us/load",
+        size(), capacity, hits, misses, 100 * hitRate(), evictions, meanLoadMicros());
+  } // toString()
+} // class BlockCache
@@ -1,6 +1,17 @@
 package edu.grinnell.csc207.blockchains;
 
+import edu.grinnell.csc207.events.BlockEventRing;
+import edu.grinnell.csc207.events.Subscription;
+import edu.grinnell.csc207.metrics.BlockEvent;
+import edu.grinnell.csc207.metrics.ChainMetrics;
+import edu.grinnell.csc207.metrics.MineEvent;
+import edu.grinnell.csc207.metrics.MiningProgressEvent;
+import edu.grinnell.csc207.metrics.QueryEvent;
+import edu.grinnell.csc207.util.ScalableBloomFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * A full blockchain.
@@ -8,6 +19,30 @@ import java.util.*;
  * @author Sal & Koast
  */
 public class BlockChain implements Iterable<Transaction> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of changes kept for subscribers that fall behind.
+   */
+  public static final int EVENT_CAPACITY = 1 << 16;
+
+  /**
+   * The default chance that mightContain says yes for a user who never appeared.
+   */
+  public static final double USER_FILTER_RATE = 0.01;
+
+  /**
+   * The most blocks archive seals into one segment.
+   */
+  public static final int SEGMENT_BLOCKS = 1 << 16;
+
+  /**
+   * The default number of archived blocks kept decoded in memory.
+   */
+  public static final int CACHE_BLOCKS = 1 << 14;
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -28,6 +63,59 @@ public class BlockChain implements Iterable<Transaction> {
    * Validator for hashing.
    */
   private HashValidator validator;
+  /**
+   * Running balances of everyone in the chain.
+   */
+  private Ledger ledger;
+  /**
+   * Whether to reject transfers whose source lacks the funds.
+   */
+  private boolean enforceFunds;
+  /**
+   * Every block in the chain, by hash.
+   */
+  private HashMap<Hash, Block> index;
+  /**
+   * The first block whose transaction has not been pruned.
+   */
+  private Block unpruned;
+  /**
+   * How many of the most recent blocks keep their transactions, or -1 to keep them all.
+   */
+  private int pruneDepth;
+  /**
+   * Where to record telemetry, or null to record none.
+   */
+  private ChainMetrics metrics;
+  /**
+   * Where to publish changes to the chain, or null until someone subscribes.
+   */
+  private BlockEventRing events;
+  /**
+   * Every source and target that has appeared, for ruling out unknown users quickly.
+   */
+  private ScalableBloomFilter seen;
+  /**
+   * Where blocks below front live once they are sealed, or null to keep every block in memory.
+   */
+  private SegmentArchive archive;
+  /**
+   * Archived blocks that were looked up recently, or null if there is no archive.
+   */
+  private BlockCache cache;
+  /**
+   * The indexes behind query, or null until the first query.
+   */
+  private QueryIndex queries;
+  /**
+   * How many of the most recent blocks stay in memory, or -1 to archive only when asked.
+   */
+  private int archiveDepth;
+  /**
+   * The number of open BlockLogs, which write blocks after we append them, so nothing may be
+   * pruned while there are any.
+   */
+  private int logs;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -40,17 +128,67 @@ public class BlockChain implements Iterable<Transaction> {
    * @param check The HashValidator used to validate hashes.
    */
   public BlockChain(HashValidator check) {
+    this(check, new Block(0, genesisTransaction(), new Hash(new byte[] {}), check));
+  } // BlockChain(HashValidator)
+
+  /**
+   * Create a BlockChain from a genesis block that was mined before, checking the block rather
+   * than mining it again. This takes one hash instead of the millions that mining can take.
+   *
+   * @param check The HashValidator used to validate hashes.
+   * @param genesisNonce The nonce of the genesis block, as given by getGenesisNonce.
+   * @throws IllegalArgumentException if the nonce does not give a valid genesis block.
+   */
+  public BlockChain(HashValidator check, long genesisNonce) {
+    this(check, new Block(0, genesisTransaction(), new Hash(new byte[] {}), genesisNonce));
+    if (!check.isValid(front.getHash())) {
+      throw new IllegalArgumentException("Nonce " + genesisNonce
+          + " does not give a valid genesis block");
+    } // if
+  } // BlockChain(HashValidator, long)
+
+  /**
+   * Create a BlockChain from its genesis block.
+   *
+   * @param check The HashValidator used to validate hashes.
+   * @param genesis The genesis block.
+   */
+  private BlockChain(HashValidator check, Block genesis) {
     this.validator = check;
-    Block genesis = new Block(0, new Transaction("", "", 0), new Hash(new byte[] {}), check);
     this.front = genesis;
     this.rear = genesis;
     this.size = 1;
-  } // BlockChain(HashValidator)
+    this.ledger = new Ledger();
+    this.ledger.apply(genesis.getTransaction());
+    this.enforceFunds = false;
+    this.index = new HashMap<Hash, Block>();
+    this.index.put(genesis.getHash(), genesis);
+    this.unpruned = genesis;
+    this.pruneDepth = -1;
+    this.metrics = null;
+    this.events = null;
+    this.seen = new ScalableBloomFilter(USER_FILTER_RATE, 1024);
+    this.seen.add(genesis.getTransaction().getTarget());
+    this.archive = null;
+    this.cache = null;
+    this.queries = null;
+    this.archiveDepth = -1;
+    this.logs = 0;
+  } // BlockChain(HashValidator, Block)
 
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
 
+  /**
+   * Make the transaction of a genesis block.
+   *
+   * @return an empty deposit.
+   */
+  private static Transaction genesisTransaction() {
+    return new Transaction("", "", 0);
+  } // genesisTransaction()
+
   /**
    * Helper method to validate that a block can be added to the chain.
    *
@@ -63,12 +201,143 @@ public class BlockChain implements Iterable<Transaction> {
       throw new IllegalArgumentException("Block hash is invalid.");
     } // if
 
+    // Check if the number follows the end of the chain
+    if (blk.getNum() != rear.getNum() + 1) {
+      throw new IllegalArgumentException("Block's number is incorrect.");
+    } // if
+
     // Check if the previous hash is correct
     if (!blk.getPrevHash().equals(rear.getHash())) {
       throw new IllegalArgumentException("Block's previous hash is incorrect.");
     } // if
+
+    // Check that the source can pay
+    checkFunds(blk.getTransaction());
   } // validateBlock
 
+  /**
+   * Helper method to check that the source of a transaction can pay for it, if we are
+   * enforcing funds.
+   *
+   * @param t The transaction to check.
+   * @throws IllegalArgumentException if the source lacks the funds.
+   */
+  private void checkFunds(Transaction t) {
+    if (!enforceFunds) {
+      return;
+    } // if
+    if (t.getAmount() < 0) {
+      throw new IllegalArgumentException("Transaction amount is negative.");
+    } // if
+    if (!ledger.canAfford(t)) {
+      throw new IllegalArgumentException(
+          "Insufficient funds: " + t.getSource() + " has " + ledger.balance(t.getSource())
+          + " but needs " + t.getAmount() + ".");
+    } // if
+  } // checkFunds(Transaction)
+
+  /**
+   * Helper method to fetch an archived block.
+   *
+   * @param height The number of the block, which must be below front.
+   * @return a copy of the block.
+   * @throws UncheckedIOException if the archive cannot be read.
+   */
+  private Block archived(int height) {
+    try {
+      return cache.get(height);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } // try/catch
+  } // archived(int)
+
+  /**
+   * Helper method to validate that a run of blocks can be added to the chain.
+   *
+   * @param blocks The blocks, in order.
+   * @throws BatchAppendException for the first block that is invalid.
+   */
+  private void validateAll(List<Block> blocks) {
+    Block[] run = blocks.toArray(new Block[0]);
+    int badHash = IntStream.range(0, run.length).parallel()
+        .filter((i) -> run[i].isPruned()
+            || !run[i].calculateHash(run[i]).equals(run[i].getHash())
+            || !validator.isValid(run[i].getHash()))
+        .min().orElse(run.length);
+
+    HashMap<String, Integer> balances = new HashMap<String, Integer>();
+    Block prev = rear;
+    for (int i = 0; i < run.length; i++) {
+      Block blk = run[i];
+      if (i == badHash) {
+        throw new BatchAppendException(i, blk,
+            blk.isPruned() ? "Block has been pruned." : "Block hash is invalid.");
+      } // if
+      if (blk.getNum() != prev.getNum() + 1) {
+        throw new BatchAppendException(i, blk, "Block's number is incorrect.");
+      } // if
+      if (!blk.getPrevHash().equals(prev.getHash())) {
+        throw new BatchAppendException(i, blk, "Block's previous hash is incorrect.");
+      } // if
+      if (enforceFunds) {
+        Transaction t = blk.getTransaction();
+        if (t.getAmount() < 0) {
+          throw new BatchAppendException(i, blk, "Transaction amount is negative.");
+        } // if
+        String source = t.getSource();
+        if (!source.isEmpty()) {
+          int have = balances.getOrDefault(source, ledger.balance(source));
+          if (have < t.getAmount()) {
+            throw new BatchAppendException(i, blk, "Insufficient funds: " + source + " has "
+                + have + " but needs " + t.getAmount() + ".");
+          } // if
+          balances.put(source, have - t.getAmount());
+        } // if
+        String target = t.getTarget();
+        balances.put(target, balances.getOrDefault(target, ledger.balance(target))
+            + t.getAmount());
+      } // if
+      prev = blk;
+    } // for
+  } // validateAll(List<Block>)
+
+  /**
+   * Helper method to get the indexes behind query, building them the first time.
+   *
+   * @return the indexes.
+   */
+  private QueryIndex queryIndex() {
+    if (queries == null) {
+      queries = new QueryIndex();
+      Iterator<Block> blocks = blocks();
+      while (blocks.hasNext()) {
+        Block blk = blocks.next();
+        if (!blk.isPruned()) {
+          queries.add(blk.getNum(), blk.getTransaction());
+        } // if
+      } // while
+    } // if
+    return queries;
+  } // queryIndex()
+
+  /**
+   * Helper method to collect the blocks in a range of heights that match a query.
+   *
+   * @param from The lowest height.
+   * @param to The highest height.
+   * @param q The query.
+   * @param result Where to put the matching blocks.
+   */
+  private void scan(int from, int to, TransactionQuery q, List<Block> result) {
+    Block blk = null;
+    for (int height = from; height <= to; height++) {
+      blk = (blk != null && blk.getNum() >= front.getNum()) ? blk.nextBlock : blockAt(height);
+      if (q.matches(blk)) {
+        result.add(blk);
+      } // if
+    } // for
+  } // scan(int, int, TransactionQuery, List<Block>)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -78,14 +347,24 @@ public class BlockChain implements Iterable<Transaction> {
    *
    * @param t The transaction that goes in the block.
    * @return a new block with correct number, hashes, and such.
+   * @throws IllegalArgumentException if we are enforcing funds and the source lacks them.
    */
   public Block mine(Transaction t) {
+    checkFunds(t);
+    MineEvent event = new MineEvent();
+    event.begin();
+    long start = (metrics == null) ? 0 : System.nanoTime();
     long nonce = 0;
     Block newBlock;
     do {
       newBlock = new Block(size, t, rear.getHash(), nonce++);
+      MiningProgressEvent.sample(size, nonce);
     } while (!validator.isValid(newBlock.getHash()));
 
+    if (metrics != null) {
+      metrics.recordMine(nonce, System.nanoTime() - start);
+    } // if
+    event.finish(size, nonce, newBlock.getNonce());
     return newBlock;
   } // mine(t)
 
@@ -103,32 +382,189 @@ public class BlockChain implements Iterable<Transaction> {
    *
    * @param blk The block to add to the end of the chain.
    * @throws IllegalArgumentException if the block is invalid.
+   * @throws UncheckedIOException if old blocks cannot be archived, in which case the block has
+   *     still been appended.
    */
   public void append(Block blk) {
-    validateBlock(blk);
+    BlockEvent event = new BlockEvent();
+    event.begin();
+    long start = (metrics == null) ? 0 : System.nanoTime();
+    try {
+      validateBlock(blk);
+    } catch (IllegalArgumentException e) {
+      if (metrics != null) {
+        metrics.recordFailure();
+      } // if
+      event.finish(blk.getNum(), false, false);
+      throw e;
+    } // try/catch
+    attach(blk);
+    if (metrics != null) {
+      metrics.recordAppend(System.nanoTime() - start);
+    } // if
+    event.finish(blk.getNum(), false, true);
+    archiveOld();
+  } //append(blk)
+
+  /**
+   * Add a run of consecutive blocks to the end of the chain, all or nothing. Every hash is
+   * recomputed and validated in parallel. Then the links and funds are checked in order, with
+   * the balances the earlier blocks in the run would leave. Only when every block passes is the
+   * run appended, in a single pass. Old blocks are archived once the whole run is in.
+   *
+   * @param blocks The blocks, in order.
+   * @throws BatchAppendException if a block is invalid, giving the first bad block. The chain is
+   *     unchanged.
+   * @throws UncheckedIOException if old blocks cannot be archived, in which case the whole run
+   *     has still been appended.
+   */
+  public void appendAll(List<Block> blocks) {
+    if (blocks.isEmpty()) {
+      return;
+    } // if
+    BlockEvent event = new BlockEvent();
+    event.begin();
+    long start = (metrics == null) ? 0 : System.nanoTime();
+    try {
+      validateAll(blocks);
+    } catch (BatchAppendException e) {
+      if (metrics != null) {
+        metrics.recordFailure();
+      } // if
+      event.finish(e.getBlock().getNum(), false, false);
+      throw e;
+    } // try/catch
+    for (Block blk : blocks) {
+      attach(blk);
+    } // for
+    if (metrics != null) {
+      long each = (System.nanoTime() - start) / blocks.size();
+      for (int i = 0; i < blocks.size(); i++) {
+        metrics.recordAppend(each);
+      } // for
+    } // if
+    event.finish(rear.getNum(), false, true);
+    archiveOld();
+  } // appendAll(List<Block>)
+
+  /**
+   * Add the blocks from an iterator to the end of the chain, all or nothing.
+   *
+   * @param blocks The blocks, in order.
+   * @throws BatchAppendException if a block is invalid, giving the first bad block. The chain is
+   *     unchanged.
+   * @see #appendAll(List)
+   */
+  public void appendAll(Iterator<Block> blocks) {
+    List<Block> run = new ArrayList<Block>();
+    blocks.forEachRemaining(run::add);
+    appendAll(run);
+  } // appendAll(Iterator<Block>)
+
+  /**
+   * Helper method to link a validated block onto the end of the chain and update everything
+   * derived from it.
+   *
+   * @param blk The block, which must fit the end of the chain.
+   */
+  private void attach(Block blk) {
     rear.nextBlock = blk; // Link the current last block to the new block
-    blk.prevBlock = rear; // Link the new block back to the current last block
+    blk.link(rear); // Link the new block back to the current last block
     rear = blk; // Update the rear to the new block
     size++;
-  } //append(blk)
+    ledger.apply(blk.getTransaction());
+    if (queries != null) {
+      queries.add(blk.getNum(), blk.getTransaction());
+    } // if
+    index.put(blk.getHash(), blk);
+    if (!blk.getTransaction().getSource().isEmpty()) {
+      seen.add(blk.getTransaction().getSource());
+    } // if
+    seen.add(blk.getTransaction().getTarget());
+    if (unpruned == null) {
+      unpruned = blk;
+    } // if
+    if (events != null) {
+      events.publish(BlockEventRing.Kind.APPENDED, blk);
+    } // if
+    if (pruneDepth >= 0) {
+      prune(size - pruneDepth);
+    } // if
+  } // attach(Block)
+
+  /**
+   * Helper method to archive old blocks once a whole segment of them is deeper than the archive
+   * depth.
+   *
+   * @throws UncheckedIOException if the archive cannot be written.
+   */
+  private void archiveOld() {
+    if (archiveDepth >= 0 && unpruned == front
+        && size - front.getNum() >= archiveDepth + SEGMENT_BLOCKS) {
+      archive(size - archiveDepth);
+    } // if
+  } // archiveOld()
+
+  /**
+   * Note that a BlockLog has started recording the chain.
+   *
+   * @throws IllegalStateException if the chain prunes blocks as they are appended.
+   */
+  void openLog() {
+    if (pruneDepth >= 0) {
+      throw new IllegalStateException("Cannot log a chain that prunes as it appends");
+    } // if
+    logs++;
+  } // openLog()
+
+  /**
+   * Note that a BlockLog has stopped recording the chain.
+   */
+  void closeLog() {
+    logs--;
+  } // closeLog()
 
   /**
    * Attempt to remove the last block from the chain.
    *
    * @return false if the chain has only one block (in which case it's not removed) or true
    *     otherwise (in which case the last block is removed).
+   * @throws IllegalStateException if the last block has been pruned, since we can no longer
+   *     undo its transaction, or if it is the only block left in memory above the archive.
    */
   public boolean removeLast() {
     if (size == 1) {
       return false;
     } // if
+    if (rear.isPruned()) {
+      throw new IllegalStateException("Cannot remove pruned block " + rear.getNum());
+    } // if
+    if (rear == front) {
+      throw new IllegalStateException("Cannot remove block " + rear.getNum()
+          + ", the first block after the archive");
+    } // if
 
-    Block current = front;
-    while (current != null && current.getNum() != rear.getNum() - 1) {
-      current = current.prevBlock;
-    } // while
-    rear = current;
+    BlockEvent event = new BlockEvent();
+    event.begin();
+    Block last = rear;
+    rear = last.prevBlock;
+    rear.nextBlock = null;
     size--;
+    ledger.revert(last.getTransaction());
+    if (queries != null) {
+      queries.remove(last.getNum(), last.getTransaction());
+    } // if
+    index.remove(last.getHash());
+    if (unpruned == last) {
+      unpruned = null;
+    } // if
+    if (metrics != null) {
+      metrics.recordRemove();
+    } // if
+    if (events != null) {
+      events.publish(BlockEventRing.Kind.REMOVED, last);
+    } // if
+    event.finish(last.getNum(), true, true);
     return true;
   } // removeLast()
 
@@ -141,6 +577,64 @@ public class BlockChain implements Iterable<Transaction> {
     return rear.getHash();
   } // getHash()
 
+  /**
+   * Get the nonce of the genesis block, which can be given to BlockChain(HashValidator, long) to
+   * rebuild the chain's start without mining.
+   *
+   * @return the nonce.
+   */
+  public long getGenesisNonce() {
+    return (front.getNum() == 0) ? front.getNonce() : archived(0).getNonce();
+  } // getGenesisNonce()
+
+  /**
+   * Get the last block in the chain.
+   *
+   * @return the last block in the chain.
+   */
+  public Block getLast() {
+    return rear;
+  } // getLast()
+
+  /**
+   * Get the block with a given number. This takes O(log n) steps for blocks in memory, and one
+   * read of a compressed chunk for archived blocks that are not in the cache.
+   *
+   * @param height The number of the block.
+   * @return the block, which is a copy not linked to the chain if it has been archived.
+   * @throws IndexOutOfBoundsException if there is no such block.
+   * @throws UncheckedIOException if the block is archived and the archive cannot be read.
+   */
+  public Block blockAt(int height) {
+    if (height < 0 || height >= size) {
+      throw new IndexOutOfBoundsException("No block " + height);
+    } // if
+    if (height < front.getNum()) {
+      return archived(height);
+    } // if
+    return rear.ancestorAt(height);
+  } // blockAt(int)
+
+  /**
+   * Find a block in the chain by its hash. Only blocks still in memory are indexed, so archived
+   * blocks are never found.
+   *
+   * @param hash The hash of the block.
+   * @return the block, or null if no block in memory has that hash.
+   */
+  public Block find(Hash hash) {
+    return index.get(hash);
+  } // find(Hash)
+
+  /**
+   * Get the validator the chain uses.
+   *
+   * @return the validator.
+   */
+  public HashValidator getValidator() {
+    return validator;
+  } // getValidator()
+
   /**
    * Determine if the blockchain is correct and consistent.
    *
@@ -161,34 +655,204 @@ public class BlockChain implements Iterable<Transaction> {
    * @throws Exception if there are inconsistencies or invalid blocks.
    */
   public void check() throws Exception {
-    Block current = front;
-    while (current != null) {
+    QueryEvent event = new QueryEvent();
+    event.begin();
+    long start = (metrics == null) ? 0 : System.nanoTime();
+    Iterator<Block> blocks = blocks();
+    Block previous = null;
+    while (blocks.hasNext()) {
+      Block current = blocks.next();
       if (!validator.isValid(current.getHash())) {
         throw new Exception("Invalid block hash at block " + current.getNum());
       } // if
-      if (current != front && !current.getPrevHash().equals(current.prevBlock.getHash())) {
+      if (previous != null && !current.getPrevHash().equals(previous.getHash())) {
         throw new Exception("Invalid previous hash at block " + current.getNum());
       } // if
-      current = current.prevBlock;
+      previous = current;
     } // while
+    if (metrics != null) {
+      metrics.recordQuery(System.nanoTime() - start);
+    } // if
+    event.finish("check", null, size - 1);
   } // check()
 
+  /**
+   * Drop the transactions of every block below a checkpoint, keeping only their headers. The
+   * ledger already holds the balances those transactions contributed, so balance and users are
+   * unaffected, and check still verifies the headers. Pruned blocks are skipped when iterating
+   * transactions and can no longer be removed.
+   *
+   * @param checkpoint The number of the first block that keeps its transaction.
+   * @throws IllegalStateException if a BlockLog is recording the chain and has not yet written
+   *     the blocks we would prune.
+   */
+  public void prune(int checkpoint) {
+    if (logs > 0 && unpruned != null && unpruned.getNum() < checkpoint) {
+      throw new IllegalStateException("Cannot prune while a BlockLog is recording the chain");
+    } // if
+    while (unpruned != null && unpruned.getNum() < checkpoint) {
+      if (queries != null) {
+        queries.remove(unpruned.getNum(), unpruned.getTransaction());
+      } // if
+      unpruned.prune();
+      unpruned = unpruned.nextBlock;
+    } // while
+  } // prune(int)
+
+  /**
+   * Keep transactions only for the most recent blocks, pruning older ones as blocks are
+   * appended. This bounds the memory used by transactions, however long the chain grows.
+   *
+   * @param depth The number of recent blocks that keep their transactions, or -1 to stop
+   *     pruning automatically.
+   * @throws IllegalStateException if depth is not -1 and a BlockLog is recording the chain.
+   */
+  public void setPruneDepth(int depth) {
+    if (depth >= 0 && logs > 0) {
+      throw new IllegalStateException("Cannot prune while a BlockLog is recording the chain");
+    } // if
+    this.pruneDepth = depth;
+    if (depth >= 0) {
+      prune(size - depth);
+    } // if
+  } // setPruneDepth(int)
+
+  /**
+   * Keep old blocks in an archive rather than in memory. Blocks move there when archive or
+   * setArchiveDepth asks for it. Up to CACHE_BLOCKS archived blocks that blockAt looks up are
+   * kept decoded in memory.
+   *
+   * @param segments The archive, which must be empty.
+   * @throws IllegalArgumentException if the archive already holds blocks.
+   * @throws IllegalStateException if the chain already has an archive.
+   */
+  public void setArchive(SegmentArchive segments) {
+    if (this.archive != null) {
+      throw new IllegalStateException("The chain already has an archive");
+    } // if
+    if (segments.size() != 0) {
+      throw new IllegalArgumentException("The archive is not empty");
+    } // if
+    this.archive = segments;
+    this.cache = new BlockCache(segments, CACHE_BLOCKS);
+  } // setArchive(SegmentArchive)
+
+  /**
+   * Change how many archived blocks are kept decoded in memory. Together with setArchiveDepth,
+   * this bounds the number of blocks in memory, however long the chain grows. The cache starts
+   * out empty.
+   *
+   * @param blocks The number of blocks.
+   * @throws IllegalStateException if the chain has no archive.
+   * @throws IllegalArgumentException if blocks is less than BlockCache.MIN_BLOCKS.
+   */
+  public void setCacheCapacity(int blocks) {
+    if (archive == null) {
+      throw new IllegalStateException("The chain has no archive");
+    } // if
+    this.cache = new BlockCache(archive, blocks);
+  } // setCacheCapacity(int)
+
+  /**
+   * Get the cache of archived blocks, which reports its hit rate, evictions, and load times.
+   *
+   * @return the cache, or null if the chain has no archive.
+   */
+  public BlockCache getBlockCache() {
+    return this.cache;
+  } // getBlockCache()
+
+  /**
+   * Move every block below a checkpoint out of memory and into the archive. Archived blocks
+   * still count in getSize, blockAt, blocks, check, and the ledger, but they can no longer be
+   * removed or found by hash. The last block always stays in memory.
+   *
+   * @param checkpoint The number of the first block to keep in memory.
+   * @throws IllegalStateException if the chain has no archive or a block to archive has been
+   *     pruned.
+   * @throws UncheckedIOException if the archive cannot be written.
+   */
+  public void archive(int checkpoint) {
+    if (archive == null) {
+      throw new IllegalStateException("The chain has no archive");
+    } // if
+    int boundary = Math.min(checkpoint, rear.getNum());
+    if (boundary <= front.getNum()) {
+      return;
+    } // if
+    if (unpruned != front) {
+      throw new IllegalStateException("Cannot archive pruned blocks");
+    } // if
+
+    // Move front past each segment as soon as it is sealed, so that if a later segment cannot
+    // be written, the chain still matches the archive.
+    List<Block> run = new ArrayList<Block>();
+    Block current = front;
+    try {
+      while (current.getNum() < boundary) {
+        run.add(current);
+        Block next = current.nextBlock;
+        if (run.size() == SEGMENT_BLOCKS || current.getNum() == boundary - 1) {
+          archive.seal(run);
+          for (Block blk : run) {
+            index.remove(blk.getHash());
+          } // for
+          run.clear();
+          next.prevBlock = null;
+          front = next;
+        } // if
+        current = next;
+      } // while
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      // Cut every skip link from memory into the archive.
+      int sealed = archive.size();
+      for (Block blk = front; blk != null; blk = blk.nextBlock) {
+        if (blk.skip != null && blk.skip.getNum() < sealed) {
+          blk.skip = null;
+        } // if
+      } // for
+      if (unpruned != null && unpruned.getNum() < sealed) {
+        unpruned = front;
+      } // if
+    } // try/catch/finally
+  } // archive(int)
+
+  /**
+   * Keep only the most recent blocks in memory, archiving older ones as blocks are appended.
+   * Blocks are sealed SEGMENT_BLOCKS at a time, so up to depth + SEGMENT_BLOCKS blocks stay in
+   * memory. Pruned blocks cannot be archived, so a chain that prunes stops archiving.
+   *
+   * @param depth The number of recent blocks to keep in memory, or -1 to stop archiving
+   *     automatically.
+   * @throws IllegalStateException if the chain has no archive.
+   */
+  public void setArchiveDepth(int depth) {
+    if (depth >= 0 && archive == null) {
+      throw new IllegalStateException("The chain has no archive");
+    } // if
+    this.archiveDepth = depth;
+    if (depth >= 0) {
+      archive(size - depth);
+    } // if
+  } // setArchiveDepth(int)
+
   /**
    * Return an iterator of all the people who participated in the system.
    *
    * @return an iterator of all the people in the system.
    */
   public Iterator<String> users() {
-    Set<String> users = new HashSet<>();
-    Block current = front;
-    while (current != null) {
-      if (!current.transactionF.getSource().isEmpty()) {
-        users.add(current.transactionF.getSource());
-      } // if
-      users.add(current.transactionF.getTarget());
-      current = current.prevBlock;
-    } // while
-    return users.iterator();
+    QueryEvent event = new QueryEvent();
+    event.begin();
+    long start = (metrics == null) ? 0 : System.nanoTime();
+    Iterator<String> result = ledger.users();
+    if (metrics != null) {
+      metrics.recordQuery(System.nanoTime() - start);
+    } // if
+    event.finish("users", null, size - 1);
+    return result;
   } // users()
 
   /**
@@ -198,47 +862,297 @@ public class BlockChain implements Iterable<Transaction> {
    * @return that user's balance (or 0 if the user is not in the system).
    */
   public int balance(String user) {
-    int balance = 0;
-    Block current = front;
-    while (current != null) {
-      Transaction t = current.transactionF;
-      if (user.equals(t.getSource())) {
-        balance -= t.getAmount();
+    QueryEvent event = new QueryEvent();
+    event.begin();
+    long start = (metrics == null) ? 0 : System.nanoTime();
+    int result = seen.mightContain(user) ? ledger.balance(user) : 0;
+    if (metrics != null) {
+      metrics.recordQuery(System.nanoTime() - start);
+    } // if
+    event.finish("balance", user, size - 1);
+    return result;
+  } // balance()
+
+  /**
+   * List the richest users. This takes O(log n + k) steps, however many users there are.
+   *
+   * @param k The number of users to list.
+   * @return the names of up to k users, richest first, with ties in alphabetical order.
+   */
+  public List<String> topN(int k) {
+    return ledger.topN(k);
+  } // topN(int)
+
+  /**
+   * Find a user's position among the richest users. This takes O(log n) steps.
+   *
+   * @param user The user.
+   * @return the position, where the richest user is 1, or 0 if the user is not in the system.
+   */
+  public int rank(String user) {
+    return seen.mightContain(user) ? ledger.rank(user) : 0;
+  } // rank(String)
+
+  /**
+   * List the users whose balances fall in a range. This takes O(log n + k) steps, where k is the
+   * number of users listed.
+   *
+   * @param lo The smallest balance to include.
+   * @param hi The largest balance to include.
+   * @return the names of the users, richest first, with ties in alphabetical order.
+   */
+  public List<String> usersWithBalanceBetween(int lo, int hi) {
+    return ledger.usersWithBalanceBetween(lo, hi);
+  } // usersWithBalanceBetween(int, int)
+
+  /**
+   * Find the blocks that match a query, in order of height. The first query builds indexes of
+   * the chain's transactions, which are then kept up to date as blocks are appended, removed,
+   * and pruned. Queries on amounts or deposits skip every bucket of QueryIndex.BUCKET heights
+   * that cannot match, and a query for a narrow range of amounts looks only at the blocks that
+   * hold those amounts. Queries for a user who has never appeared return at once.
+   *
+   * @param q The query.
+   * @return the matching blocks. Pruned blocks never match.
+   * @throws UncheckedIOException if a block is archived and the archive cannot be read.
+   */
+  public List<Block> query(TransactionQuery q) {
+    QueryEvent event = new QueryEvent();
+    event.begin();
+    long start = (metrics == null) ? 0 : System.nanoTime();
+    List<Block> result = new ArrayList<Block>();
+    int from = Math.max(0, q.fromHeight);
+    int to = Math.min(size - 1, q.toHeight);
+    if ((q.source == null || seen.mightContain(q.source))
+        && (q.target == null || seen.mightContain(q.target)) && from <= to
+        && q.minAmount <= q.maxAmount) {
+      QueryIndex indexes = queryIndex();
+      long cost = indexes.scanCost(from, to, q);
+      int[] heights = (q.minAmount == Integer.MIN_VALUE && q.maxAmount == Integer.MAX_VALUE)
+          ? null : indexes.heights(from, to, q, cost);
+      if (heights != null) {
+        for (int height : heights) {
+          Block blk = blockAt(height);
+          if (q.matches(blk)) {
+            result.add(blk);
+          } // if
+        } // for
+      } else {
+        for (int b = from / QueryIndex.BUCKET; b <= to / QueryIndex.BUCKET; b++) {
+          if (indexes.mayMatch(b, q)) {
+            scan(Math.max(from, b * QueryIndex.BUCKET),
+                Math.min(to, (b + 1) * QueryIndex.BUCKET - 1), q, result);
+          } // if
+        } // for
+      } // if/else
+    } // if
+    if (metrics != null) {
+      metrics.recordQuery(System.nanoTime() - start);
+    } // if
+    event.finish("query", q.source, size - 1);
+    return result;
+  } // query(TransactionQuery)
+
+  /**
+   * Add up the amounts of the transactions in a range of heights. Whole buckets of
+   * QueryIndex.BUCKET heights are added up from their summaries without looking at their blocks.
+   *
+   * @param from The lowest height.
+   * @param to The highest height.
+   * @return the total. Pruned blocks are not counted.
+   */
+  public long totalAmount(int from, int to) {
+    int first = Math.max(0, from);
+    int last = Math.min(size - 1, to);
+    QueryIndex indexes = queryIndex();
+    long total = 0;
+    TransactionQuery any = new TransactionQuery();
+    for (int b = first / QueryIndex.BUCKET; first <= last && b <= last / QueryIndex.BUCKET; b++) {
+      int lo = Math.max(first, b * QueryIndex.BUCKET);
+      int hi = Math.min(last, (b + 1) * QueryIndex.BUCKET - 1);
+      if (hi - lo + 1 == QueryIndex.BUCKET) {
+        total += indexes.sum(b);
+      } else {
+        List<Block> blocks = new ArrayList<Block>();
+        scan(lo, hi, any, blocks);
+        for (Block blk : blocks) {
+          total += blk.getTransaction().getAmount();
+        } // for
+      } // if/else
+    } // for
+    return total;
+  } // totalAmount(int, int)
+
+  /**
+   * Start or stop recording telemetry. Without metrics, the chain does not even read the clock.
+   *
+   * @param recorder Where to record, or null to stop recording.
+   */
+  public void setMetrics(ChainMetrics recorder) {
+    this.metrics = recorder;
+  } // setMetrics(ChainMetrics)
+
+  /**
+   * Get where the chain records telemetry.
+   *
+   * @return the metrics, or null if the chain records none.
+   */
+  public ChainMetrics getMetrics() {
+    return this.metrics;
+  } // getMetrics()
+
+  /**
+   * Subscribe to the blocks appended to and removed from the chain from now on. The chain keeps
+   * the last EVENT_CAPACITY changes for subscribers to read at their own pace; append and
+   * removeLast never wait for them.
+   *
+   * @param policy What to do if the subscriber falls more than EVENT_CAPACITY changes behind.
+   * @return the subscription.
+   */
+  public Subscription subscribe(Subscription.Policy policy) {
+    if (events == null) {
+      events = new BlockEventRing(EVENT_CAPACITY);
+    } // if
+    return events.subscribe(policy);
+  } // subscribe(Subscription.Policy)
+
+  /**
+   * Determine if a user might have appeared in the chain. This takes a few nanoseconds and never
+   * looks at the blocks or the ledger.
+   *
+   * @param user The user.
+   * @return false if user has definitely never appeared as a source or target, true if they
+   *     probably have.
+   */
+  public boolean mightContain(String user) {
+    return seen.mightContain(user);
+  } // mightContain(String)
+
+  /**
+   * Change the chance that mightContain says yes for a user who never appeared. The filter is
+   * rebuilt from the users currently in the chain, which also forgets users whose blocks have
+   * all been removed.
+   *
+   * @param rate The chance, between 0 and 1. Lower rates use more memory.
+   * @throws IllegalArgumentException if the rate is not between 0 and 1.
+   */
+  public void setUserFilterRate(double rate) {
+    ScalableBloomFilter filter = new ScalableBloomFilter(rate, Math.max(1024, ledger.size()));
+    Iterator<String> users = ledger.users();
+    while (users.hasNext()) {
+      filter.add(users.next());
+    } // while
+    this.seen = filter;
+  } // setUserFilterRate(double)
+
+  /**
+   * Turn enforcement of funds on or off. When it is on, append and mine reject any transfer
+   * whose source does not have at least the amount being transferred.
+   *
+   * @param enforce Whether to enforce funds.
+   */
+  public void setEnforceFunds(boolean enforce) {
+    this.enforceFunds = enforce;
+  } // setEnforceFunds(boolean)
+
+  /**
+   * Determine if we are enforcing funds.
+   *
+   * @return true if transfers must be covered by their source's balance.
+   */
+  public boolean isEnforcingFunds() {
+    return this.enforceFunds;
+  } // isEnforcingFunds()
+
+  /**
+   * Build a Merkle tree over the hashes of blocks 0 through a checkpoint. The root of the tree is
+   * what light clients need to trust in order to check inclusion proofs.
+   *
+   * @param checkpoint The number of the last block to cover.
+   * @return the tree.
+   * @throws IndexOutOfBoundsException if the checkpoint is not in the chain.
+   */
+  public MerkleTree merkleTree(int checkpoint) {
+    if (checkpoint < 0 || checkpoint >= size) {
+      throw new IndexOutOfBoundsException("No block " + checkpoint);
+    } // if
+    List<Hash> hashes = new ArrayList<Hash>(checkpoint + 1);
+    Iterator<Block> blocks = blocks();
+    while (hashes.size() <= checkpoint) {
+      hashes.add(blocks.next().getHash());
+    } // while
+    return new MerkleTree(hashes);
+  } // merkleTree(int)
+
+  /**
+   * Build an inclusion proof for a transaction against an existing tree. Building the tree once
+   * and reusing it is much cheaper when proving many transactions against one checkpoint.
+   *
+   * @param t The transaction to prove.
+   * @param tree A tree built by merkleTree.
+   * @return a proof for the first block at or below the checkpoint that holds t.
+   * @throws IllegalArgumentException if no such block exists.
+   */
+  public InclusionProof prove(Transaction t, MerkleTree tree) {
+    int checkpoint = tree.size() - 1;
+    Iterator<Block> blocks = blocks();
+    while (blocks.hasNext()) {
+      Block current = blocks.next();
+      if (current.getNum() > checkpoint) {
+        break;
       } // if
-      if (user.equals(t.getTarget())) {
-        balance += t.getAmount();
+      if (t.equals(current.transactionF)) {
+        List<Hash> siblings = new ArrayList<Hash>();
+        List<Boolean> onLeft = new ArrayList<Boolean>();
+        tree.path(current.getNum(), siblings, onLeft);
+        return new InclusionProof(t, new BlockHeader(current), checkpoint, siblings, onLeft);
       } // if
-      current = current.prevBlock;
     } // while
-    return balance;
-  } // balance()
+    throw new IllegalArgumentException("Transaction is not in the chain: " + t);
+  } // prove(Transaction, MerkleTree)
+
+  /**
+   * Build an inclusion proof for a transaction, using the current end of the chain as the
+   * checkpoint.
+   *
+   * @param t The transaction to prove.
+   * @return a proof for the first block that holds t.
+   * @throws IllegalArgumentException if no such block exists.
+   */
+  public InclusionProof prove(Transaction t) {
+    return prove(t, merkleTree(size - 1));
+  } // prove(Transaction)
 
   /**
    * Printing Transactions
    */
   public void printTransactions() {
-    Block current = front;
-    while (current != null) {
-      System.out.println(
-          current.transactionF); // Assuming transactionF is the field holding the transaction data
-      current = current.nextBlock; // Move to the next block
-    } // while
+    for (Transaction t : this) {
+      System.out.println(t);
+    } // for
   } // printTransactions()
 
   /**
-   * Get an iterator for all the blocks in the chain.
+   * Get an iterator for all the blocks in the chain. Archived blocks come first, as copies read
+   * from the archive a chunk at a time. They bypass the block cache, so a scan of the whole
+   * chain does not push out blocks that were looked up.
    *
    * @return an iterator for all the blocks in the chain.
    */
   public Iterator<Block> blocks() {
     return new Iterator<Block>() {
+      private Iterator<Block> sealed =
+          (archive == null) ? Collections.emptyIterator() : archive.iterator();
       private Block current = front;
 
       public boolean hasNext() {
-        return current != null;
+        return sealed.hasNext() || current != null;
       } // hasNext()
 
       public Block next() {
+        if (sealed.hasNext()) {
+          return sealed.next();
+        } // if
         if (!hasNext()) {
           throw new NoSuchElementException();
         } // if
@@ -250,19 +1164,25 @@ public class BlockChain implements Iterable<Transaction> {
   } //blocks()
 
   /**
-   * Get an iterator for all the transactions in the chain.
+   * Get an iterator for all the transactions in the chain that have not been pruned, starting
+   * with those in the archive.
    *
    * @return an iterator for all the transactions in the chain.
    */
   public Iterator<Transaction> iterator() {
     return new Iterator<Transaction>() {
-      private Block current = front;
+      private Iterator<Block> sealed =
+          (archive == null) ? Collections.emptyIterator() : archive.iterator();
+      private Block current = unpruned;
 
       public boolean hasNext() {
-        return current != null;
+        return sealed.hasNext() || current != null;
       } // hasNext()
 
       public Transaction next() {
+        if (sealed.hasNext()) {
+          return sealed.next().getTransaction();
+        } // if
         if (!hasNext()) {
           throw new NoSuchElementException();
         } // if
@@ -0,0 +1,87 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A compact binary encoding of blocks, for sending them to other nodes or storing them. A block
+ * is written as its number, source, target, amount, previous hash, nonce, and hash. Reading a
+ * block rehashes it and checks the result against the stored hash.
+ *
+ * @author Sal & Koast
+ */
+public class BlockCodec {
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Write a hash.
+   *
+   * @param out Where to write the hash.
+   * @param hash The hash.
+   * @throws IOException if the write fails.
+   */
+  public static void writeHash(DataOutput out, Hash hash) throws IOException {
+    out.writeShort(hash.length());
+    out.write(hash.getBytes());
+  } // writeHash(DataOutput, Hash)
+
+  /**
+   * Read a hash.
+   *
+   * @param in Where to read the hash from.
+   * @return the hash.
+   * @throws IOException if the read fails.
+   */
+  public static Hash readHash(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readUnsignedShort()];
+    in.readFully(bytes);
+    return new Hash(bytes);
+  } // readHash(DataInput)
+
+  /**
+   * Write a block.
+   *
+   * @param out Where to write the block.
+   * @param blk The block, which must not have been pruned.
+   * @throws IOException if the write fails.
+   * @throws IllegalStateException if the block has been pruned.
+   */
+  public static void write(DataOutput out, Block blk) throws IOException {
+    Transaction t = blk.getTransaction();
+    if (t == null) {
+      throw new IllegalStateException("Cannot encode pruned block " + blk.getNum());
+    } // if
+    out.writeInt(blk.getNum());
+    out.writeUTF(t.getSource());
+    out.writeUTF(t.getTarget());
+    out.writeInt(t.getAmount());
+    writeHash(out, blk.getPrevHash());
+    out.writeLong(blk.getNonce());
+    writeHash(out, blk.getHash());
+  } // write(DataOutput, Block)
+
+  /**
+   * Read a block, checking that it hashes to the hash that was written with it.
+   *
+   * @param in Where to read the block from.
+   * @return the block.
+   * @throws IOException if the read fails or the block does not match its hash.
+   */
+  public static Block read(DataInput in) throws IOException {
+    int num = in.readInt();
+    String source = in.readUTF();
+    String target = in.readUTF();
+    int amount = in.readInt();
+    Hash prevHash = readHash(in);
+    long nonce = in.readLong();
+    Hash hash = readHash(in);
+    Block blk = new Block(num, new Transaction(source, target, amount), prevHash, nonce);
+    if (!blk.getHash().equals(hash)) {
+      throw new IOException("Block " + num + " does not match its hash.");
+    } // if
+    return blk;
+  } // read(DataInput)
+} // class BlockCodec
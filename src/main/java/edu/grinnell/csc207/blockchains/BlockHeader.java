@@ -0,0 +1,113 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * The header of a block: everything but the transaction. Headers are what light clients keep
+ * around, since they are enough to check the validator and the prevHash links.
+ *
+ * @author Sal & Koast
+ */
+public class BlockHeader {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** Block number. */
+  private final int number;
+
+  /** Hash of the previous block. */
+  private final Hash prevHash;
+
+  /** Nonce of the block. */
+  private final long nonce;
+
+  /** Hash of the block. */
+  private final Hash hash;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new header.
+   *
+   * @param num The number of the block.
+   * @param prev The hash of the previous block.
+   * @param nonceVal The nonce of the block.
+   * @param blockHash The hash of the block.
+   */
+  public BlockHeader(int num, Hash prev, long nonceVal, Hash blockHash) {
+    this.number = num;
+    this.prevHash = prev;
+    this.nonce = nonceVal;
+    this.hash = blockHash;
+  } // BlockHeader(int, Hash, long, Hash)
+
+  /**
+   * Create the header of an existing block.
+   *
+   * @param blk The block.
+   */
+  public BlockHeader(Block blk) {
+    this(blk.getNum(), blk.getPrevHash(), blk.getNonce(), blk.getHash());
+  } // BlockHeader(Block)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of the block.
+   *
+   * @return the number of the block.
+   */
+  public int getNum() {
+    return this.number;
+  } // getNum()
+
+  /**
+   * Get the hash of the previous block.
+   *
+   * @return the hash of the previous block.
+   */
+  public Hash getPrevHash() {
+    return this.prevHash;
+  } // getPrevHash()
+
+  /**
+   * Get the nonce of the block.
+   *
+   * @return the nonce.
+   */
+  public long getNonce() {
+    return this.nonce;
+  } // getNonce()
+
+  /**
+   * Get the hash of the block.
+   *
+   * @return the hash of the block.
+   */
+  public Hash getHash() {
+    return this.hash;
+  } // getHash()
+
+  /**
+   * Determine if a transaction is the one this header was computed from.
+   *
+   * @param t The transaction to check.
+   * @return true if rehashing the block with t gives this header's hash.
+   */
+  public boolean matches(Transaction t) {
+    return new Block(this.number, t, this.prevHash, this.nonce).getHash().equals(this.hash);
+  } // matches(Transaction)
+
+  /**
+   * Get a string representation of the header.
+   *
+   * @return a string representation of the header.
+   */
+  public String toString() {
+    return "Header " + this.number + " (Nonce: " + this.nonce + ", prevHash: " + this.prevHash
+        + ", hash: " + this.hash + ")";
+  } // toString()
+} // class BlockHeader
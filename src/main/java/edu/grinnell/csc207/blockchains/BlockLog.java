@@ -0,0 +1,297 @@
+package edu.grinnell.csc207.blockchains;
+
+import edu.grinnell.csc207.events.BlockEventRing;
+import edu.grinnell.csc207.events.BlockListener;
+import edu.grinnell.csc207.events.Subscription;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file that records every change to a chain, so that other processes can follow
+ * the chain by reading the file (see LogFollower). The log starts with MAGIC and the genesis
+ * nonce. Then comes one record for each block appended and each block removed. Each record is
+ * framed by its length and a CRC32 of its contents, so a reader can tell a record that is still
+ * being written from one that is complete.
+ *
+ * <p>The log subscribes to the chain's events and writes them from its own thread. Appending to
+ * the chain never waits for the disk. Since the writer may read a block well after it was
+ * appended, the chain refuses to prune while the log is open. If the writer falls a whole event
+ * ring behind or a write fails, the log ends with a FAILED record, so that followers know it is
+ * incomplete rather than merely quiet, and close reports the failure.
+ *
+ * @author Sal & Koast
+ */
+public class BlockLog implements BlockListener, Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The first four bytes of a log. */
+  public static final int MAGIC = 0x424c4f47;
+
+  /** The kind of record for an appended block, which is followed by the block. */
+  static final byte APPEND = 1;
+
+  /** The kind of record for a removed block, which is followed by its number. */
+  static final byte REMOVE = 2;
+
+  /** The kind of record that ends a log the writer gave up on, which is followed by why. */
+  static final byte FAILED = 3;
+
+  /** The number of header bytes before the first record. */
+  static final int HEADER = Integer.BYTES + Long.BYTES;
+
+  /** The size of the buffer for writing. */
+  static final int BUFFER = 1 << 16;
+
+  /** The most events written between flushes. */
+  static final int BATCH = 1024;
+
+  /** How long the writer waits for events before checking whether it should stop. */
+  static final long WAIT_NANOS = 10_000_000;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The chain we record. */
+  private final BlockChain chain;
+
+  /** Where records go. */
+  private final DataOutputStream out;
+
+  /** The record being built. */
+  private final ByteArrayOutputStream record;
+
+  /** A stream onto record. */
+  private final DataOutputStream recordOut;
+
+  /** The checksum of the record being built. */
+  private final CRC32 crc;
+
+  /** Our place in the chain's events. */
+  private final Subscription events;
+
+  /** The thread that writes events. */
+  private final Thread writer;
+
+  /** Whether we have been asked to stop. */
+  private volatile boolean closed;
+
+  /** Why writing failed, or null if it has not. */
+  private volatile Exception failure;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a log of a chain, writing the blocks it holds now and then every change.
+   *
+   * @param chain The chain.
+   * @param file The log file, which is replaced if it exists.
+   * @throws IOException if the file cannot be written.
+   * @throws IllegalStateException if some of the chain's blocks have been pruned, or the chain
+   *     prunes blocks as they are appended.
+   */
+  public BlockLog(BlockChain chain, Path file) throws IOException {
+    this(chain, Files.newOutputStream(file));
+  } // BlockLog(BlockChain, Path)
+
+  /**
+   * Create a log of a chain that writes to a stream.
+   *
+   * @param chain The chain.
+   * @param sink Where to write the log, which the log closes.
+   * @throws IOException if the stream cannot be written.
+   * @throws IllegalStateException if some of the chain's blocks have been pruned, or the chain
+   *     prunes blocks as they are appended.
+   */
+  BlockLog(BlockChain chain, OutputStream sink) throws IOException {
+    this.chain = chain;
+    this.out = new DataOutputStream(new BufferedOutputStream(sink, BUFFER));
+    this.record = new ByteArrayOutputStream();
+    this.recordOut = new DataOutputStream(this.record);
+    this.crc = new CRC32();
+    synchronized (chain) {
+      try {
+        chain.openLog();
+      } catch (IllegalStateException e) {
+        out.close();
+        throw e;
+      } // try/catch
+      try {
+        out.writeInt(MAGIC);
+        out.writeLong(chain.getGenesisNonce());
+        Iterator<Block> blocks = chain.blocks();
+        blocks.next();
+        while (blocks.hasNext()) {
+          Block blk = blocks.next();
+          if (blk.isPruned()) {
+            throw new IllegalStateException("Cannot log pruned block " + blk.getNum());
+          } // if
+          write(BlockEventRing.Kind.APPENDED, blk);
+        } // while
+      } catch (IOException | IllegalStateException e) {
+        chain.closeLog();
+        out.close();
+        throw e;
+      } // try/catch
+      this.events = chain.subscribe(Subscription.Policy.DISCONNECT);
+    } // synchronized
+    out.flush();
+    this.closed = false;
+    this.failure = null;
+    this.writer = new Thread(this::run, "block-log");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  } // BlockLog(BlockChain, OutputStream)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Write one record.
+   *
+   * @param kind Whether the block was appended or removed.
+   * @param blk The block.
+   * @throws IOException if the write fails.
+   */
+  private void write(BlockEventRing.Kind kind, Block blk) throws IOException {
+    record.reset();
+    if (kind == BlockEventRing.Kind.APPENDED) {
+      recordOut.writeByte(APPEND);
+      BlockCodec.write(recordOut, blk);
+    } else {
+      recordOut.writeByte(REMOVE);
+      recordOut.writeInt(blk.getNum());
+    } // if/else
+    frame();
+  } // write(BlockEventRing.Kind, Block)
+
+  /**
+   * Write the record that ends a log we gave up on.
+   *
+   * @param reason Why we gave up.
+   * @throws IOException if the write fails.
+   */
+  private void writeFailed(Exception reason) throws IOException {
+    record.reset();
+    recordOut.writeByte(FAILED);
+    recordOut.writeUTF(String.valueOf(reason.getMessage()));
+    frame();
+    out.flush();
+  } // writeFailed(Exception)
+
+  /**
+   * Write the record that has been built, with its length and checksum.
+   *
+   * @throws IOException if the write fails.
+   */
+  private void frame() throws IOException {
+    crc.reset();
+    crc.update(record.toByteArray());
+    out.writeInt(record.size());
+    record.writeTo(out);
+    out.writeInt((int) crc.getValue());
+  } // frame()
+
+  /**
+   * Write events until we are closed and have caught up.
+   */
+  private void run() {
+    try {
+      while (true) {
+        if (events.await(WAIT_NANOS)) {
+          events.poll(this, BATCH);
+        } else if (closed) {
+          break;
+        } // if/else
+      } // while
+    } catch (RuntimeException e) {
+      failure = e;
+      try {
+        writeFailed(e);
+      } catch (IOException nested) {
+        // The log is already broken, and close reports why.
+      } // try/catch
+    } // try/catch
+    try {
+      out.close();
+    } catch (IOException e) {
+      if (failure == null) {
+        failure = e;
+      } // if
+    } // try/catch
+  } // run()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Write one event, flushing at the end of each batch.
+   *
+   * @param sequence The event's sequence number.
+   * @param kind Whether the block was appended or removed.
+   * @param block The block.
+   * @param endOfBatch Whether to flush.
+   * @throws UncheckedIOException if the write fails.
+   */
+  public void onEvent(long sequence, BlockEventRing.Kind kind, Block block, boolean endOfBatch) {
+    try {
+      write(kind, block);
+      if (endOfBatch) {
+        out.flush();
+      } // if
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } // try/catch
+  } // onEvent(long, BlockEventRing.Kind, Block, boolean)
+
+  /**
+   * Determine if the log is still recording every change. It stops if a write fails or if it
+   * falls a whole event ring behind the chain.
+   *
+   * @return true if the log is complete so far.
+   */
+  public boolean isHealthy() {
+    return failure == null && !events.isDisconnected();
+  } // isHealthy()
+
+  /**
+   * Write every change made so far, then stop logging and close the file.
+   *
+   * @throws IOException if a write failed at any point or the log fell a whole event ring
+   *     behind the chain.
+   */
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    } // if
+    closed = true;
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } // try/catch
+    synchronized (chain) {
+      chain.closeLog();
+    } // synchronized
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure != null) {
+      throw new IOException("Could not write the log", failure);
+    } // if/else
+  } // close()
+} // class BlockLog
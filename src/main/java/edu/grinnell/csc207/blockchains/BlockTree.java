@@ -0,0 +1,186 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * A tree of blocks that keeps side branches alongside a chain. The chain always holds the best
+ * branch, which is the highest one (ties go to whichever branch got there first). When a side
+ * branch overtakes the chain, we reorganize by removing the blocks above the fork point and
+ * appending the blocks of the new branch. Every block is linked to its parent, so the fork point
+ * is found with skip pointers, and since the chain reverts each removed block's ledger entries and
+ * index entries, a reorganization costs time proportional to its depth rather than to the length
+ * of the chain.
+ *
+ * @author Sal & Koast
+ */
+public class BlockTree {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The best branch. */
+  private final BlockChain chain;
+
+  /** Every block we know about, on the chain or not, by hash. */
+  private final HashMap<Hash, Block> blocks;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a tree whose best branch starts as the given chain.
+   *
+   * @param base The chain. The tree takes over appending to and removing from it.
+   */
+  public BlockTree(BlockChain base) {
+    this.chain = base;
+    this.blocks = new HashMap<Hash, Block>();
+    Iterator<Block> it = base.blocks();
+    while (it.hasNext()) {
+      Block blk = it.next();
+      this.blocks.put(blk.getHash(), blk);
+    } // while
+  } // BlockTree(BlockChain)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Switch the chain over to the branch that ends with tip.
+   *
+   * @param tip The new best tip, which must be higher than the end of the chain.
+   * @throws IllegalArgumentException if a block on the new branch cannot be appended, in which
+   *     case the chain is restored and that block and the ones after it are forgotten.
+   * @throws IllegalStateException if the fork point is below a pruned or archived block, in
+   *     which case the chain is restored and the new branch, which can never take over, is
+   *     forgotten.
+   */
+  private void reorganize(Block tip) {
+    // Collect the new branch down to the fork point.
+    Block fork = Block.commonAncestor(tip, chain.getLast());
+    if (fork == null) {
+      throw new IllegalArgumentException("Branch does not connect to the chain.");
+    } // if
+    ArrayList<Block> branch = new ArrayList<Block>();
+    for (Block current = tip; current != fork; current = current.getPrevBlock()) {
+      branch.add(current);
+    } // for
+
+    // Undo the old branch. Blocks that have been pruned or archived cannot be removed, so if we
+    // reach one, put back what we removed.
+    ArrayList<Block> undone = new ArrayList<Block>();
+    try {
+      while (chain.getLast() != fork) {
+        Block last = chain.getLast();
+        chain.removeLast();
+        undone.add(last);
+      } // while
+    } catch (RuntimeException e) {
+      Collections.reverse(undone);
+      chain.appendAll(undone);
+      for (Block blk : branch) {
+        this.blocks.remove(blk.getHash());
+      } // for
+      throw e;
+    } // try/catch
+
+    // Redo the new branch.
+    Collections.reverse(branch);
+    try {
+      chain.appendAll(branch);
+    } catch (BatchAppendException e) {
+      Collections.reverse(undone);
+      chain.appendAll(undone);
+      for (int j = e.getIndex(); j < branch.size(); j++) {
+        this.blocks.remove(branch.get(j).getHash());
+      } // for
+      throw e;
+    } // try/catch
+  } // reorganize(Block)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a block to the tree. If the block extends the best branch, it is appended to the chain.
+   * If it makes a side branch higher than the best branch, the chain is reorganized onto that
+   * branch.
+   *
+   * @param blk The block to add.
+   * @return true if the end of the chain changed and false otherwise.
+   * @throws IllegalArgumentException if the block is invalid or its parent is unknown.
+   * @throws IllegalStateException if the block's branch is higher but forks below a pruned or
+   *     archived block, in which case the branch is forgotten.
+   */
+  public boolean add(Block blk) {
+    if (this.blocks.containsKey(blk.getHash())) {
+      return false;
+    } // if
+    Block parent = this.blocks.get(blk.getPrevHash());
+    if (parent == null) {
+      throw new IllegalArgumentException("Block's previous block is unknown.");
+    } // if
+    if (blk.getNum() != parent.getNum() + 1) {
+      throw new IllegalArgumentException("Block's number does not follow its previous block.");
+    } // if
+    if (!chain.getValidator().isValid(blk.getHash())) {
+      throw new IllegalArgumentException("Block hash is invalid.");
+    } // if
+
+    if (parent == chain.getLast()) {
+      chain.append(blk);
+      this.blocks.put(blk.getHash(), blk);
+      return true;
+    } // if
+    blk.link(parent);
+    this.blocks.put(blk.getHash(), blk);
+    if (blk.getNum() >= chain.getSize()) {
+      reorganize(blk);
+      return true;
+    } // if
+    return false;
+  } // add(Block)
+
+  /**
+   * Find a block anywhere in the tree.
+   *
+   * @param hash The hash of the block.
+   * @return the block, or null if we do not know about it.
+   */
+  public Block find(Hash hash) {
+    return this.blocks.get(hash);
+  } // find(Hash)
+
+  /**
+   * Get the end of the best branch.
+   *
+   * @return the best tip.
+   */
+  public Block getTip() {
+    return chain.getLast();
+  } // getTip()
+
+  /**
+   * Get the best branch.
+   *
+   * @return the chain.
+   */
+  public BlockChain getChain() {
+    return this.chain;
+  } // getChain()
+
+  /**
+   * Get the number of blocks in the tree, across all branches.
+   *
+   * @return the number of blocks.
+   */
+  public int size() {
+    return this.blocks.size();
+  } // size()
+} // class BlockTree
@@ -0,0 +1,135 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Genesis nonces saved on disk, one file per validator, so that a chain only has to mine its
+ * genesis block the first time a program runs with a given validator. Since a validator is just
+ * a function, the caller names each one with a key, such as "zeros-3"; a saved nonce that does
+ * not suit the validator is ignored and mined again, so a reused key costs time but never
+ * correctness. Failing to save a nonce is not an error.
+ *
+ * @author Sal & Koast
+ */
+public class GenesisCache {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The system property that overrides the standard directory. */
+  public static final String DIRECTORY_PROPERTY = "blockchains.genesis.dir";
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The directory that holds the nonces. */
+  private final Path dir;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a cache in a directory, which is created when the first nonce is saved.
+   *
+   * @param directory The directory.
+   */
+  public GenesisCache(Path directory) {
+    this.dir = directory;
+  } // GenesisCache(Path)
+
+  /**
+   * Create a cache in the standard directory: the blockchains.genesis.dir property if it is set,
+   * and otherwise .cache/blockchains in the user's home directory.
+   *
+   * @return the cache.
+   */
+  public static GenesisCache standard() {
+    String override = System.getProperty(DIRECTORY_PROPERTY);
+    return new GenesisCache((override != null) ? Paths.get(override)
+        : Paths.get(System.getProperty("user.home"), ".cache", "blockchains"));
+  } // standard()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the file for a key.
+   *
+   * @param key The key.
+   * @return the file.
+   * @throws IllegalArgumentException if the key is not made of letters, digits, '-', '_', and
+   *     '.'.
+   */
+  Path file(String key) {
+    if (!key.matches("[A-Za-z0-9._-]+")) {
+      throw new IllegalArgumentException("Bad genesis key: " + key);
+    } // if
+    return dir.resolve(key + ".genesis");
+  } // file(String)
+
+  /**
+   * Read a saved nonce.
+   *
+   * @param key The key.
+   * @return the nonce, or null if none is saved or it cannot be read.
+   */
+  Long read(String key) {
+    try {
+      return Long.valueOf(Files.readString(file(key), StandardCharsets.UTF_8).trim());
+    } catch (IOException | NumberFormatException e) {
+      return null;
+    } // try/catch
+  } // read(String)
+
+  /**
+   * Save a nonce, replacing the file in one step so that other processes never see half of it.
+   *
+   * @param key The key.
+   * @param nonce The nonce.
+   */
+  void write(String key, long nonce) {
+    try {
+      Files.createDirectories(dir);
+      Path tmp = Files.createTempFile(dir, key, ".tmp");
+      Files.writeString(tmp, nonce + "\n", StandardCharsets.UTF_8);
+      Files.move(tmp, file(key), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // The cache only saves time; the chain is fine without it.
+    } // try/catch
+  } // write(String, long)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Create a chain, reusing the saved genesis nonce for a validator if there is a valid one and
+   * mining and saving one otherwise.
+   *
+   * @param validator The validator.
+   * @param key The name of the validator.
+   * @return a new chain holding only its genesis block.
+   */
+  public BlockChain open(HashValidator validator, String key) {
+    Long nonce = read(key);
+    if (nonce != null) {
+      try {
+        return new BlockChain(validator, nonce);
+      } catch (IllegalArgumentException e) {
+        // Saved for some other validator; mine a fresh one.
+      } // try/catch
+    } // if
+    BlockChain chain = new BlockChain(validator);
+    write(key, chain.getGenesisNonce());
+    return chain;
+  } // open(HashValidator, String)
+} // class GenesisCache
@@ -1,22 +1,89 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
 import java.util.Arrays;
 
 /**
- * Encapsulated hashes.
+ * Encapsulated hashes. Hashes are immutable. A 32-byte (SHA-256) hash is stored as four longs,
+ * so comparing hashes and using them as keys never touches an array; hashes of any other length
+ * keep their bytes in an array.
  *
  * @author Your Name Here
  * @author Samuel A. Rebelsky
  */
-public class Hash {
+public class Hash implements Comparable<Hash> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The length of the hashes we store as words.
+   */
+  static final int SIZE = 32;
+
+  /**
+   * Reads and writes big-endian longs in byte arrays.
+   */
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  /**
+   * The hex digits.
+   */
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  /**
+   * The value of each hex digit, by character, or -1 for characters that are not hex digits.
+   */
+  private static final byte[] UNHEX = new byte[128];
+
+  static {
+    Arrays.fill(UNHEX, (byte) -1);
+    for (int i = 0; i < 16; i++) {
+      UNHEX[HEX[i]] = (byte) i;
+      UNHEX[Character.toLowerCase(HEX[i])] = (byte) i;
+    } // for
+  } // static
+
+  /**
+   * A buffer for each thread, for writing words to a digest.
+   */
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SIZE]);
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * Byte array.
+   * Bytes 0 to 7 of a 32-byte hash.
+   */
+  private final long w0;
+  /**
+   * Bytes 8 to 15 of a 32-byte hash.
+   */
+  private final long w1;
+  /**
+   * Bytes 16 to 23 of a 32-byte hash.
    */
-  byte[] hashData;
+  private final long w2;
+  /**
+   * Bytes 24 to 31 of a 32-byte hash.
+   */
+  private final long w3;
+
+  /**
+   * The bytes of a hash that is not 32 bytes long, or null if the words hold the hash.
+   */
+  private final byte[] other;
+
+  /**
+   * The hash code, computed once.
+   */
+  private final int code;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -28,20 +95,84 @@ public class Hash {
    * @param data The data to copy into the hash.
    */
   public Hash(byte[] data) {
-    this.hashData = Arrays.copyOf(data, data.length);
+    if (data.length == SIZE) {
+      this.w0 = (long) LONGS.get(data, 0);
+      this.w1 = (long) LONGS.get(data, 8);
+      this.w2 = (long) LONGS.get(data, 16);
+      this.w3 = (long) LONGS.get(data, 24);
+      this.other = null;
+      this.code = Long.hashCode(((w0 * 31 + w1) * 31 + w2) * 31 + w3);
+    } else {
+      this.w0 = 0;
+      this.w1 = 0;
+      this.w2 = 0;
+      this.w3 = 0;
+      this.other = Arrays.copyOf(data, data.length);
+      this.code = Arrays.hashCode(this.other);
+    } // if/else
   } // Hash(byte[])
 
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get one of the words of a 32-byte hash.
+   *
+   * @param i The index of the word, between 0 and 3.
+   * @return the word.
+   */
+  private long word(int i) {
+    switch (i) {
+      case 0:
+        return w0;
+      case 1:
+        return w1;
+      case 2:
+        return w2;
+      default:
+        return w3;
+    } // switch
+  } // word(int)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
 
+  /**
+   * Parse a hash from hex, as printed by toString.
+   *
+   * @param hex The hex digits, in either case.
+   * @return the hash.
+   * @throws IllegalArgumentException if hex has an odd length or a character that is not a hex
+   *     digit.
+   */
+  public static Hash parse(String hex) {
+    int len = hex.length();
+    if (len % 2 != 0) {
+      throw new IllegalArgumentException("Odd number of hex digits: " + hex);
+    } // if
+    byte[] bytes = new byte[len / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      char hi = hex.charAt(2 * i);
+      char lo = hex.charAt(2 * i + 1);
+      int h = (hi < 128) ? UNHEX[hi] : -1;
+      int l = (lo < 128) ? UNHEX[lo] : -1;
+      if (h < 0 || l < 0) {
+        throw new IllegalArgumentException("Not a hex digit in " + hex);
+      } // if
+      bytes[i] = (byte) ((h << 4) | l);
+    } // for
+    return new Hash(bytes);
+  } // parse(String)
+
   /**
    * Determine how many bytes are in the hash.
    *
    * @return the number of bytes in the hash.
    */
   public int length() {
-    return hashData.length;
+    return (other == null) ? SIZE : other.length;
   } // length()
 
   /**
@@ -49,9 +180,16 @@ public class Hash {
    *
    * @param i The index of the byte to get, between 0 (inclusive) and length() (exclusive).
    * @return the ith byte
+   * @throws ArrayIndexOutOfBoundsException if i is not a valid index.
    */
   public byte get(int i) {
-    return hashData[i];
+    if (other != null) {
+      return other[i];
+    } // if
+    if (i < 0 || i >= SIZE) {
+      throw new ArrayIndexOutOfBoundsException(i);
+    } // if
+    return (byte) (word(i >>> 3) >>> (56 - 8 * (i & 7)));
   } // get()
 
   /**
@@ -60,24 +198,95 @@ public class Hash {
    * @return a copy of the bytes in the hash.
    */
   public byte[] getBytes() {
-    return Arrays.copyOf(hashData, this.length());
+    if (other != null) {
+      return Arrays.copyOf(other, other.length);
+    } // if
+    byte[] bytes = new byte[SIZE];
+    LONGS.set(bytes, 0, w0);
+    LONGS.set(bytes, 8, w1);
+    LONGS.set(bytes, 16, w2);
+    LONGS.set(bytes, 24, w3);
+    return bytes;
   } // getBytes()
 
+  /**
+   * Feed the bytes of the hash to a digest, without allocating.
+   *
+   * @param md The digest.
+   */
+  public void writeTo(MessageDigest md) {
+    if (other != null) {
+      md.update(other);
+    } else {
+      byte[] scratch = SCRATCH.get();
+      LONGS.set(scratch, 0, w0);
+      LONGS.set(scratch, 8, w1);
+      LONGS.set(scratch, 16, w2);
+      LONGS.set(scratch, 24, w3);
+      md.update(scratch, 0, SIZE);
+    } // if/else
+  } // writeTo(MessageDigest)
+
+  /**
+   * Put the bytes of the hash into a buffer, in order, whatever the buffer's byte order.
+   *
+   * @param buf The buffer, which must have length() bytes remaining.
+   */
+  public void writeTo(ByteBuffer buf) {
+    if (other != null) {
+      buf.put(other);
+    } else if (buf.order() == ByteOrder.BIG_ENDIAN) {
+      buf.putLong(w0).putLong(w1).putLong(w2).putLong(w3);
+    } else {
+      buf.putLong(Long.reverseBytes(w0)).putLong(Long.reverseBytes(w1))
+          .putLong(Long.reverseBytes(w2)).putLong(Long.reverseBytes(w3));
+    } // if/else
+  } // writeTo(ByteBuffer)
+
   /**
    * Convert to a hex string.
    *
    * @return the hash as a hex string.
    */
   public String toString() {
-    byte[] bytes = Arrays.copyOf(hashData, length());
-    StringBuilder sb = new StringBuilder();
-    for (byte b : bytes) {
-      sb.append(String.format("%02X", b));
+    int len = length();
+    char[] chars = new char[2 * len];
+    for (int i = 0; i < len; i++) {
+      int b = get(i) & 0xFF;
+      chars[2 * i] = HEX[b >>> 4];
+      chars[2 * i + 1] = HEX[b & 0xF];
     } //for
-
-    return sb.toString();
+    return new String(chars);
   } //toString()
 
+  /**
+   * Compare to another hash, treating the bytes as unsigned. Hashes are ordered by their first
+   * differing byte, and a hash comes before any longer hash it is a prefix of.
+   *
+   * @param that The hash to compare to.
+   * @return a negative number, zero, or a positive number as this hash comes before, equals, or
+   *     comes after that one.
+   */
+  public int compareTo(Hash that) {
+    if (this.other == null && that.other == null) {
+      for (int i = 0; i < 4; i++) {
+        int c = Long.compareUnsigned(this.word(i), that.word(i));
+        if (c != 0) {
+          return c;
+        } // if
+      } // for
+      return 0;
+    } // if
+    int len = Math.min(this.length(), that.length());
+    for (int i = 0; i < len; i++) {
+      int c = Byte.compareUnsigned(this.get(i), that.get(i));
+      if (c != 0) {
+        return c;
+      } // if
+    } // for
+    return Integer.compare(this.length(), that.length());
+  } // compareTo(Hash)
+
   /**
    * Determine if this is equal to another object.
    *
@@ -90,13 +299,19 @@ public class Hash {
 
   /**
    * Determine if this Hash is equal to another Hash.
-   * @param other Hash to compare to
+   * @param that Hash to compare to
    * @return true if the two Hashes are conceptually equal and false otherwise
    */
-  public boolean equals(Hash other) {
-    boolean temp = Arrays.equals(other.hashData, this.hashData);
-    return temp;
-  } // equals(Transaction)
+  public boolean equals(Hash that) {
+    if (this.code != that.code) {
+      return false;
+    } else if (this.other == null) {
+      return that.other == null && this.w0 == that.w0 && this.w1 == that.w1
+          && this.w2 == that.w2 && this.w3 == that.w3;
+    } else {
+      return Arrays.equals(this.other, that.other);
+    } // if/else
+  } // equals(Hash)
 
   /**
    * Get the hash code of this object.
@@ -104,6 +319,6 @@ public class Hash {
    * @return the hash code.
    */
   public int hashCode() {
-    return this.toString().hashCode();
+    return this.code;
   } // hashCode()
 } // class Hash
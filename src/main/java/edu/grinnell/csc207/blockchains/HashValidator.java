@@ -16,4 +16,26 @@ public interface HashValidator {
    */
   boolean isValid(Hash hash);
 
+  /**
+   * Build a validator that accepts hashes starting with some number of zero bytes.
+   *
+   * @param bytes
+   *   The number of leading bytes that must be zero.
+   *
+   * @return the validator.
+   */
+  static HashValidator leadingZeroBytes(int bytes) {
+    return (h) -> {
+      if (h.length() < bytes) {
+        return false;
+      } // if
+      for (int i = 0; i < bytes; i++) {
+        if (h.get(i) != 0) {
+          return false;
+        } // if
+      } // for
+      return true;
+    };
+  } // leadingZeroBytes(int)
+
 } // interface HashValidator
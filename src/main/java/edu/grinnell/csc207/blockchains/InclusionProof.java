@@ -0,0 +1,150 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact proof that a transaction is in a chain. The proof holds the transaction, the header
+ * of the block that contains it, and the Merkle path from that block's hash up to the root over
+ * blocks 0 through a checkpoint. A light client that trusts the checkpoint root can verify the
+ * proof without any other part of the chain.
+ *
+ * @author Sal & Koast
+ */
+public class InclusionProof {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The transaction being proven. */
+  private final Transaction transaction;
+
+  /** The header of the block that holds the transaction. */
+  private final BlockHeader header;
+
+  /** The number of the last block covered by the root. */
+  private final int checkpoint;
+
+  /** The sibling hashes from the leaf up to the root. */
+  private final Hash[] siblings;
+
+  /** Whether each sibling sits to the left of the path. */
+  private final boolean[] onLeft;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new proof.
+   *
+   * @param t The transaction being proven.
+   * @param head The header of the block that holds the transaction.
+   * @param check The number of the last block covered by the root.
+   * @param sibs The sibling hashes from the leaf up to the root.
+   * @param left Whether each sibling sits to the left of the path.
+   */
+  public InclusionProof(Transaction t, BlockHeader head, int check, List<Hash> sibs,
+      List<Boolean> left) {
+    this.transaction = t;
+    this.header = head;
+    this.checkpoint = check;
+    this.siblings = sibs.toArray(new Hash[0]);
+    this.onLeft = new boolean[left.size()];
+    for (int i = 0; i < this.onLeft.length; i++) {
+      this.onLeft[i] = left.get(i);
+    } // for
+  } // InclusionProof(Transaction, BlockHeader, int, List<Hash>, List<Boolean>)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the transaction being proven.
+   *
+   * @return the transaction.
+   */
+  public Transaction getTransaction() {
+    return this.transaction;
+  } // getTransaction()
+
+  /**
+   * Get the header of the block that holds the transaction.
+   *
+   * @return the header.
+   */
+  public BlockHeader getHeader() {
+    return this.header;
+  } // getHeader()
+
+  /**
+   * Get the number of the last block covered by the root.
+   *
+   * @return the checkpoint.
+   */
+  public int getCheckpoint() {
+    return this.checkpoint;
+  } // getCheckpoint()
+
+  /**
+   * Get the number of steps in the Merkle path.
+   *
+   * @return the length of the path.
+   */
+  public int pathLength() {
+    return this.siblings.length;
+  } // pathLength()
+
+  /**
+   * Get the sibling hashes from the leaf up to the root.
+   *
+   * @return the siblings.
+   */
+  List<Hash> getSiblings() {
+    return List.of(this.siblings);
+  } // getSiblings()
+
+  /**
+   * Get whether each sibling sits to the left of the path.
+   *
+   * @return the sides of the siblings.
+   */
+  List<Boolean> getSides() {
+    List<Boolean> result = new ArrayList<Boolean>(this.onLeft.length);
+    for (boolean left : this.onLeft) {
+      result.add(left);
+    } // for
+    return result;
+  } // getSides()
+
+  /**
+   * Check the proof against a trusted checkpoint root.
+   *
+   * @param root The root over blocks 0 through the checkpoint.
+   * @param validator The validator the chain was mined with.
+   * @return true if the transaction is provably in the block and the block under the root.
+   */
+  public boolean verify(Hash root, HashValidator validator) {
+    if (this.header.getNum() < 0 || this.header.getNum() > this.checkpoint) {
+      return false;
+    } // if
+    if (!validator.isValid(this.header.getHash())) {
+      return false;
+    } // if
+    if (!this.header.matches(this.transaction)) {
+      return false;
+    } // if
+    MessageDigest md = MerkleTree.digest();
+    Hash current = MerkleTree.leaf(md, this.header.getHash());
+    for (int i = 0; i < this.siblings.length; i++) {
+      if (this.onLeft[i]) {
+        current = MerkleTree.node(md, this.siblings[i], current);
+      } else {
+        current = MerkleTree.node(md, current, this.siblings[i]);
+      } // if/else
+    } // for
+    return current.equals(root);
+  } // verify(Hash, HashValidator)
+} // class InclusionProof
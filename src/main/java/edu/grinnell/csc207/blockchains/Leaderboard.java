@@ -0,0 +1,240 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ledger's accounts in order of balance, richest first, with ties broken by name. The
+ * accounts are kept in a treap (a binary search tree balanced by random priorities) in which
+ * each node knows the size of its subtree, so finding an account's rank takes O(log n) steps and
+ * listing k accounts from any starting balance takes O(log n + k).
+ *
+ * @author Sal & Koast
+ */
+class Leaderboard {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The root of the treap. */
+  private Ledger.Account root = null;
+
+  /** The state of the generator for priorities. */
+  private int seed = 0x2545F491;
+
+  /** The nodes before the key, after a split. */
+  private Ledger.Account splitBefore;
+
+  /** The remaining nodes, after a split. */
+  private Ledger.Account splitAfter;
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the size of a subtree.
+   *
+   * @param node The root of the subtree, or null.
+   * @return the number of accounts in the subtree.
+   */
+  static int size(Ledger.Account node) {
+    return (node == null) ? 0 : node.size;
+  } // size(Ledger.Account)
+
+  /**
+   * Recompute a node's subtree size from its children.
+   *
+   * @param node The node.
+   */
+  static void resize(Ledger.Account node) {
+    node.size = 1 + size(node.left) + size(node.right);
+  } // resize(Ledger.Account)
+
+  /**
+   * Determine if an account comes before a position in the order.
+   *
+   * @param acct The account.
+   * @param balance The balance at the position.
+   * @param name The name at the position.
+   * @return true if acct is richer, or as rich with an earlier name.
+   */
+  static boolean before(Ledger.Account acct, int balance, String name) {
+    return acct.balance > balance || (acct.balance == balance && acct.name.compareTo(name) < 0);
+  } // before(Ledger.Account, int, String)
+
+  /**
+   * Split a subtree into the accounts before a position (in splitBefore) and the rest (in
+   * splitAfter).
+   *
+   * @param node The root of the subtree.
+   * @param balance The balance at the position.
+   * @param name The name at the position.
+   */
+  private void split(Ledger.Account node, int balance, String name) {
+    if (node == null) {
+      splitBefore = null;
+      splitAfter = null;
+    } else if (before(node, balance, name)) {
+      split(node.right, balance, name);
+      node.right = splitBefore;
+      resize(node);
+      splitBefore = node;
+    } else {
+      split(node.left, balance, name);
+      node.left = splitAfter;
+      resize(node);
+      splitAfter = node;
+    } // if/else
+  } // split(Ledger.Account, int, String)
+
+  /**
+   * Join two subtrees.
+   *
+   * @param first A subtree whose accounts all come before those in second.
+   * @param second The other subtree.
+   * @return the root of the joined tree.
+   */
+  static Ledger.Account merge(Ledger.Account first, Ledger.Account second) {
+    if (first == null) {
+      return second;
+    } else if (second == null) {
+      return first;
+    } else if (first.priority > second.priority) {
+      first.right = merge(first.right, second);
+      resize(first);
+      return first;
+    } else {
+      second.left = merge(first, second.left);
+      resize(second);
+      return second;
+    } // if/else
+  } // merge(Ledger.Account, Ledger.Account)
+
+  /**
+   * Remove an account from a subtree.
+   *
+   * @param node The root of the subtree, which must contain acct.
+   * @param acct The account.
+   * @return the new root of the subtree.
+   */
+  static Ledger.Account remove(Ledger.Account node, Ledger.Account acct) {
+    if (node == acct) {
+      return merge(node.left, node.right);
+    } else if (before(acct, node.balance, node.name)) {
+      node.left = remove(node.left, acct);
+    } else {
+      node.right = remove(node.right, acct);
+    } // if/else
+    resize(node);
+    return node;
+  } // remove(Ledger.Account, Ledger.Account)
+
+  /**
+   * Find the accounts in order, starting at the first account with at most a given balance.
+   *
+   * @param most The largest balance to include.
+   * @param least The smallest balance to include.
+   * @param limit The most accounts to list.
+   * @return the names of the accounts.
+   */
+  private List<String> list(int most, int least, int limit) {
+    ArrayDeque<Ledger.Account> path = new ArrayDeque<Ledger.Account>();
+    Ledger.Account node = root;
+    while (node != null) {
+      if (node.balance > most) {
+        node = node.right;
+      } else {
+        path.push(node);
+        node = node.left;
+      } // if/else
+    } // while
+
+    List<String> result = new ArrayList<String>();
+    while (!path.isEmpty() && result.size() < limit) {
+      Ledger.Account next = path.pop();
+      if (next.balance < least) {
+        break;
+      } // if
+      result.add(next.name);
+      for (node = next.right; node != null; node = node.left) {
+        path.push(node);
+      } // for
+    } // while
+    return result;
+  } // list(int, int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add an account, which must not already be on the board.
+   *
+   * @param acct The account.
+   */
+  void insert(Ledger.Account acct) {
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    acct.priority = seed;
+    acct.left = null;
+    acct.right = null;
+    acct.size = 1;
+    split(root, acct.balance, acct.name);
+    root = merge(merge(splitBefore, acct), splitAfter);
+    splitBefore = null;
+    splitAfter = null;
+  } // insert(Ledger.Account)
+
+  /**
+   * Remove an account, which must be on the board with its current balance.
+   *
+   * @param acct The account.
+   */
+  void remove(Ledger.Account acct) {
+    root = remove(root, acct);
+  } // remove(Ledger.Account)
+
+  /**
+   * Find an account's position.
+   *
+   * @param acct The account, which must be on the board.
+   * @return the position, where the richest account is 1.
+   */
+  int rank(Ledger.Account acct) {
+    int rank = 0;
+    Ledger.Account node = root;
+    while (node != acct) {
+      if (before(acct, node.balance, node.name)) {
+        node = node.left;
+      } else {
+        rank += size(node.left) + 1;
+        node = node.right;
+      } // if/else
+    } // while
+    return rank + size(acct.left) + 1;
+  } // rank(Ledger.Account)
+
+  /**
+   * List the richest accounts.
+   *
+   * @param k The number of accounts to list.
+   * @return the names of up to k accounts, richest first.
+   */
+  List<String> top(int k) {
+    return list(Integer.MAX_VALUE, Integer.MIN_VALUE, k);
+  } // top(int)
+
+  /**
+   * List the accounts whose balances fall in a range.
+   *
+   * @param lo The smallest balance to include.
+   * @param hi The largest balance to include.
+   * @return the names of the accounts, richest first.
+   */
+  List<String> between(int lo, int hi) {
+    return list(hi, lo, Integer.MAX_VALUE);
+  } // between(int, int)
+} // class Leaderboard
@@ -0,0 +1,216 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The running balances of everyone who appears in a chain. The ledger is updated as blocks are
+ * appended and removed, so balance and funds checks never need to rescan the chain. Each account
+ * also counts the transactions that mention it, so that reverting the last transaction removes an
+ * account exactly when it was the only one that mentioned it. The accounts are also kept on a
+ * Leaderboard, ordered by balance.
+ *
+ * @author Sal & Koast
+ */
+class Ledger {
+  // +---------------+-----------------------------------------------
+  // | Local classes |
+  // +---------------+
+
+  /** One person's entry in the ledger, which is also its node on the leaderboard. */
+  static class Account {
+    /** The name of the account. */
+    final String name;
+
+    /** The current balance. */
+    int balance;
+
+    /** The number of transactions that mention this account. */
+    int refs;
+
+    /** The account's priority on the leaderboard. */
+    int priority;
+
+    /** The number of accounts in this account's subtree of the leaderboard. */
+    int size;
+
+    /** The richer accounts below this one on the leaderboard. */
+    Account left;
+
+    /** The poorer accounts below this one on the leaderboard. */
+    Account right;
+
+    /**
+     * Create an empty account.
+     *
+     * @param user The name of the account.
+     */
+    Account(String user) {
+      this.name = user;
+    } // Account(String)
+  } // class Account
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** All of the accounts, by name. */
+  private final HashMap<String, Account> accounts = new HashMap<String, Account>();
+
+  /** All of the accounts, by balance. */
+  private final Leaderboard board = new Leaderboard();
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Adjust one account.
+   *
+   * @param user The name of the account.
+   * @param delta The change in balance.
+   */
+  private void credit(String user, int delta) {
+    Account acct = this.accounts.get(user);
+    if (acct == null) {
+      acct = new Account(user);
+      acct.balance = delta;
+      this.accounts.put(user, acct);
+      this.board.insert(acct);
+    } else if (delta != 0) {
+      this.board.remove(acct);
+      acct.balance += delta;
+      this.board.insert(acct);
+    } // if/else
+    acct.refs++;
+  } // credit(String, int)
+
+  /**
+   * Undo an adjustment to one account.
+   *
+   * @param user The name of the account.
+   * @param delta The change in balance that is being undone.
+   */
+  private void uncredit(String user, int delta) {
+    Account acct = this.accounts.get(user);
+    if (--acct.refs == 0) {
+      this.accounts.remove(user);
+      this.board.remove(acct);
+    } else if (delta != 0) {
+      this.board.remove(acct);
+      acct.balance -= delta;
+      this.board.insert(acct);
+    } // if/else
+  } // uncredit(String, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Record a transaction.
+   *
+   * @param t The transaction.
+   */
+  void apply(Transaction t) {
+    if (!t.getSource().isEmpty()) {
+      credit(t.getSource(), -t.getAmount());
+    } // if
+    credit(t.getTarget(), t.getAmount());
+  } // apply(Transaction)
+
+  /**
+   * Undo the most recent record of a transaction.
+   *
+   * @param t The transaction, which must have been applied.
+   */
+  void revert(Transaction t) {
+    uncredit(t.getTarget(), t.getAmount());
+    if (!t.getSource().isEmpty()) {
+      uncredit(t.getSource(), -t.getAmount());
+    } // if
+  } // revert(Transaction)
+
+  /**
+   * Get someone's balance.
+   *
+   * @param user The name of the account.
+   * @return the balance, or 0 if the user has never appeared.
+   */
+  int balance(String user) {
+    Account acct = this.accounts.get(user);
+    return (acct == null) ? 0 : acct.balance;
+  } // balance(String)
+
+  /**
+   * Determine if the source of a transaction can pay for it. Deposits are always affordable.
+   *
+   * @param t The transaction.
+   * @return true if the transaction is a deposit or its source has the funds.
+   */
+  boolean canAfford(Transaction t) {
+    return t.getSource().isEmpty() || balance(t.getSource()) >= t.getAmount();
+  } // canAfford(Transaction)
+
+  /**
+   * Determine if someone has appeared in the ledger.
+   *
+   * @param user The name of the account.
+   * @return true if some recorded transaction mentions user.
+   */
+  boolean contains(String user) {
+    return this.accounts.containsKey(user);
+  } // contains(String)
+
+  /**
+   * Get the number of accounts.
+   *
+   * @return the number of accounts.
+   */
+  int size() {
+    return this.accounts.size();
+  } // size()
+
+  /**
+   * Get a snapshot of the names of all the accounts.
+   *
+   * @return an iterator over the names.
+   */
+  Iterator<String> users() {
+    return new ArrayList<String>(this.accounts.keySet()).iterator();
+  } // users()
+
+  /**
+   * List the richest accounts.
+   *
+   * @param k The number of accounts to list.
+   * @return the names of up to k accounts, richest first.
+   */
+  List<String> topN(int k) {
+    return this.board.top(k);
+  } // topN(int)
+
+  /**
+   * Find someone's position, counting from the richest.
+   *
+   * @param user The name of the account.
+   * @return the position, where the richest account is 1, or 0 if the user has never appeared.
+   */
+  int rank(String user) {
+    Account acct = this.accounts.get(user);
+    return (acct == null) ? 0 : this.board.rank(acct);
+  } // rank(String)
+
+  /**
+   * List the accounts whose balances fall in a range.
+   *
+   * @param lo The smallest balance to include.
+   * @param hi The largest balance to include.
+   * @return the names of the accounts, richest first.
+   */
+  List<String> usersWithBalanceBetween(int lo, int hi) {
+    return this.board.between(lo, hi);
+  } // usersWithBalanceBetween(int, int)
+} // class Ledger
@@ -0,0 +1,296 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only copy of a chain that follows the chain's BlockLog. The follower opens the log
+ * read-only and builds its own chain from it. It then applies each new record as the leader
+ * writes it, checking every block as it goes. Following never touches the leader's process, so
+ * any number of followers can answer queries without slowing the leader down.
+ *
+ * <p>Call poll to catch up once, or start to catch up whenever the log changes. Lock the chain
+ * while querying it, since the follower may be applying records, and never change it directly.
+ *
+ * @author Sal & Koast
+ */
+public class LogFollower implements Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The number of bytes usually read from the log at once. */
+  static final int BUFFER = 1 << 16;
+
+  /** The longest record we accept. */
+  static final int READ = 1 << 20;
+
+  /** The longest the follower waits between checks of the log, in milliseconds. */
+  static final long POLL_MILLIS = 5;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The log. */
+  private final Path file;
+
+  /** The open log. */
+  private final FileChannel channel;
+
+  /** The chain built from the log. */
+  private final BlockChain chain;
+
+  /** Where the next record starts. */
+  private long position;
+
+  /** The number of records applied. */
+  private long records;
+
+  /** The thread that follows the log, if started. */
+  private Thread follower;
+
+  /** Whether we have been closed. */
+  private volatile boolean closed;
+
+  /** Why following stopped, or null if it has not. */
+  private volatile IOException failure;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Open a log and apply every record in it.
+   *
+   * @param log The log file.
+   * @param validator The validator the leader uses.
+   * @throws IOException if the log cannot be read, is not a log, holds a bad block, or ends
+   *     because the leader stopped logging.
+   */
+  public LogFollower(Path log, HashValidator validator) throws IOException {
+    this.file = log;
+    this.channel = FileChannel.open(log, StandardOpenOption.READ);
+    ByteBuffer header = ByteBuffer.allocate(BlockLog.HEADER);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        channel.close();
+        throw new IOException(log + " is not a block log");
+      } // if
+    } // while
+    if (header.getInt(0) != BlockLog.MAGIC) {
+      channel.close();
+      throw new IOException(log + " is not a block log");
+    } // if
+    try {
+      this.chain = new BlockChain(validator, header.getLong(Integer.BYTES));
+    } catch (IllegalArgumentException e) {
+      channel.close();
+      throw new IOException(log + ": " + e.getMessage());
+    } // try/catch
+    this.position = BlockLog.HEADER;
+    this.records = 0;
+    this.closed = false;
+    this.failure = null;
+    poll();
+  } // LogFollower(Path, HashValidator)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Apply a run of appended blocks.
+   *
+   * @param run The blocks, which is emptied.
+   * @throws IOException if a block does not fit the chain.
+   */
+  private void flush(List<Block> run) throws IOException {
+    if (run.isEmpty()) {
+      return;
+    } // if
+    synchronized (chain) {
+      try {
+        chain.appendAll(run);
+      } catch (BatchAppendException e) {
+        throw new IOException(file + ": " + e.getMessage());
+      } // try/catch
+    } // synchronized
+    run.clear();
+  } // flush(List<Block>)
+
+  /**
+   * Catch up whenever the log changes, until we are closed.
+   */
+  private void follow() {
+    try (WatchService watcher = file.getFileSystem().newWatchService()) {
+      Path dir = file.toAbsolutePath().getParent();
+      dir.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
+      while (!closed) {
+        poll();
+        // Wake up on a change, or after POLL_MILLIS in case the watcher is slow.
+        WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          key.pollEvents();
+          key.reset();
+        } // if
+      } // while
+    } catch (IOException e) {
+      if (!closed) {
+        failure = e;
+      } // if
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // We are done.
+    } // try/catch
+  } // follow()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Apply every complete record written since the last poll. A record the leader has only
+   * partly written is left for the next poll.
+   *
+   * @return the number of records applied.
+   * @throws IOException if the log cannot be read, holds a bad record or block, or ends
+   *     because the leader stopped logging.
+   */
+  public synchronized int poll() throws IOException {
+    int applied = 0;
+    List<Block> run = new ArrayList<Block>();
+    CRC32 crc = new CRC32();
+    ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+    while (true) {
+      buf.clear();
+      int n = channel.read(buf, position);
+      if (n <= 0) {
+        break;
+      } // if
+      buf.flip();
+      int used = 0;
+      while (buf.remaining() >= Integer.BYTES) {
+        int len = buf.getInt(buf.position());
+        if (len <= 0 || len > READ) {
+          throw new IOException(file + ": bad record length " + len + " at " + position);
+        } // if
+        if (buf.remaining() < len + 2 * Integer.BYTES) {
+          break;
+        } // if
+        byte[] body = new byte[len];
+        buf.position(buf.position() + Integer.BYTES);
+        buf.get(body);
+        crc.reset();
+        crc.update(body);
+        if (buf.getInt() != (int) crc.getValue()) {
+          throw new IOException(file + ": bad checksum at " + position);
+        } // if
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte kind = in.readByte();
+        if (kind == BlockLog.APPEND) {
+          run.add(BlockCodec.read(in));
+        } else if (kind == BlockLog.FAILED) {
+          flush(run);
+          throw new IOException(file + ": the leader stopped logging: " + in.readUTF());
+        } else if (kind == BlockLog.REMOVE) {
+          flush(run);
+          int height = in.readInt();
+          synchronized (chain) {
+            if (chain.getSize() - 1 != height || !chain.removeLast()) {
+              throw new IOException(file + ": cannot remove block " + height);
+            } // if
+          } // synchronized
+        } else {
+          throw new IOException(file + ": unknown record kind " + kind);
+        } // if/else
+        position += len + 2 * Integer.BYTES;
+        used++;
+        applied++;
+      } // while
+      if (used == 0) {
+        if (buf.limit() == buf.capacity() && buf.capacity() < READ + 2 * Integer.BYTES) {
+          // The next record is bigger than our buffer.
+          buf = ByteBuffer.allocate(READ + 2 * Integer.BYTES);
+          continue;
+        } // if
+        break;
+      } // if
+    } // while
+    flush(run);
+    records += applied;
+    return applied;
+  } // poll()
+
+  /**
+   * Start catching up in the background whenever the log changes.
+   */
+  public synchronized void start() {
+    if (follower == null) {
+      follower = new Thread(this::follow, "log-follower");
+      follower.setDaemon(true);
+      follower.start();
+    } // if
+  } // start()
+
+  /**
+   * Get the chain built from the log. Lock it while using it.
+   *
+   * @return the chain.
+   */
+  public BlockChain getChain() {
+    return chain;
+  } // getChain()
+
+  /**
+   * Get the number of records applied so far.
+   *
+   * @return the number of records.
+   */
+  public synchronized long getRecords() {
+    return records;
+  } // getRecords()
+
+  /**
+   * Find out why following in the background stopped.
+   *
+   * @return the failure, or null if following has not failed.
+   */
+  public IOException getFailure() {
+    return failure;
+  } // getFailure()
+
+  /**
+   * Stop following and close the log.
+   *
+   * @throws IOException if the log cannot be closed.
+   */
+  public void close() throws IOException {
+    closed = true;
+    Thread thread;
+    synchronized (this) {
+      thread = follower;
+    } // synchronized
+    if (thread != null) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } // try/catch
+    } // if
+    channel.close();
+  } // close()
+} // class LogFollower
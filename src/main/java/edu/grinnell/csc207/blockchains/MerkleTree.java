@@ -0,0 +1,157 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Merkle tree over a run of block hashes. Leaves and interior nodes are hashed with different
+ * prefixes so that an interior node can never be passed off as a leaf. When a level has an odd
+ * number of nodes, the last one is carried up unchanged rather than paired with itself.
+ *
+ * @author Sal & Koast
+ */
+public class MerkleTree {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** Prefix for leaf hashes. */
+  static final byte LEAF = 0;
+
+  /** Prefix for interior hashes. */
+  static final byte NODE = 1;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** All of the levels of the tree, leaves first and the root last. */
+  private final List<Hash[]> levels;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a tree over the given block hashes.
+   *
+   * @param hashes The block hashes, in block order.
+   * @throws IllegalArgumentException if there are no hashes.
+   */
+  public MerkleTree(List<Hash> hashes) {
+    if (hashes.isEmpty()) {
+      throw new IllegalArgumentException("Cannot build a Merkle tree with no leaves.");
+    } // if
+    MessageDigest md = digest();
+    this.levels = new ArrayList<Hash[]>();
+    Hash[] level = new Hash[hashes.size()];
+    for (int i = 0; i < level.length; i++) {
+      level[i] = leaf(md, hashes.get(i));
+    } // for
+    this.levels.add(level);
+    while (level.length > 1) {
+      Hash[] up = new Hash[(level.length + 1) / 2];
+      for (int i = 0; i < up.length; i++) {
+        if (2 * i + 1 < level.length) {
+          up[i] = node(md, level[2 * i], level[2 * i + 1]);
+        } else {
+          up[i] = level[2 * i];
+        } // if/else
+      } // for
+      this.levels.add(up);
+      level = up;
+    } // while
+  } // MerkleTree(List<Hash>)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get a SHA-256 digest.
+   *
+   * @return a fresh digest.
+   */
+  static MessageDigest digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Cannot load hash algorithm", e);
+    } // try/catch
+  } // digest()
+
+  /**
+   * Compute the leaf hash for a block hash.
+   *
+   * @param md The digest to use.
+   * @param blockHash The hash of the block.
+   * @return the leaf hash.
+   */
+  static Hash leaf(MessageDigest md, Hash blockHash) {
+    md.update(LEAF);
+    blockHash.writeTo(md);
+    return new Hash(md.digest());
+  } // leaf(MessageDigest, Hash)
+
+  /**
+   * Compute the hash of an interior node.
+   *
+   * @param md The digest to use.
+   * @param left The left child.
+   * @param right The right child.
+   * @return the hash of the node.
+   */
+  static Hash node(MessageDigest md, Hash left, Hash right) {
+    md.update(NODE);
+    left.writeTo(md);
+    right.writeTo(md);
+    return new Hash(md.digest());
+  } // node(MessageDigest, Hash, Hash)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of leaves in the tree.
+   *
+   * @return the number of leaves.
+   */
+  public int size() {
+    return this.levels.get(0).length;
+  } // size()
+
+  /**
+   * Get the root of the tree.
+   *
+   * @return the root hash.
+   */
+  public Hash root() {
+    return this.levels.get(this.levels.size() - 1)[0];
+  } // root()
+
+  /**
+   * Get the sibling hashes on the path from a leaf to the root.
+   *
+   * @param index The index of the leaf.
+   * @param siblings The list to add the siblings to, from the bottom up.
+   * @param onLeft The list to add, for each sibling, whether it sits on the left.
+   * @throws IndexOutOfBoundsException if there is no such leaf.
+   */
+  public void path(int index, List<Hash> siblings, List<Boolean> onLeft) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("No leaf " + index);
+    } // if
+    for (int l = 0; l < this.levels.size() - 1; l++) {
+      Hash[] level = this.levels.get(l);
+      int sibling = index ^ 1;
+      if (sibling < level.length) {
+        siblings.add(level[sibling]);
+        onLeft.add(sibling < index);
+      } // if
+      index /= 2;
+    } // for
+  } // path(int, List<Hash>, List<Boolean>)
+} // class MerkleTree
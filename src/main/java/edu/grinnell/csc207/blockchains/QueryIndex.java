@@ -0,0 +1,203 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * The secondary indexes behind BlockChain.query. Heights are grouped into buckets of BUCKET
+ * blocks, and each bucket keeps the smallest and largest amount in it, the total, and the number
+ * of deposits, so a query can skip whole buckets that cannot match. Every transaction is also
+ * kept in order of amount, so a query for a narrow range of amounts can go straight to the
+ * blocks that hold them.
+ *
+ * <p>Removing a block keeps its bucket's smallest and largest amounts as they were. They are
+ * still bounds on the amounts in the bucket, which is all skipping needs.
+ *
+ * @author Sal & Koast
+ */
+class QueryIndex {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The number of heights in each bucket. */
+  static final int BUCKET = 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The smallest amount in each bucket. */
+  private int[] min = new int[16];
+
+  /** The largest amount in each bucket. */
+  private int[] max = new int[16];
+
+  /** The total of the amounts in each bucket. */
+  private long[] sum = new long[16];
+
+  /** The number of transactions in each bucket. */
+  private int[] count = new int[16];
+
+  /** The number of deposits in each bucket. */
+  private int[] deposits = new int[16];
+
+  /** Every transaction, as its amount in the high word and its height in the low word. */
+  private final TreeSet<Long> byAmount = new TreeSet<Long>();
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Pack an amount and a height into a key that sorts by amount, then height.
+   *
+   * @param amount The amount.
+   * @param height The height.
+   * @return the key.
+   */
+  static long key(int amount, int height) {
+    return ((long) amount << 32) | (height & 0xFFFFFFFFL);
+  } // key(int, int)
+
+  /**
+   * Make room for a bucket.
+   *
+   * @param bucket The number of the bucket.
+   */
+  private void grow(int bucket) {
+    if (bucket < count.length) {
+      return;
+    } // if
+    int old = count.length;
+    int length = Math.max(bucket + 1, old * 2);
+    min = Arrays.copyOf(min, length);
+    max = Arrays.copyOf(max, length);
+    sum = Arrays.copyOf(sum, length);
+    count = Arrays.copyOf(count, length);
+    deposits = Arrays.copyOf(deposits, length);
+  } // grow(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a transaction.
+   *
+   * @param height The height of its block.
+   * @param t The transaction.
+   */
+  void add(int height, Transaction t) {
+    int b = height / BUCKET;
+    grow(b);
+    int amount = t.getAmount();
+    if (count[b] == 0) {
+      min[b] = amount;
+      max[b] = amount;
+    } else {
+      min[b] = Math.min(min[b], amount);
+      max[b] = Math.max(max[b], amount);
+    } // if/else
+    sum[b] += amount;
+    count[b]++;
+    if (t.getSource().isEmpty()) {
+      deposits[b]++;
+    } // if
+    byAmount.add(key(amount, height));
+  } // add(int, Transaction)
+
+  /**
+   * Remove a transaction.
+   *
+   * @param height The height of its block.
+   * @param t The transaction, which must have been added.
+   */
+  void remove(int height, Transaction t) {
+    int b = height / BUCKET;
+    sum[b] -= t.getAmount();
+    count[b]--;
+    if (t.getSource().isEmpty()) {
+      deposits[b]--;
+    } // if
+    byAmount.remove(key(t.getAmount(), height));
+  } // remove(int, Transaction)
+
+  /**
+   * Determine if a bucket might hold a block that matches a query.
+   *
+   * @param b The number of the bucket.
+   * @param q The query.
+   * @return false if no block in the bucket can match.
+   */
+  boolean mayMatch(int b, TransactionQuery q) {
+    if (b >= count.length || count[b] == 0) {
+      return false;
+    } // if
+    if (max[b] < q.minAmount || min[b] > q.maxAmount) {
+      return false;
+    } // if
+    if (q.deposit != null) {
+      return q.deposit ? deposits[b] > 0 : deposits[b] < count[b];
+    } // if
+    return true;
+  } // mayMatch(int, TransactionQuery)
+
+  /**
+   * Count the blocks a scan of the buckets would look at.
+   *
+   * @param from The lowest height.
+   * @param to The highest height.
+   * @param q The query.
+   * @return the number of blocks in buckets that might match.
+   */
+  long scanCost(int from, int to, TransactionQuery q) {
+    long cost = 0;
+    for (int b = from / BUCKET; b <= to / BUCKET; b++) {
+      if (mayMatch(b, q)) {
+        cost += Math.min(to, (b + 1) * BUCKET - 1) - Math.max(from, b * BUCKET) + 1;
+      } // if
+    } // for
+    return cost;
+  } // scanCost(int, int, TransactionQuery)
+
+  /**
+   * Find the heights in a range whose amounts match a query, giving up if there are too many.
+   *
+   * @param from The lowest height.
+   * @param to The highest height.
+   * @param q The query.
+   * @param limit The most index entries to look at.
+   * @return the heights, in order, or null if more than limit entries have the right amounts.
+   */
+  int[] heights(int from, int to, TransactionQuery q, long limit) {
+    int[] result = new int[16];
+    int found = 0;
+    long seen = 0;
+    for (long k : byAmount.subSet(key(q.minAmount, 0), true, key(q.maxAmount, -1), true)) {
+      if (++seen > limit) {
+        return null;
+      } // if
+      int height = (int) k;
+      if (height >= from && height <= to) {
+        if (found == result.length) {
+          result = Arrays.copyOf(result, found * 2);
+        } // if
+        result[found++] = height;
+      } // if
+    } // for
+    result = Arrays.copyOf(result, found);
+    Arrays.sort(result);
+    return result;
+  } // heights(int, int, TransactionQuery, long)
+
+  /**
+   * Get the total of the amounts in a bucket.
+   *
+   * @param b The number of the bucket.
+   * @return the total.
+   */
+  long sum(int b) {
+    return (b < sum.length) ? sum[b] : 0;
+  } // sum(int)
+} // class QueryIndex
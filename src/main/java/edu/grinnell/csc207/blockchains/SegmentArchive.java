@@ -0,0 +1,515 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Old blocks sealed into immutable, compressed segment files. Each segment holds a run of
+ * consecutive blocks and a dictionary of the names in them. Its blocks are grouped into chunks
+ * of CHUNK blocks, and each chunk is compressed on its own with Deflater.
+ *
+ * <p>A segment stores each block's names as numbers into the dictionary. It also stores the
+ * block's amount and nonce. It does not store any hashes except the previous hash at the start
+ * of each chunk. Each block's hash is recomputed when it is read, and checked against the next
+ * block's previous hash. A small index of chunk offsets stays in memory, so fetching any block
+ * takes one read and one chunk's decompression.
+ *
+ * @author Sal & Koast
+ */
+public class SegmentArchive implements Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The number of blocks in each chunk. */
+  public static final int CHUNK = 64;
+
+  /** The first four bytes of a segment file. */
+  static final int MAGIC = 0x5345474d;
+
+  /** Each thread's inflater, since making one allocates native memory. */
+  static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+  // +---------------+-----------------------------------------------
+  // | Local classes |
+  // +---------------+
+
+  /** What we keep in memory about one sealed segment. */
+  static class Segment {
+    /** The number of the first block. */
+    final int first;
+
+    /** The number of blocks. */
+    final int count;
+
+    /** The names, by number. */
+    final String[] names;
+
+    /** Where each chunk starts in the file, with one more entry for the end of the last. */
+    final long[] offsets;
+
+    /** The size of each chunk once decompressed. */
+    final int[] sizes;
+
+    /** The previous hash of the first block of each chunk. */
+    final Hash[] prevHashes;
+
+    /** The hash of the last block. */
+    final Hash last;
+
+    /** The open file. */
+    final FileChannel channel;
+
+    /**
+     * Read a segment's header.
+     *
+     * @param file The segment file.
+     * @throws IOException if the file cannot be read or is not a segment.
+     */
+    Segment(Path file) throws IOException {
+      this.channel = FileChannel.open(file, StandardOpenOption.READ);
+      ByteBuffer len = ByteBuffer.allocate(Integer.BYTES);
+      readFully(channel, len, 0);
+      ByteBuffer header = ByteBuffer.allocate(len.getInt(0));
+      readFully(channel, header, Integer.BYTES);
+      DataInput in = new DataInputStream(new ByteArrayInputStream(header.array()));
+      if (in.readInt() != MAGIC) {
+        channel.close();
+        throw new IOException(file + " is not a segment");
+      } // if
+      this.first = in.readInt();
+      this.count = in.readInt();
+      this.last = BlockCodec.readHash(in);
+      this.names = new String[in.readInt()];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = in.readUTF();
+      } // for
+      int chunks = in.readInt();
+      this.offsets = new long[chunks + 1];
+      this.sizes = new int[chunks];
+      this.prevHashes = new Hash[chunks];
+      long base = Integer.BYTES + header.capacity();
+      for (int i = 0; i < chunks; i++) {
+        offsets[i] = base + in.readLong();
+        sizes[i] = in.readInt();
+        prevHashes[i] = BlockCodec.readHash(in);
+      } // for
+      offsets[chunks] = base + in.readLong();
+    } // Segment(Path)
+
+    /**
+     * Read a name's number and look it up.
+     *
+     * @param in Where to read the number.
+     * @return the name.
+     * @throws IOException if the number is not in the dictionary.
+     */
+    String name(DataInput in) throws IOException {
+      long id = readVarint(in);
+      if (id < 0 || id >= names.length) {
+        throw new IOException("Unknown name " + id + " in segment " + first);
+      } // if
+      return names[(int) id];
+    } // name(DataInput)
+
+    /**
+     * Read and decompress one chunk, checking that its blocks fit together.
+     *
+     * @param c The number of the chunk.
+     * @return the blocks in the chunk.
+     * @throws IOException if the chunk cannot be read or does not fit together.
+     */
+    Block[] chunk(int c) throws IOException {
+      ByteBuffer packed = ByteBuffer.allocate((int) (offsets[c + 1] - offsets[c]));
+      readFully(channel, packed, offsets[c]);
+      byte[] raw = new byte[sizes[c]];
+      Inflater inflater = INFLATER.get();
+      try {
+        inflater.reset();
+        inflater.setInput(packed.array());
+        if (inflater.inflate(raw) != raw.length) {
+          throw new IOException("Short chunk " + c + " in segment " + first);
+        } // if
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupt chunk " + c + " in segment " + first, e);
+      } // try/catch
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+      int start = first + c * CHUNK;
+      Block[] blocks = new Block[Math.min(CHUNK, first + count - start)];
+      Hash prev = prevHashes[c];
+      for (int i = 0; i < blocks.length; i++) {
+        String source = name(in);
+        String target = name(in);
+        int amount = (int) unzigzag(readVarint(in));
+        long nonce = unzigzag(readVarint(in));
+        blocks[i] = new Block(start + i, new Transaction(source, target, amount), prev, nonce);
+        prev = blocks[i].getHash();
+      } // for
+      Hash expected = (c + 1 < prevHashes.length) ? prevHashes[c + 1] : last;
+      if (!prev.equals(expected)) {
+        throw new IOException("Chunk " + c + " of segment " + first + " does not match");
+      } // if
+      return blocks;
+    } // chunk(int)
+  } // class Segment
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The directory that holds the segments. */
+  private final Path dir;
+
+  /** The level of compression. */
+  private final int level;
+
+  /** The sealed segments, oldest first. */
+  private final List<Segment> segments;
+
+  /** The number of blocks sealed. */
+  private int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an empty archive in a directory, which should not already hold segments.
+   *
+   * @param directory The directory, which is created if need be.
+   * @throws IOException if the directory cannot be created.
+   */
+  public SegmentArchive(Path directory) throws IOException {
+    this(directory, Deflater.BEST_COMPRESSION);
+  } // SegmentArchive(Path)
+
+  /**
+   * Create an empty archive in a directory, with a given level of compression.
+   *
+   * @param directory The directory, which is created if need be.
+   * @param compression The Deflater level, from 0 (fastest) to 9 (smallest).
+   * @throws IOException if the directory cannot be created.
+   */
+  public SegmentArchive(Path directory, int compression) throws IOException {
+    this.dir = Files.createDirectories(directory);
+    this.level = compression;
+    this.segments = new ArrayList<Segment>();
+    this.size = 0;
+  } // SegmentArchive(Path, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Read from a channel until a buffer is full.
+   *
+   * @param channel The channel.
+   * @param buf The buffer.
+   * @param position Where in the channel to start.
+   * @throws IOException if the channel ends first.
+   */
+  static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+    while (buf.hasRemaining()) {
+      int n = channel.read(buf, position + buf.position());
+      if (n < 0) {
+        throw new IOException("Segment file is truncated");
+      } // if
+    } // while
+  } // readFully(FileChannel, ByteBuffer, long)
+
+  /**
+   * Write an unsigned number in seven-bit groups, low group first.
+   *
+   * @param out Where to write it.
+   * @param value The number.
+   * @throws IOException if the write fails.
+   */
+  static void writeVarint(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    } // while
+    out.writeByte((int) value);
+  } // writeVarint(DataOutput, long)
+
+  /**
+   * Read a number written by writeVarint.
+   *
+   * @param in Where to read it.
+   * @return the number.
+   * @throws IOException if the read fails.
+   */
+  static long readVarint(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      } // if
+    } // for
+    throw new IOException("Malformed number");
+  } // readVarint(DataInput)
+
+  /**
+   * Map signed numbers to unsigned ones so small magnitudes stay small.
+   *
+   * @param value The number.
+   * @return the mapped number.
+   */
+  static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  } // zigzag(long)
+
+  /**
+   * Undo zigzag.
+   *
+   * @param value The mapped number.
+   * @return the number.
+   */
+  static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  } // unzigzag(long)
+
+  /**
+   * Find the segment that holds a block.
+   *
+   * @param height The number of the block, which must be sealed.
+   * @return the segment.
+   */
+  private Segment segmentFor(int height) {
+    int lo = 0;
+    int hi = segments.size() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (segments.get(mid).first <= height) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      } // if/else
+    } // while
+    return segments.get(lo);
+  } // segmentFor(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Seal the next run of blocks into a new segment.
+   *
+   * @param blocks The blocks, which must continue from the last sealed block and still hold
+   *     their transactions.
+   * @throws IOException if the segment cannot be written.
+   * @throws IllegalArgumentException if the blocks do not continue the archive.
+   */
+  public void seal(List<Block> blocks) throws IOException {
+    if (blocks.isEmpty()) {
+      return;
+    } // if
+    for (int i = 0; i < blocks.size(); i++) {
+      if (blocks.get(i).getNum() != size + i || blocks.get(i).isPruned()) {
+        throw new IllegalArgumentException("Cannot seal block " + blocks.get(i).getNum()
+            + " after " + size + " sealed blocks");
+      } // if
+    } // for
+
+    HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    List<String> names = new ArrayList<String>();
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    ByteArrayOutputStream index = new ByteArrayOutputStream();
+    DataOutputStream indexOut = new DataOutputStream(index);
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    DataOutputStream rawOut = new DataOutputStream(raw);
+    byte[] buffer = new byte[8192];
+    Deflater deflater = new Deflater(level);
+    try {
+      for (int start = 0; start < blocks.size(); start += CHUNK) {
+        raw.reset();
+        int end = Math.min(start + CHUNK, blocks.size());
+        for (int i = start; i < end; i++) {
+          Transaction t = blocks.get(i).getTransaction();
+          for (String name : new String[] {t.getSource(), t.getTarget()}) {
+            Integer id = ids.get(name);
+            if (id == null) {
+              id = names.size();
+              ids.put(name, id);
+              names.add(name);
+            } // if
+            writeVarint(rawOut, id);
+          } // for
+          writeVarint(rawOut, zigzag(t.getAmount()));
+          writeVarint(rawOut, zigzag(blocks.get(i).getNonce()));
+        } // for
+        indexOut.writeLong(data.size());
+        indexOut.writeInt(raw.size());
+        BlockCodec.writeHash(indexOut, blocks.get(start).getPrevHash());
+        deflater.reset();
+        deflater.setInput(raw.toByteArray());
+        deflater.finish();
+        while (!deflater.finished()) {
+          data.write(buffer, 0, deflater.deflate(buffer));
+        } // while
+      } // for
+      indexOut.writeLong(data.size());
+    } finally {
+      deflater.end();
+    } // try/finally
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(header);
+    out.writeInt(MAGIC);
+    out.writeInt(size);
+    out.writeInt(blocks.size());
+    BlockCodec.writeHash(out, blocks.get(blocks.size() - 1).getHash());
+    out.writeInt(names.size());
+    for (String name : names) {
+      out.writeUTF(name);
+    } // for
+    out.writeInt((blocks.size() + CHUNK - 1) / CHUNK);
+    index.writeTo(out);
+
+    Path file = dir.resolve(String.format("segment-%010d.seg", size));
+    Path tmp = Files.createTempFile(dir, "segment", ".tmp");
+    try (DataOutputStream fileOut = new DataOutputStream(Files.newOutputStream(tmp))) {
+      fileOut.writeInt(header.size());
+      header.writeTo(fileOut);
+      data.writeTo(fileOut);
+    } // try
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    segments.add(new Segment(file));
+    size += blocks.size();
+  } // seal(List<Block>)
+
+  /**
+   * Get the number of blocks sealed, which is also the number of the next block to seal.
+   *
+   * @return the number of blocks.
+   */
+  public int size() {
+    return size;
+  } // size()
+
+  /**
+   * Fetch a sealed block.
+   *
+   * @param height The number of the block.
+   * @return a copy of the block, not linked to any other block.
+   * @throws IOException if the segment cannot be read or is corrupt.
+   * @throws IndexOutOfBoundsException if the block has not been sealed.
+   */
+  public Block get(int height) throws IOException {
+    Block[] blocks = chunkFor(height);
+    return blocks[height - blocks[0].getNum()];
+  } // get(int)
+
+  /**
+   * Find the first block in the chunk that holds a sealed block.
+   *
+   * @param height The number of the block, which must be sealed.
+   * @return the number of the first block in its chunk.
+   */
+  int chunkStart(int height) {
+    Segment seg = segmentFor(height);
+    return seg.first + (height - seg.first) / CHUNK * CHUNK;
+  } // chunkStart(int)
+
+  /**
+   * Fetch every block in the chunk that holds a sealed block.
+   *
+   * @param height The number of the block.
+   * @return copies of the blocks in its chunk, in order.
+   * @throws IOException if the segment cannot be read or is corrupt.
+   * @throws IndexOutOfBoundsException if the block has not been sealed.
+   */
+  Block[] chunkFor(int height) throws IOException {
+    if (height < 0 || height >= size) {
+      throw new IndexOutOfBoundsException("Block " + height + " is not archived");
+    } // if
+    Segment seg = segmentFor(height);
+    return seg.chunk((height - seg.first) / CHUNK);
+  } // chunkFor(int)
+
+  /**
+   * Iterate over the sealed blocks, decompressing one chunk at a time.
+   *
+   * @return an iterator over copies of the blocks, oldest first.
+   * @throws UncheckedIOException from next if a segment cannot be read or is corrupt.
+   */
+  public Iterator<Block> iterator() {
+    return new Iterator<Block>() {
+      private int next = 0;
+      private Block[] chunk = new Block[0];
+      private int inChunk = 0;
+
+      public boolean hasNext() {
+        return next < size;
+      } // hasNext()
+
+      public Block next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        if (inChunk == chunk.length) {
+          Segment seg = segmentFor(next);
+          try {
+            chunk = seg.chunk((next - seg.first) / CHUNK);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } // try/catch
+          inChunk = 0;
+        } // if
+        next++;
+        return chunk[inChunk++];
+      } // next()
+    };
+  } // iterator()
+
+  /**
+   * Get the number of bytes the segment files take on disk.
+   *
+   * @return the number of bytes.
+   * @throws IOException if a segment file cannot be examined.
+   */
+  public long diskBytes() throws IOException {
+    long total = 0;
+    for (Segment seg : segments) {
+      total += seg.channel.size();
+    } // for
+    return total;
+  } // diskBytes()
+
+  /**
+   * Close the segment files.
+   *
+   * @throws IOException if a file cannot be closed.
+   */
+  public void close() throws IOException {
+    for (Segment seg : segments) {
+      seg.channel.close();
+    } // for
+  } // close()
+} // class SegmentArchive
@@ -0,0 +1,368 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ledger spread over several independent chains, called shards, so that blocks for different
+ * accounts can be mined at the same time. Each account lives on one shard, chosen by hashing its
+ * name. Each shard has its own thread that mines and appends its blocks in the order they were
+ * submitted.
+ *
+ * <p>A transfer between accounts on different shards takes two blocks. First the source's shard
+ * records a debit from the source to ESCROW. Then the target's shard records a credit from ESCROW
+ * to the target. Money in flight between the two steps shows up as escrowed. When no transfers
+ * are in flight, the ESCROW balances of all the shards add up to 0. If the credit cannot be
+ * recorded, the source's shard records a refund from ESCROW back to the source instead.
+ *
+ * <p>Queries lock one shard at a time, so they may see a transfer's debit without its credit.
+ *
+ * @author Sal & Koast
+ */
+public class ShardedLedger implements Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The account that holds money moving between shards. Users may not use this name. */
+  public static final String ESCROW = "#xfer";
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The shards. */
+  private final BlockChain[] shards;
+
+  /** The thread that mines for each shard. */
+  private final ExecutorService[] lanes;
+
+  /** Whether to reject transfers whose source lacks the funds. */
+  private volatile boolean enforceFunds;
+
+  /** The number of transactions submitted but not yet finished. */
+  private int pending;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a ledger with a number of empty shards. The genesis block is mined once and shared by
+   * every shard.
+   *
+   * @param validator The validator every shard uses.
+   * @param count The number of shards.
+   * @throws IllegalArgumentException if count is not positive.
+   */
+  public ShardedLedger(HashValidator validator, int count) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("Need at least one shard, not " + count);
+    } // if
+    this.shards = new BlockChain[count];
+    this.lanes = new ExecutorService[count];
+    this.shards[0] = new BlockChain(validator);
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        this.shards[i] = new BlockChain(validator, shards[0].getGenesisNonce());
+      } // if
+      String name = "shard-" + i;
+      this.lanes[i] = Executors.newSingleThreadExecutor((r) -> {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+      });
+    } // for
+    this.enforceFunds = false;
+    this.pending = 0;
+  } // ShardedLedger(HashValidator, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Mine a transaction onto a shard and append it. Usually only the shard's own thread calls
+   * this, but refunds may come from another shard's thread, so if another block lands while we
+   * mine, we mine again on top of it.
+   *
+   * @param shard The number of the shard.
+   * @param t The transaction.
+   */
+  private void record(int shard, Transaction t) {
+    BlockChain chain = shards[shard];
+    while (true) {
+      Block last;
+      synchronized (chain) {
+        last = chain.getLast();
+      } // synchronized
+      Block blk = new Block(last.getNum() + 1, t, last.getHash(), chain.getValidator());
+      synchronized (chain) {
+        if (chain.getLast() == last) {
+          chain.append(blk);
+          return;
+        } // if
+      } // synchronized
+    } // while
+  } // record(int, Transaction)
+
+  /**
+   * Give back a transfer that was debited to ESCROW but could not be credited, and finish it
+   * exceptionally.
+   *
+   * @param from The number of the source's shard.
+   * @param t The transfer.
+   * @param done The transfer's future.
+   * @param cause Why the credit failed.
+   */
+  private void refund(int from, Transaction t, CompletableFuture<Void> done,
+      RuntimeException cause) {
+    try {
+      record(from, new Transaction(ESCROW, t.getSource(), t.getAmount()));
+    } catch (RuntimeException e) {
+      cause.addSuppressed(e);
+    } finally {
+      done.completeExceptionally(cause);
+    } // try/catch/finally
+  } // refund(int, Transaction, CompletableFuture<Void>, RuntimeException)
+
+  /**
+   * Check that the source of a transaction can pay for it, if we are enforcing funds. Only the
+   * source's own shard thread calls this, so the balance cannot change underneath us.
+   *
+   * @param shard The number of the source's shard.
+   * @param t The transaction.
+   * @throws IllegalArgumentException if the source lacks the funds.
+   */
+  private void checkFunds(int shard, Transaction t) {
+    if (!enforceFunds || t.getSource().isEmpty()) {
+      return;
+    } // if
+    if (t.getAmount() < 0) {
+      throw new IllegalArgumentException("Transaction amount is negative.");
+    } // if
+    int balance = balance(t.getSource());
+    if (balance < t.getAmount()) {
+      throw new IllegalArgumentException("Insufficient funds: " + t.getSource() + " has "
+          + balance + " but needs " + t.getAmount() + ".");
+    } // if
+  } // checkFunds(int, Transaction)
+
+  /**
+   * Note that a submitted transaction has finished.
+   */
+  private synchronized void finished() {
+    if (--pending == 0) {
+      notifyAll();
+    } // if
+  } // finished()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Find the shard an account lives on.
+   *
+   * @param user The name of the account.
+   * @return the number of the shard.
+   */
+  public int shardOf(String user) {
+    long h = user.hashCode() * 0x9e3779b97f4a7c15L;
+    return (int) Math.floorMod(h ^ (h >>> 32), (long) shards.length);
+  } // shardOf(String)
+
+  /**
+   * Queue a transaction to be mined on the shards it touches. Deposits go to the target's shard.
+   * Transactions submitted for the same shard are mined in the order they were submitted, but a
+   * transfer to another shard is credited only after it is debited, so the target should not
+   * spend the money until the future completes.
+   *
+   * @param t The transaction.
+   * @return a future that completes once every block for the transaction has been appended, or
+   *     completes exceptionally with an IllegalArgumentException if the source lacks the funds,
+   *     or with the reason a transfer could not be credited once it has been refunded.
+   * @throws IllegalArgumentException if the transaction mentions ESCROW.
+   * @throws IllegalStateException if the ledger has been closed.
+   */
+  public CompletableFuture<Void> submit(Transaction t) {
+    if (ESCROW.equals(t.getSource()) || ESCROW.equals(t.getTarget())) {
+      throw new IllegalArgumentException(ESCROW + " is reserved");
+    } // if
+    int to = shardOf(t.getTarget());
+    int from = t.getSource().isEmpty() ? to : shardOf(t.getSource());
+    CompletableFuture<Void> done = new CompletableFuture<Void>();
+    synchronized (this) {
+      if (lanes[from].isShutdown()) {
+        throw new IllegalStateException("The ledger has been closed");
+      } // if
+      pending++;
+    } // synchronized
+    done.whenComplete((result, failure) -> finished());
+    try {
+      lanes[from].execute(() -> {
+        try {
+          checkFunds(from, t);
+          if (from == to) {
+            record(from, t);
+            done.complete(null);
+            return;
+          } // if
+          record(from, new Transaction(t.getSource(), ESCROW, t.getAmount()));
+        } catch (RuntimeException e) {
+          done.completeExceptionally(e);
+          return;
+        } // try/catch
+        try {
+          lanes[to].execute(() -> {
+            try {
+              record(to, new Transaction(ESCROW, t.getTarget(), t.getAmount()));
+              done.complete(null);
+            } catch (RuntimeException e) {
+              refund(from, t, done, e);
+            } // try/catch
+          });
+        } catch (RejectedExecutionException e) {
+          refund(from, t, done, e);
+        } // try/catch
+      });
+    } catch (RejectedExecutionException e) {
+      done.completeExceptionally(e);
+      throw new IllegalStateException("The ledger has been closed");
+    } // try/catch
+    return done;
+  } // submit(Transaction)
+
+  /**
+   * Wait until every submitted transaction has finished.
+   *
+   * @throws InterruptedException if we are interrupted while waiting.
+   */
+  public synchronized void flush() throws InterruptedException {
+    while (pending > 0) {
+      wait();
+    } // while
+  } // flush()
+
+  /**
+   * Find one person's balance.
+   *
+   * @param user The name of the account.
+   * @return the balance, or 0 if the user is not in the ledger.
+   */
+  public int balance(String user) {
+    BlockChain chain = shards[shardOf(user)];
+    synchronized (chain) {
+      return chain.balance(user);
+    } // synchronized
+  } // balance(String)
+
+  /**
+   * List everyone who appears in the ledger, except ESCROW.
+   *
+   * @return an iterator over the names, in alphabetical order.
+   */
+  public Iterator<String> users() {
+    TreeSet<String> result = new TreeSet<String>();
+    for (BlockChain chain : shards) {
+      synchronized (chain) {
+        Iterator<String> users = chain.users();
+        while (users.hasNext()) {
+          result.add(users.next());
+        } // while
+      } // synchronized
+    } // for
+    result.remove(ESCROW);
+    return result.iterator();
+  } // users()
+
+  /**
+   * Find how much money has been debited on one shard but not yet credited on another.
+   *
+   * @return the amount in flight.
+   */
+  public long escrowed() {
+    long total = 0;
+    for (BlockChain chain : shards) {
+      synchronized (chain) {
+        total += chain.balance(ESCROW);
+      } // synchronized
+    } // for
+    return total;
+  } // escrowed()
+
+  /**
+   * Determine if every shard is correct.
+   *
+   * @return true if every shard is correct, false otherwise.
+   */
+  public boolean isCorrect() {
+    for (BlockChain chain : shards) {
+      synchronized (chain) {
+        if (!chain.isCorrect()) {
+          return false;
+        } // if
+      } // synchronized
+    } // for
+    return true;
+  } // isCorrect()
+
+  /**
+   * Get the number of shards.
+   *
+   * @return the number of shards.
+   */
+  public int shards() {
+    return shards.length;
+  } // shards()
+
+  /**
+   * Get one shard. Lock the shard while using it, since its thread may be appending to it.
+   *
+   * @param i The number of the shard.
+   * @return the shard.
+   */
+  public BlockChain shard(int i) {
+    return shards[i];
+  } // shard(int)
+
+  /**
+   * Turn enforcement of funds on or off. When it is on, transfers whose source does not have at
+   * least the amount being transferred finish exceptionally and record nothing.
+   *
+   * @param enforce Whether to enforce funds.
+   */
+  public void setEnforceFunds(boolean enforce) {
+    this.enforceFunds = enforce;
+  } // setEnforceFunds(boolean)
+
+  /**
+   * Finish every submitted transaction and stop the shards' threads.
+   */
+  public void close() {
+    try {
+      flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } // try/catch
+    synchronized (this) {
+      for (ExecutorService lane : lanes) {
+        lane.shutdown();
+      } // for
+    } // synchronized
+    for (ExecutorService lane : lanes) {
+      try {
+        lane.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } // try/catch
+    } // for
+  } // close()
+} // class ShardedLedger
@@ -1,5 +1,7 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.nio.charset.StandardCharsets;
+
 /** A simple transaction. */
 public class Transaction {
   // +--------+------------------------------------------------------
@@ -15,6 +17,12 @@ public class Transaction {
   /** Amount transferred. */
   private int amount;
 
+  /**
+   * The bytes that stand for the transaction in a block's hash: the source and target in UTF-8,
+   * then the amount as four big-endian bytes.
+   */
+  private final byte[] encoded;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -31,6 +39,15 @@ public class Transaction {
     this.source = src;
     this.target = tgt;
     this.amount = amt;
+    byte[] src8 = src.getBytes(StandardCharsets.UTF_8);
+    byte[] tgt8 = tgt.getBytes(StandardCharsets.UTF_8);
+    this.encoded = new byte[src8.length + tgt8.length + Integer.BYTES];
+    System.arraycopy(src8, 0, this.encoded, 0, src8.length);
+    System.arraycopy(tgt8, 0, this.encoded, src8.length, tgt8.length);
+    int end = this.encoded.length;
+    for (int i = 1; i <= Integer.BYTES; i++) {
+      this.encoded[end - i] = (byte) (amt >>> (8 * (i - 1)));
+    } // for
   } // Transaction(src, tgt, amt)
 
   // +---------+-----------------------------------------------------
@@ -64,6 +81,16 @@ public class Transaction {
     return this.amount;
   } // getAmount
 
+  /**
+   * Get the bytes that stand for the transaction in a block's hash. These are computed once, and
+   * the caller must not change them.
+   *
+   * @return the source and target in UTF-8, followed by the amount as four big-endian bytes.
+   */
+  byte[] encoded() {
+    return this.encoded;
+  } // encoded()
+
   /**
    * Convert to string form.
    *
@@ -0,0 +1,138 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * A description of the blocks to find with BlockChain.query: a range of heights, plus optional
+ * conditions on the amount, source, and target of each block's transaction. Each method narrows
+ * the query and returns it, so conditions can be chained.
+ *
+ * <pre>
+ *   chain.query(new TransactionQuery().heights(a, b).amountBetween(10000, Integer.MAX_VALUE));
+ * </pre>
+ *
+ * @author Sal & Koast
+ */
+public class TransactionQuery {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The lowest height to include. */
+  int fromHeight = 0;
+
+  /** The highest height to include. */
+  int toHeight = Integer.MAX_VALUE;
+
+  /** The smallest amount to include. */
+  int minAmount = Integer.MIN_VALUE;
+
+  /** The largest amount to include. */
+  int maxAmount = Integer.MAX_VALUE;
+
+  /** The source to include, or null for any. */
+  String source = null;
+
+  /** The target to include, or null for any. */
+  String target = null;
+
+  /** True for deposits only, false for transfers only, or null for both. */
+  Boolean deposit = null;
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Include only blocks in a range of heights.
+   *
+   * @param from The lowest height.
+   * @param to The highest height.
+   * @return this query.
+   */
+  public TransactionQuery heights(int from, int to) {
+    this.fromHeight = from;
+    this.toHeight = to;
+    return this;
+  } // heights(int, int)
+
+  /**
+   * Include only transactions whose amounts fall in a range. If lo is above hi, nothing matches.
+   *
+   * @param lo The smallest amount.
+   * @param hi The largest amount.
+   * @return this query.
+   */
+  public TransactionQuery amountBetween(int lo, int hi) {
+    this.minAmount = lo;
+    this.maxAmount = hi;
+    return this;
+  } // amountBetween(int, int)
+
+  /**
+   * Include only transfers from one user.
+   *
+   * @param user The source.
+   * @return this query.
+   */
+  public TransactionQuery source(String user) {
+    this.source = user;
+    return this;
+  } // source(String)
+
+  /**
+   * Include only transactions to one user.
+   *
+   * @param user The target.
+   * @return this query.
+   */
+  public TransactionQuery target(String user) {
+    this.target = user;
+    return this;
+  } // target(String)
+
+  /**
+   * Include only deposits, which have an empty source.
+   *
+   * @return this query.
+   */
+  public TransactionQuery depositsOnly() {
+    this.deposit = true;
+    return this;
+  } // depositsOnly()
+
+  /**
+   * Include only transfers, which have a source.
+   *
+   * @return this query.
+   */
+  public TransactionQuery transfersOnly() {
+    this.deposit = false;
+    return this;
+  } // transfersOnly()
+
+  /**
+   * Determine if an amount is in range.
+   *
+   * @param amount The amount.
+   * @return true if the query includes the amount.
+   */
+  boolean amountMatches(int amount) {
+    return amount >= minAmount && amount <= maxAmount;
+  } // amountMatches(int)
+
+  /**
+   * Determine if a block matches the query. Pruned blocks never match.
+   *
+   * @param blk The block.
+   * @return true if the query includes the block.
+   */
+  public boolean matches(Block blk) {
+    if (blk.isPruned() || blk.getNum() < fromHeight || blk.getNum() > toHeight) {
+      return false;
+    } // if
+    Transaction t = blk.getTransaction();
+    return amountMatches(t.getAmount())
+        && (deposit == null || deposit == t.getSource().isEmpty())
+        && (source == null || source.equals(t.getSource()))
+        && (target == null || target.equals(t.getTarget()));
+  } // matches(Block)
+} // class TransactionQuery
@@ -0,0 +1,139 @@
+package edu.grinnell.csc207.events;
+
+import edu.grinnell.csc207.blockchains.Block;
+
+/**
+ * A stream of changes to a chain, held in a fixed ring of preallocated slots. Publishing an
+ * event overwrites the oldest slot and never waits, so neither publishing nor a slow reader can
+ * stall the chain. Each reader holds its own Subscription, which tracks how far it has read and
+ * what to do when the ring laps it.
+ *
+ * <p>Only one thread may publish at a time; any number may read.
+ *
+ * @author Sal & Koast
+ */
+public class BlockEventRing {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The kinds of event. */
+  public enum Kind {
+    /** A block was appended to the chain. */
+    APPENDED,
+    /** A block was removed from the end of the chain. */
+    REMOVED
+  } // enum Kind
+
+  // +---------------+-----------------------------------------------
+  // | Local classes |
+  // +---------------+
+
+  /**
+   * One slot in the ring. A reader checks the sequence before and after reading the other
+   * fields; if it changed, the slot was overwritten while the reader looked at it.
+   */
+  static final class Slot {
+    /** The sequence number of the event in the slot, or -1 while it is being written. */
+    volatile long sequence = -1;
+
+    /** The kind of event. */
+    volatile Kind kind;
+
+    /** The block appended or removed. */
+    volatile Block block;
+  } // class Slot
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The slots. */
+  private final Slot[] slots;
+
+  /** One less than the number of slots, for finding an event's slot. */
+  private final int mask;
+
+  /** The sequence number of the latest event, or -1 if there are none. */
+  private volatile long cursor;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an empty ring.
+   *
+   * @param capacity The number of events the ring holds, which must be a power of two.
+   * @throws IllegalArgumentException if the capacity is not a power of two.
+   */
+  public BlockEventRing(int capacity) {
+    if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    } // if
+    this.slots = new Slot[capacity];
+    for (int i = 0; i < capacity; i++) {
+      this.slots[i] = new Slot();
+    } // for
+    this.mask = capacity - 1;
+    this.cursor = -1;
+  } // BlockEventRing(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Publish an event. This allocates nothing and never waits.
+   *
+   * @param kind The kind of event.
+   * @param block The block appended or removed.
+   */
+  public void publish(Kind kind, Block block) {
+    long seq = cursor + 1;
+    Slot slot = slots[(int) (seq & mask)];
+    slot.sequence = -1;
+    slot.kind = kind;
+    slot.block = block;
+    slot.sequence = seq;
+    cursor = seq;
+  } // publish(Kind, Block)
+
+  /**
+   * Subscribe to events published from now on.
+   *
+   * @param policy What to do when the subscriber falls a whole ring behind.
+   * @return the subscription.
+   */
+  public Subscription subscribe(Subscription.Policy policy) {
+    return new Subscription(this, policy, cursor + 1);
+  } // subscribe(Subscription.Policy)
+
+  /**
+   * Get the sequence number of the latest event.
+   *
+   * @return the sequence number, or -1 if nothing has been published.
+   */
+  public long cursor() {
+    return cursor;
+  } // cursor()
+
+  /**
+   * Get the number of events the ring holds.
+   *
+   * @return the capacity.
+   */
+  public int capacity() {
+    return slots.length;
+  } // capacity()
+
+  /**
+   * Get the slot for an event.
+   *
+   * @param seq The sequence number of the event.
+   * @return the slot, which may since have been overwritten.
+   */
+  Slot slot(long seq) {
+    return slots[(int) (seq & mask)];
+  } // slot(long)
+} // class BlockEventRing
@@ -0,0 +1,22 @@
+package edu.grinnell.csc207.events;
+
+import edu.grinnell.csc207.blockchains.Block;
+
+/**
+ * Something that handles the events a Subscription reads.
+ *
+ * @author Sal & Koast
+ */
+@FunctionalInterface
+public interface BlockListener {
+  /**
+   * Handle one event.
+   *
+   * @param sequence The event's sequence number.
+   * @param kind Whether the block was appended or removed.
+   * @param block The block.
+   * @param endOfBatch Whether this is the last event of the current poll, which is a good time
+   *     to flush any work batched up for the earlier ones.
+   */
+  void onEvent(long sequence, BlockEventRing.Kind kind, Block block, boolean endOfBatch);
+} // interface BlockListener
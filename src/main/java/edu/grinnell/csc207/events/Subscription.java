@@ -0,0 +1,173 @@
+package edu.grinnell.csc207.events;
+
+import edu.grinnell.csc207.blockchains.Block;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One reader's position in a BlockEventRing. The reader polls for events at its own pace; the
+ * publisher never waits for it. If the reader falls a whole ring behind, the events it missed
+ * are gone, and its policy decides what happens next. A subscription belongs to one thread.
+ *
+ * @author Sal & Koast
+ */
+public class Subscription {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** What to do when the ring laps a subscriber. */
+  public enum Policy {
+    /** Skip to the oldest event still in the ring, counting the ones missed. */
+    LOSSY,
+    /** Stop delivering events; the subscriber must resynchronize from the chain. */
+    DISCONNECT
+  } // enum Policy
+
+  /** The longest we sleep between checks while waiting for events, in nanoseconds. */
+  static final long MAX_PARK = 1_000_000;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The ring we read. */
+  private final BlockEventRing ring;
+
+  /** What to do when we are lapped. */
+  private final Policy policy;
+
+  /** The sequence number of the next event to read. */
+  private long next;
+
+  /** The number of events we skipped because we were lapped. */
+  private long missed;
+
+  /** Whether we have been disconnected. */
+  private boolean disconnected;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a subscription.
+   *
+   * @param events The ring to read.
+   * @param lapped What to do when we are lapped.
+   * @param first The sequence number of the first event to read.
+   */
+  Subscription(BlockEventRing events, Policy lapped, long first) {
+    this.ring = events;
+    this.policy = lapped;
+    this.next = first;
+    this.missed = 0;
+    this.disconnected = false;
+  } // Subscription(BlockEventRing, Policy, long)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Deal with being lapped.
+   *
+   * @throws IllegalStateException if our policy is to disconnect.
+   */
+  private void lapped() {
+    if (policy == Policy.DISCONNECT) {
+      disconnected = true;
+      throw new IllegalStateException("Subscriber fell behind at event " + next);
+    } // if
+    long oldest = ring.cursor() - ring.capacity() + 1;
+    missed += oldest - next;
+    next = oldest;
+  } // lapped()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Hand the waiting events, oldest first, to a listener.
+   *
+   * @param listener The listener.
+   * @param max The most events to hand over.
+   * @return the number of events handed over.
+   * @throws IllegalStateException if the policy is DISCONNECT and we have fallen a whole ring
+   *     behind, now or before.
+   */
+  public int poll(BlockListener listener, int max) {
+    if (disconnected) {
+      throw new IllegalStateException("Subscriber was disconnected");
+    } // if
+    int handled = 0;
+    long available = ring.cursor();
+    while (handled < max && next <= available) {
+      if (available - next >= ring.capacity()) {
+        lapped();
+        continue;
+      } // if
+      BlockEventRing.Slot slot = ring.slot(next);
+      long before = slot.sequence;
+      BlockEventRing.Kind kind = slot.kind;
+      Block block = slot.block;
+      if (before != next || slot.sequence != next) {
+        // Overwritten as we read it.
+        available = ring.cursor();
+        lapped();
+        continue;
+      } // if
+      handled++;
+      listener.onEvent(next, kind, block, handled == max || next == available);
+      next++;
+    } // while
+    return handled;
+  } // poll(BlockListener, int)
+
+  /**
+   * Wait until there is an event to read.
+   *
+   * @param timeoutNanos The longest to wait.
+   * @return true if there is an event to read, false if we timed out.
+   */
+  public boolean await(long timeoutNanos) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    long park = 1000;
+    while (ring.cursor() < next) {
+      long left = deadline - System.nanoTime();
+      if (left <= 0) {
+        return false;
+      } // if
+      LockSupport.parkNanos(Math.min(park, left));
+      park = Math.min(park * 2, MAX_PARK);
+    } // while
+    return true;
+  } // await(long)
+
+  /**
+   * Get the number of events published but not yet read.
+   *
+   * @return the lag.
+   */
+  public long lag() {
+    return ring.cursor() + 1 - next;
+  } // lag()
+
+  /**
+   * Get the number of events skipped because we were lapped.
+   *
+   * @return the number of events missed.
+   */
+  public long missed() {
+    return missed;
+  } // missed()
+
+  /**
+   * Determine if we have been disconnected.
+   *
+   * @return true if we fell behind under the DISCONNECT policy.
+   */
+  public boolean isDisconnected() {
+    return disconnected;
+  } // isDisconnected()
+} // class Subscription
@@ -2,13 +2,23 @@ package edu.grinnell.csc207.main;
 
 import edu.grinnell.csc207.blockchains.Block;
 import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.GenesisCache;
 import edu.grinnell.csc207.blockchains.HashValidator;
 import edu.grinnell.csc207.blockchains.Transaction;
+import edu.grinnell.csc207.net.ChainProtocol;
 import edu.grinnell.csc207.util.IOUtils;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** A simple UI for our BlockChain class. */
 public class BlockChainUI {
@@ -19,6 +29,9 @@ public class BlockChainUI {
   /** The number of bytes we validate. Should be set to 3 before submitting. */
   static final int VALIDATOR_BYTES = 3;
 
+  /** The size of the output buffer in batch mode. */
+  static final int BATCH_BUFFER = 1 << 16;
+
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
@@ -33,11 +46,15 @@ public class BlockChainUI {
         """
         Valid commands:
           mine: discovers the nonce for a given transaction
+          bgmine: starts a background job that mines and appends a transaction
+          jobs: lists the background jobs, with their progress and hash rates
+          cancel: cancels a background job
           append: appends a new block onto the end of the chain
           remove: removes the last block from the end of the chain
           check: checks that the block chain is valid
           users: prints a list of users
           balance: finds a user's balance
+          top: lists the richest users
           transactions: prints out the chain of transactions
           blocks: prints out the chain of blocks (for debugging only)
           help: prints this list of commands
@@ -45,33 +62,106 @@ public class BlockChainUI {
         """);
   } // instructions(PrintWriter)
 
+  /**
+   * Run a script of commands without prompting. Each line holds one command and its arguments,
+   * in the format of ChainProtocol (a deposit's source is written as -). Blank lines and lines
+   * that start with # are skipped, and quit ends the script early. Errors, including archived
+   * blocks that cannot be read, are reported with their line number, and the script goes on.
+   *
+   * @param chain The chain to run the commands on.
+   * @param eyes Where to read the commands.
+   * @param pen Where to print the responses.
+   * @return the number of commands that failed.
+   * @throws IOException if reading the commands fails.
+   */
+  public static int batch(BlockChain chain, BufferedReader eyes, PrintWriter pen)
+      throws IOException {
+    StringBuilder response = new StringBuilder();
+    int failed = 0;
+    int lineNum = 0;
+    String line;
+    while ((line = eyes.readLine()) != null) {
+      lineNum++;
+      String[] command = ChainProtocol.parse(line);
+      if (command.length == 0 || command[0].startsWith("#")) {
+        continue;
+      } // if
+      if ("quit".equalsIgnoreCase(command[0])) {
+        break;
+      } // if
+      int start = response.length();
+      ChainProtocol.execute(chain, command, response);
+      if (response.indexOf("ERR", start) == start) {
+        response.insert(start, "line " + lineNum + ": ");
+        failed++;
+      } // if
+      if (response.length() >= BATCH_BUFFER) {
+        pen.append(response);
+        response.setLength(0);
+      } // if
+    } // while
+    pen.append(response);
+    pen.flush();
+    return failed;
+  } // batch(BlockChain, BufferedReader, PrintWriter)
+
   // +------+--------------------------------------------------------
   // | Main |
   // +------+
 
   /**
-   * Run the UI.
+   * Run the UI. With --batch, or when standard input is not a terminal, commands are read as a
+   * script (see batch), from the file named after --batch if there is one, and the exit status
+   * is 1 if any command in the script failed. With --interactive, we always prompt.
    *
-   * @param args Command-line arguments (currently ignored).
+   * @param args Command-line arguments: [--batch [FILE] | --interactive].
    */
   public static void main(String[] args) throws Exception {
+    // Set up our blockchain.
+    HashValidator validator = HashValidator.leadingZeroBytes(VALIDATOR_BYTES);
+    GenesisCache genesis = GenesisCache.standard();
+    String genesisKey = "zeros-" + VALIDATOR_BYTES;
+
+    boolean interactive = (System.console() != null);
+    String script = null;
+    for (int i = 0; i < args.length; i++) {
+      if ("--batch".equals(args[i])) {
+        interactive = false;
+        if (i + 1 < args.length) {
+          script = args[++i];
+        } // if
+      } else if ("--interactive".equals(args[i])) {
+        interactive = true;
+      } // if/else
+    } // for
+
+    if (!interactive) {
+      PrintWriter pen = new PrintWriter(
+          new BufferedWriter(new OutputStreamWriter(System.out), BATCH_BUFFER), false);
+      BufferedReader eyes = new BufferedReader(
+          (script == null) ? new InputStreamReader(System.in) : new FileReader(script),
+          BATCH_BUFFER);
+      int failed = batch(genesis.open(validator, genesisKey), eyes, pen);
+      eyes.close();
+      pen.close();
+      if (failed > 0) {
+        System.exit(1);
+      } // if
+      return;
+    } // if
+
     PrintWriter pen = new PrintWriter(System.out, true);
     BufferedReader eyes = new BufferedReader(new InputStreamReader(System.in));
-
-    // Set up our blockchain.
-    HashValidator validator =
-        (h) -> {
-          if (h.length() < VALIDATOR_BYTES) {
-            return false;
-          } // if
-          for (int i = 0; i < VALIDATOR_BYTES; i++) {
-            if (h.get(i) != 0) {
-              return false;
-            } // if
-          } // if
-          return true;
-        };
-    BlockChain chain = new BlockChain(validator);
+    BlockChain chain = genesis.open(validator, genesisKey);
+    Map<Integer, MiningJob> jobs = new TreeMap<Integer, MiningJob>();
+    ExecutorService miners = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        (r) -> {
+          Thread thread = new Thread(r, "mining-job");
+          thread.setDaemon(true);
+          return thread;
+        });
+    double expectedAttempts = Math.pow(256, VALIDATOR_BYTES);
 
     instructions(pen);
     boolean done = false;
@@ -91,11 +181,51 @@ public class BlockChainUI {
             String source = IOUtils.readLine(pen, eyes, "Source (return for deposit): ");
             String target = IOUtils.readLine(pen, eyes, "Target: ");
             int amount = IOUtils.readInt(pen, eyes, "Amount: ");
-            // Mine a new block with the given transaction
-            Block minedBlock = chain.mine(new Transaction(source, target, amount));
+            // Mine a new block with the given transaction, without holding up the chain
+            Transaction t = new Transaction(source, target, amount);
+            Block last;
+            synchronized (chain) {
+              last = chain.getLast();
+            } // synchronized
+            Block minedBlock = new Block(last.getNum() + 1, t, last.getHash(), validator);
             pen.println("Block mined! Use nonce: " + minedBlock.getNonce());
           } // case
 
+          case "bgmine" -> {
+            // Start a job that mines and appends in the background
+            String source = IOUtils.readLine(pen, eyes, "Source (return for deposit): ");
+            String target = IOUtils.readLine(pen, eyes, "Target: ");
+            int amount = IOUtils.readInt(pen, eyes, "Amount: ");
+            MiningJob job;
+            synchronized (chain) {
+              job = new MiningJob(jobs.size() + 1, chain, new Transaction(source, target, amount));
+            } // synchronized
+            jobs.put(job.getId(), job);
+            miners.execute(() -> {
+              job.run();
+              pen.println("\n" + job.describe(expectedAttempts));
+            });
+            pen.println("Started job " + job.getId());
+          } // case
+
+          case "jobs" -> {
+            // Describe every job
+            for (MiningJob job : jobs.values()) {
+              pen.println(job.describe(expectedAttempts));
+            } // for
+          } // case
+
+          case "cancel" -> {
+            // Stop a job
+            MiningJob job = jobs.get(IOUtils.readInt(pen, eyes, "Job: "));
+            if (job == null) {
+              pen.println("No such job");
+            } else {
+              job.cancel();
+              pen.println("Cancelling job " + job.getId());
+            } // if/else
+          } // case
+
           case "append" -> {
             // Prompt the user for transaction details and nonce
             String source = IOUtils.readLine(pen, eyes, "Source (return for deposit): ");
@@ -103,19 +233,26 @@ public class BlockChainUI {
             int amount = IOUtils.readInt(pen, eyes, "Amount: ");
             long nonce = IOUtils.readLong(pen, eyes, "Nonce: ");
             // Create and append a new block to the chain
-            Block newBlock =
-                new Block(
-                    chain.getSize(),
-                    new Transaction(source, target, amount),
-                    chain.getHash(),
-                    nonce);
-            chain.append(newBlock); // This will append the block to the chain
+            Block newBlock;
+            synchronized (chain) {
+              newBlock =
+                  new Block(
+                      chain.getSize(),
+                      new Transaction(source, target, amount),
+                      chain.getHash(),
+                      nonce);
+              chain.append(newBlock); // This will append the block to the chain
+            } // synchronized
             pen.printf("Appended: %s\n", newBlock);
           } // case
 
           case "remove" -> {
             // Attempt to remove the last block, except the genesis block
-            if (chain.removeLast()) {
+            boolean removed;
+            synchronized (chain) {
+              removed = chain.removeLast();
+            } // synchronized
+            if (removed) {
               pen.println("Removed last element");
             } else {
               pen.println("Cannot remove the genesis block");
@@ -124,7 +261,11 @@ public class BlockChainUI {
 
           case "check" -> {
             // Check the validity of the blockchain
-            if (chain.isCorrect()) {
+            boolean correct;
+            synchronized (chain) {
+              correct = chain.isCorrect();
+            } // synchronized
+            if (correct) {
               pen.println("The blockchain checks out.");
             } else {
               pen.println("The blockchain is invalid.");
@@ -133,7 +274,10 @@ public class BlockChainUI {
 
           case "users" -> {
             // Print out the list of users in the blockchain
-            Iterator<String> users = chain.users();
+            Iterator<String> users;
+            synchronized (chain) {
+              users = chain.users();
+            } // synchronized
             while (users.hasNext()) {
               pen.println(users.next());
             } // while
@@ -142,24 +286,42 @@ public class BlockChainUI {
           case "balance" -> {
             // Query the balance for a user
             String user = IOUtils.readLine(pen, eyes, "User: ");
-            int balance = chain.balance(user);
+            int balance;
+            synchronized (chain) {
+              balance = chain.balance(user);
+            } // synchronized
             pen.printf("%s's balance is %d\n", user, balance);
           } // case
 
+          case "top" -> {
+            // List the richest users
+            int k = IOUtils.readInt(pen, eyes, "How many: ");
+            synchronized (chain) {
+              int rank = 1;
+              for (String user : chain.topN(k)) {
+                pen.printf("%d. %s (%d)\n", rank++, user, chain.balance(user));
+              } // for
+            } // synchronized
+          } // case
+
           case "transactions" -> {
             // Print out the chain of transactions
-            Iterator<Transaction> transactions = chain.iterator();
-            while (transactions.hasNext()) {
-              pen.println(transactions.next());
-            } // while
+            synchronized (chain) {
+              Iterator<Transaction> transactions = chain.iterator();
+              while (transactions.hasNext()) {
+                pen.println(transactions.next());
+              } // while
+            } // synchronized
           } // case
 
           case "blocks" -> {
             // Print out the chain of blocks
-            Iterator<Block> blocks = chain.blocks();
-            while (blocks.hasNext()) {
-              pen.println(blocks.next());
-            } // while
+            synchronized (chain) {
+              Iterator<Block> blocks = chain.blocks();
+              while (blocks.hasNext()) {
+                pen.println(blocks.next());
+              } // while
+            } // synchronized
           } // case
 
           case "help" -> instructions(pen);
@@ -175,6 +337,7 @@ public class BlockChainUI {
       } // try/catch
     } // while
 
+    miners.shutdownNow();
     pen.println("\nGoodbye");
     eyes.close();
     pen.close();
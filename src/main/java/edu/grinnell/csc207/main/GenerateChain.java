@@ -0,0 +1,152 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.BlockCodec;
+import edu.grinnell.csc207.blockchains.HashValidator;
+import edu.grinnell.csc207.blockchains.Transaction;
+import edu.grinnell.csc207.util.Workload;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Build large chains from synthetic workloads and save them, so that benchmarks and soak tests
+ * can start from identical chains without mining them again. A saved chain holds every block,
+ * nonces included, so loading it only has to check each block, not search for nonces; that
+ * includes the genesis block.
+ *
+ * <pre>
+ *   java edu.grinnell.csc207.main.GenerateChain FILE BLOCKS [SEED] [USERS] [ZEROS]
+ * </pre>
+ *
+ * @author Sal & Koast
+ */
+public class GenerateChain {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The first four bytes of a saved chain. */
+  static final int MAGIC = 0x424c4b53;
+
+  /** The size of the buffers for reading and writing saved chains. */
+  static final int BUFFER = 1 << 16;
+
+  /** The number of blocks load appends at a time. */
+  static final int BATCH = 4096;
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Build a chain from a workload.
+   *
+   * @param workload Where to get the transactions.
+   * @param blocks The number of blocks, including the genesis block.
+   * @param validator The validator; (h) -> true makes mining each block a single hash.
+   * @return the chain.
+   */
+  public static BlockChain generate(Iterator<Transaction> workload, int blocks,
+      HashValidator validator) {
+    BlockChain chain = new BlockChain(validator);
+    while (chain.getSize() < blocks) {
+      chain.append(chain.mine(workload.next()));
+    } // while
+    return chain;
+  } // generate(Iterator<Transaction>, int, HashValidator)
+
+  /**
+   * Save a chain.
+   *
+   * @param chain The chain, none of which may have been pruned.
+   * @param file Where to save it.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void save(BlockChain chain, Path file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), BUFFER))) {
+      out.writeInt(MAGIC);
+      out.writeInt(chain.getSize());
+      Iterator<Block> blocks = chain.blocks();
+      while (blocks.hasNext()) {
+        BlockCodec.write(out, blocks.next());
+      } // while
+    } // try
+  } // save(BlockChain, Path)
+
+  /**
+   * Load a saved chain, checking every block against a validator.
+   *
+   * @param file Where the chain was saved.
+   * @param validator The validator the chain was built with.
+   * @return the chain.
+   * @throws IOException if the file cannot be read, is not a saved chain, or was built with a
+   *     different validator.
+   */
+  public static BlockChain load(Path file, HashValidator validator) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file), BUFFER))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(file + " is not a saved chain");
+      } // if
+      int size = in.readInt();
+      BlockChain chain;
+      try {
+        chain = new BlockChain(validator, BlockCodec.read(in).getNonce());
+        List<Block> batch = new ArrayList<Block>(BATCH);
+        for (int i = 1; i < size; i++) {
+          batch.add(BlockCodec.read(in));
+          if (batch.size() == BATCH || i == size - 1) {
+            chain.appendAll(batch);
+            batch.clear();
+          } // if
+        } // for
+      } catch (IllegalArgumentException e) {
+        throw new IOException(file + ": " + e.getMessage());
+      } // try/catch
+      return chain;
+    } // try
+  } // load(Path, HashValidator)
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Generate a chain and save it.
+   *
+   * @param args The file, the number of blocks, the seed (default 1), the number of users
+   *     (default 10000), and the number of zero bytes hashes need (default 0).
+   * @throws Exception if the chain cannot be saved.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("usage: GenerateChain FILE BLOCKS [SEED] [USERS] [ZEROS]");
+      System.exit(1);
+    } // if
+    Path file = Paths.get(args[0]);
+    int blocks = Integer.parseInt(args[1]);
+    long seed = (args.length > 2) ? Long.parseLong(args[2]) : 1;
+    int users = (args.length > 3) ? Integer.parseInt(args[3]) : 10000;
+    int zeros = (args.length > 4) ? Integer.parseInt(args[4]) : 0;
+
+    long start = System.nanoTime();
+    BlockChain chain = generate(new Workload(seed, users, 1.0, 0.25, 1000), blocks,
+        HashValidator.leadingZeroBytes(zeros));
+    double built = (System.nanoTime() - start) / 1e9;
+    save(chain, file);
+    double saved = (System.nanoTime() - start) / 1e9 - built;
+    System.out.printf("Built %d blocks in %.2f s and saved them to %s in %.2f s (%d bytes)%n",
+        chain.getSize(), built, file, saved, Files.size(file));
+  } // main(String[])
+} // class GenerateChain
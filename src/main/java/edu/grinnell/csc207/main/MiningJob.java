@@ -0,0 +1,275 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.Hash;
+import edu.grinnell.csc207.blockchains.HashValidator;
+import edu.grinnell.csc207.blockchains.Transaction;
+import edu.grinnell.csc207.metrics.ChainMetrics;
+import edu.grinnell.csc207.metrics.MineEvent;
+import edu.grinnell.csc207.metrics.MiningProgressEvent;
+
+/**
+ * A search for a nonce that runs in the background and appends its block to the chain when it
+ * finishes. The job mines on top of the end of the chain as it was when the job was created. If
+ * another block lands first, the job starts over on top of the new end of the chain, up to
+ * MAX_RETARGETS times before it gives up and is marked stale.
+ *
+ * @author Sal & Koast
+ */
+public class MiningJob implements Runnable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** How many attempts we make between progress updates and checks of the chain. */
+  static final int REPORT_EVERY = 4096;
+
+  /** How many times a job starts over on a new end of the chain before giving up. */
+  static final int MAX_RETARGETS = 16;
+
+  /** The states a job can be in. */
+  public enum Status {
+    /** Still searching. */
+    RUNNING,
+    /** Found a nonce and appended the block. */
+    APPENDED,
+    /** Kept losing the race to other blocks. */
+    STALE,
+    /** Found a nonce, but the chain would not take the block. */
+    REJECTED,
+    /** Stopped before finding a nonce. */
+    CANCELLED
+  } // enum Status
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The job's ID. */
+  private final int id;
+
+  /** The chain to append to. */
+  private final BlockChain chain;
+
+  /** The transaction to mine. */
+  private final Transaction transaction;
+
+  /** The number of the block we are mining. */
+  private volatile int number;
+
+  /** The hash of the block we are mining on top of. */
+  private volatile Hash prevHash;
+
+  /** The number of times we have started over on a new end of the chain. */
+  private volatile int retargets;
+
+  /** The validator the block must satisfy. */
+  private final HashValidator validator;
+
+  /** When the job was created, in nanoseconds. */
+  private final long started;
+
+  /** When the job stopped, in nanoseconds, or 0 while it runs. */
+  private volatile long stopped;
+
+  /** The number of nonces tried so far. */
+  private volatile long attempts;
+
+  /** Whether someone has asked us to stop. */
+  private volatile boolean cancelled;
+
+  /** The current state of the job. */
+  private volatile Status status;
+
+  /** The block we found, if any. */
+  private volatile Block result;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a job that mines a transaction on top of the current end of a chain. The caller must
+   * hold the chain's lock.
+   *
+   * @param jobId The job's ID.
+   * @param blocks The chain.
+   * @param t The transaction to mine.
+   */
+  public MiningJob(int jobId, BlockChain blocks, Transaction t) {
+    this.id = jobId;
+    this.chain = blocks;
+    this.transaction = t;
+    this.number = blocks.getSize();
+    this.prevHash = blocks.getHash();
+    this.retargets = 0;
+    this.validator = blocks.getValidator();
+    this.started = System.nanoTime();
+    this.stopped = 0;
+    this.attempts = 0;
+    this.cancelled = false;
+    this.status = Status.RUNNING;
+    this.result = null;
+  } // MiningJob(int, BlockChain, Transaction)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Move the search on top of the current end of the chain if another block has landed. The
+   * caller must hold the chain's lock.
+   *
+   * @return true if we moved, false if the chain has not changed.
+   */
+  private boolean retarget() {
+    if (chain.getHash().equals(this.prevHash)) {
+      return false;
+    } // if
+    this.number = chain.getSize();
+    this.prevHash = chain.getHash();
+    this.retargets++;
+    return true;
+  } // retarget()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Search for a nonce, and append the block when we find one. If another block lands first, we
+   * start over on top of it.
+   */
+  public void run() {
+    MineEvent event = new MineEvent();
+    event.begin();
+    long tried = 0;
+    long nonce = 0;
+    while (true) {
+      Block blk = new Block(number, transaction, prevHash, nonce);
+      tried++;
+      if (validator.isValid(blk.getHash())) {
+        synchronized (chain) {
+          if (!retarget()) {
+            this.attempts = tried;
+            this.stopped = System.nanoTime();
+            this.result = blk;
+            try {
+              chain.append(blk);
+              this.status = Status.APPENDED;
+            } catch (IllegalArgumentException e) {
+              this.status = Status.REJECTED;
+            } // try/catch
+            break;
+          } // if
+        } // synchronized
+        nonce = 0;
+      } else if (++nonce % REPORT_EVERY == 0) {
+        this.attempts = tried;
+        MiningProgressEvent.sample(number, nonce);
+        if (this.cancelled) {
+          this.stopped = System.nanoTime();
+          this.status = Status.CANCELLED;
+          return;
+        } // if
+        synchronized (chain) {
+          if (retarget()) {
+            nonce = 0;
+          } // if
+        } // synchronized
+      } // if/else
+      if (this.retargets > MAX_RETARGETS) {
+        this.attempts = tried;
+        this.stopped = System.nanoTime();
+        this.status = Status.STALE;
+        return;
+      } // if
+    } // while
+    event.finish(number, this.attempts, result.getNonce());
+    ChainMetrics metrics = chain.getMetrics();
+    if (metrics != null) {
+      metrics.recordMine(this.attempts, this.stopped - this.started);
+    } // if
+  } // run()
+
+  /**
+   * Ask the job to stop. It stops within a few thousand attempts.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  } // cancel()
+
+  /**
+   * Get the job's ID.
+   *
+   * @return the ID.
+   */
+  public int getId() {
+    return this.id;
+  } // getId()
+
+  /**
+   * Get the state of the job.
+   *
+   * @return the state.
+   */
+  public Status getStatus() {
+    return this.status;
+  } // getStatus()
+
+  /**
+   * Get the block the job found.
+   *
+   * @return the block, or null if it has not found one.
+   */
+  public Block getResult() {
+    return this.result;
+  } // getResult()
+
+  /**
+   * Get the number of times the job has started over on a new end of the chain.
+   *
+   * @return the number of retargets.
+   */
+  public int getRetargets() {
+    return this.retargets;
+  } // getRetargets()
+
+  /**
+   * Get the number of nonces tried.
+   *
+   * @return the number of attempts.
+   */
+  public long getAttempts() {
+    return this.attempts;
+  } // getAttempts()
+
+  /**
+   * Get the rate at which the job has been trying nonces.
+   *
+   * @return the number of hashes per second.
+   */
+  public double hashRate() {
+    long end = (this.stopped == 0) ? System.nanoTime() : this.stopped;
+    return this.attempts * 1e9 / Math.max(1, end - this.started);
+  } // hashRate()
+
+  /**
+   * Describe the job.
+   *
+   * @param expected The expected number of attempts needed, for reporting progress.
+   * @return a one-line summary.
+   */
+  public String describe(double expected) {
+    StringBuilder out = new StringBuilder();
+    out.append(String.format("[job %d] %s block %d %s: %d attempts, %.0f hashes/s",
+        this.id, this.status, this.number, this.transaction, this.attempts, hashRate()));
+    if (this.status == Status.RUNNING) {
+      out.append(String.format(", %.1f%% of expected work", 100 * this.attempts / expected));
+    } else if (this.result != null) {
+      out.append(", nonce ").append(this.result.getNonce());
+    } // if/else
+    return out.toString();
+  } // describe(double)
+} // class MiningJob
@@ -0,0 +1,45 @@
+package edu.grinnell.csc207.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for appending a block to a chain or removing one from its end.
+ *
+ * @author Sal & Koast
+ */
+@Name("edu.grinnell.csc207.Block")
+@Label("Append or Remove Block")
+@Category("Blockchain")
+@Description("A change to the end of a chain")
+public class BlockEvent extends jdk.jfr.Event {
+  /** The number of the block appended or removed. */
+  @Label("Height")
+  private int height;
+
+  /** Whether the block was removed rather than appended. */
+  @Label("Removed")
+  private boolean removed;
+
+  /** Whether the change succeeded. */
+  @Label("Succeeded")
+  private boolean succeeded;
+
+  /**
+   * Finish the event and record it, if anyone is recording.
+   *
+   * @param blockNum The number of the block.
+   * @param remove Whether the block was removed rather than appended.
+   * @param ok Whether the change succeeded.
+   */
+  public void finish(int blockNum, boolean remove, boolean ok) {
+    if (shouldCommit()) {
+      this.height = blockNum;
+      this.removed = remove;
+      this.succeeded = ok;
+      commit();
+    } // if
+  } // finish(int, boolean, boolean)
+} // class BlockEvent
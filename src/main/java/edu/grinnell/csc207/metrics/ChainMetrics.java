@@ -0,0 +1,205 @@
+package edu.grinnell.csc207.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for a chain and its miners. Everything is striped, so recording
+ * never allocates or contends; reading sums the stripes. Attach an instance to a chain with
+ * BlockChain.setMetrics, and publish it with register to see it in any JMX console.
+ *
+ * @author Sal & Koast
+ */
+public class ChainMetrics implements ChainMetricsMBean {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** Hashes computed while mining. */
+  private final LongAdder hashes = new LongAdder();
+
+  /** Blocks rejected by validation. */
+  private final LongAdder failures = new LongAdder();
+
+  /** Blocks removed. */
+  private final LongAdder removes = new LongAdder();
+
+  /** Time to mine each block. */
+  private final LatencyHistogram mining = new LatencyHistogram();
+
+  /** Time to append each block. */
+  private final LatencyHistogram appending = new LatencyHistogram();
+
+  /** Time to answer each query. */
+  private final LatencyHistogram querying = new LatencyHistogram();
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Record a block that was mined.
+   *
+   * @param attempts The number of hashes it took.
+   * @param nanos How long it took.
+   */
+  public void recordMine(long attempts, long nanos) {
+    this.hashes.add(attempts);
+    this.mining.record(nanos);
+  } // recordMine(long, long)
+
+  /**
+   * Record a block that was appended.
+   *
+   * @param nanos How long it took.
+   */
+  public void recordAppend(long nanos) {
+    this.appending.record(nanos);
+  } // recordAppend(long)
+
+  /**
+   * Record a block that was rejected.
+   */
+  public void recordFailure() {
+    this.failures.increment();
+  } // recordFailure()
+
+  /**
+   * Record a block that was removed.
+   */
+  public void recordRemove() {
+    this.removes.increment();
+  } // recordRemove()
+
+  /**
+   * Record a query.
+   *
+   * @param nanos How long it took.
+   */
+  public void recordQuery(long nanos) {
+    this.querying.record(nanos);
+  } // recordQuery(long)
+
+  /**
+   * Get the histogram of mining times.
+   *
+   * @return the histogram.
+   */
+  public LatencyHistogram miningTimes() {
+    return this.mining;
+  } // miningTimes()
+
+  /**
+   * Get the histogram of append times.
+   *
+   * @return the histogram.
+   */
+  public LatencyHistogram appendTimes() {
+    return this.appending;
+  } // appendTimes()
+
+  /**
+   * Get the histogram of query times.
+   *
+   * @return the histogram.
+   */
+  public LatencyHistogram queryTimes() {
+    return this.querying;
+  } // queryTimes()
+
+  /**
+   * Take a snapshot of every metric.
+   *
+   * @return the metrics, by name.
+   */
+  public Map<String, Number> snapshot() {
+    Map<String, Number> result = new TreeMap<String, Number>();
+    result.put("hashesAttempted", getHashesAttempted());
+    result.put("blocksMined", getBlocksMined());
+    result.put("miningMeanNanos", getMeanMiningNanos());
+    result.put("miningMaxNanos", this.mining.max());
+    result.put("appends", getAppends());
+    result.put("appendP50Nanos", this.appending.percentile(50));
+    result.put("appendP99Nanos", getAppendP99Nanos());
+    result.put("removes", getRemoves());
+    result.put("validationFailures", getValidationFailures());
+    result.put("queries", getQueries());
+    result.put("queryP50Nanos", this.querying.percentile(50));
+    result.put("queryP99Nanos", getQueryP99Nanos());
+    return result;
+  } // snapshot()
+
+  /**
+   * Publish these metrics through the platform MBean server.
+   *
+   * @param name The name to publish them under, which distinguishes chains.
+   * @throws JMException if the name is malformed or taken.
+   */
+  public void register(String name) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+        new ObjectName("edu.grinnell.csc207.blockchains:type=ChainMetrics,name=" + name));
+  } // register(String)
+
+  // +-------------+-------------------------------------------------
+  // | MBean views |
+  // +-------------+
+
+  @Override
+  public long getHashesAttempted() {
+    return this.hashes.sum();
+  } // getHashesAttempted()
+
+  @Override
+  public long getBlocksMined() {
+    return this.mining.count();
+  } // getBlocksMined()
+
+  @Override
+  public double getMeanMiningNanos() {
+    return this.mining.mean();
+  } // getMeanMiningNanos()
+
+  @Override
+  public long getAppends() {
+    return this.appending.count();
+  } // getAppends()
+
+  @Override
+  public long getRemoves() {
+    return this.removes.sum();
+  } // getRemoves()
+
+  @Override
+  public long getValidationFailures() {
+    return this.failures.sum();
+  } // getValidationFailures()
+
+  @Override
+  public long getQueries() {
+    return this.querying.count();
+  } // getQueries()
+
+  @Override
+  public long getAppendP99Nanos() {
+    return this.appending.percentile(99);
+  } // getAppendP99Nanos()
+
+  @Override
+  public long getQueryP99Nanos() {
+    return this.querying.percentile(99);
+  } // getQueryP99Nanos()
+
+  @Override
+  public void reset() {
+    this.hashes.reset();
+    this.failures.reset();
+    this.removes.reset();
+    this.mining.reset();
+    this.appending.reset();
+    this.querying.reset();
+  } // reset()
+} // class ChainMetrics
@@ -0,0 +1,76 @@
+package edu.grinnell.csc207.metrics;
+
+/**
+ * The JMX view of a chain's metrics. Times are in nanoseconds.
+ *
+ * @author Sal & Koast
+ */
+public interface ChainMetricsMBean {
+  /**
+   * Get the number of hashes computed while mining.
+   *
+   * @return the number of hashes.
+   */
+  long getHashesAttempted();
+
+  /**
+   * Get the number of blocks mined.
+   *
+   * @return the number of blocks.
+   */
+  long getBlocksMined();
+
+  /**
+   * Get the mean time to mine a block.
+   *
+   * @return the mean time.
+   */
+  double getMeanMiningNanos();
+
+  /**
+   * Get the number of blocks appended.
+   *
+   * @return the number of appends.
+   */
+  long getAppends();
+
+  /**
+   * Get the number of blocks removed.
+   *
+   * @return the number of removals.
+   */
+  long getRemoves();
+
+  /**
+   * Get the number of blocks rejected by validation.
+   *
+   * @return the number of failures.
+   */
+  long getValidationFailures();
+
+  /**
+   * Get the number of queries (balance, users, and check).
+   *
+   * @return the number of queries.
+   */
+  long getQueries();
+
+  /**
+   * Get the 99th percentile time to append a block.
+   *
+   * @return the time.
+   */
+  long getAppendP99Nanos();
+
+  /**
+   * Get the 99th percentile time to answer a query.
+   *
+   * @return the time.
+   */
+  long getQueryP99Nanos();
+
+  /**
+   * Clear every counter and histogram.
+   */
+  void reset();
+} // interface ChainMetricsMBean
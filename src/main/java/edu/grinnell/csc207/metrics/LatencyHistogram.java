@@ -0,0 +1,135 @@
+package edu.grinnell.csc207.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with one bucket per power of two nanoseconds. Recording a latency
+ * touches only striped counters, so it never allocates and scales across threads; percentiles
+ * are therefore accurate to within a factor of two.
+ *
+ * @author Sal & Koast
+ */
+public class LatencyHistogram {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The number of buckets. Bucket i holds latencies below 2^i but not below 2^(i-1). */
+  static final int BUCKETS = 64;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The count for each bucket. */
+  private final LongAdder[] buckets;
+
+  /** The total of every latency. */
+  private final LongAdder total;
+
+  /** The largest latency. */
+  private final LongAccumulator max;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an empty histogram.
+   */
+  public LatencyHistogram() {
+    this.buckets = new LongAdder[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      this.buckets[i] = new LongAdder();
+    } // for
+    this.total = new LongAdder();
+    this.max = new LongAccumulator(Math::max, 0);
+  } // LatencyHistogram()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Record one latency.
+   *
+   * @param nanos The latency, in nanoseconds.
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    } // if
+    this.buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+    this.total.add(nanos);
+    this.max.accumulate(nanos);
+  } // record(long)
+
+  /**
+   * Get the number of latencies recorded.
+   *
+   * @return the count.
+   */
+  public long count() {
+    long count = 0;
+    for (LongAdder bucket : this.buckets) {
+      count += bucket.sum();
+    } // for
+    return count;
+  } // count()
+
+  /**
+   * Get the mean latency.
+   *
+   * @return the mean, in nanoseconds, or 0 if nothing has been recorded.
+   */
+  public double mean() {
+    long count = count();
+    return (count == 0) ? 0 : (double) this.total.sum() / count;
+  } // mean()
+
+  /**
+   * Get the largest latency.
+   *
+   * @return the maximum, in nanoseconds.
+   */
+  public long max() {
+    return this.max.get();
+  } // max()
+
+  /**
+   * Estimate a percentile.
+   *
+   * @param p The percentile, between 0 and 100.
+   * @return the upper bound of the bucket holding that percentile, in nanoseconds.
+   */
+  public long percentile(double p) {
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = this.buckets[i].sum();
+      count += counts[i];
+    } // for
+    long rank = (long) Math.ceil(p / 100 * count);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0) {
+        return Math.min(this.max.get(), (1L << i) - 1);
+      } // if
+    } // for
+    return 0;
+  } // percentile(double)
+
+  /**
+   * Forget every latency recorded so far. Latencies recorded while we reset may or may not be
+   * kept.
+   */
+  public void reset() {
+    for (LongAdder bucket : this.buckets) {
+      bucket.reset();
+    } // for
+    this.total.reset();
+    this.max.reset();
+  } // reset()
+} // class LatencyHistogram
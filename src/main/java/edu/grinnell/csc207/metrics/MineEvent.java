@@ -0,0 +1,45 @@
+package edu.grinnell.csc207.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for mining one block. Begin it before the search and finish it after.
+ *
+ * @author Sal & Koast
+ */
+@Name("edu.grinnell.csc207.Mine")
+@Label("Mine Block")
+@Category({"Blockchain", "Mining"})
+@Description("The search for a nonce that makes a block valid")
+public class MineEvent extends jdk.jfr.Event {
+  /** The number of the block. */
+  @Label("Height")
+  private int height;
+
+  /** The number of hashes computed. */
+  @Label("Attempts")
+  private long attempts;
+
+  /** The nonce found. */
+  @Label("Nonce")
+  private long nonce;
+
+  /**
+   * Finish the event and record it, if anyone is recording.
+   *
+   * @param blockNum The number of the block.
+   * @param tries The number of hashes computed.
+   * @param found The nonce found.
+   */
+  public void finish(int blockNum, long tries, long found) {
+    if (shouldCommit()) {
+      this.height = blockNum;
+      this.attempts = tries;
+      this.nonce = found;
+      commit();
+    } // if
+  } // finish(int, long, long)
+} // class MineEvent
@@ -0,0 +1,48 @@
+package edu.grinnell.csc207.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event sampled from inside a mining loop, so that a long search shows up
+ * while it is still running. Successive samples for the same height give the hash rate.
+ *
+ * @author Sal & Koast
+ */
+@Name("edu.grinnell.csc207.MiningProgress")
+@Label("Mining Progress")
+@Category({"Blockchain", "Mining"})
+@Description("A sample of how many hashes a search has computed so far")
+@StackTrace(false)
+public class MiningProgressEvent extends jdk.jfr.Event {
+  /** The number of attempts between samples; a power of two. */
+  public static final long SAMPLE_EVERY = 1L << 16;
+
+  /** The number of the block being mined. */
+  @Label("Height")
+  private int height;
+
+  /** The number of hashes computed so far. */
+  @Label("Attempts")
+  private long attempts;
+
+  /**
+   * Record a sample if attempts is a multiple of SAMPLE_EVERY and anyone is recording.
+   *
+   * @param blockNum The number of the block being mined.
+   * @param tries The number of hashes computed so far.
+   */
+  public static void sample(int blockNum, long tries) {
+    if ((tries & (SAMPLE_EVERY - 1)) == 0 && tries != 0) {
+      MiningProgressEvent event = new MiningProgressEvent();
+      if (event.isEnabled()) {
+        event.height = blockNum;
+        event.attempts = tries;
+        event.commit();
+      } // if
+    } // if
+  } // sample(int, long)
+} // class MiningProgressEvent
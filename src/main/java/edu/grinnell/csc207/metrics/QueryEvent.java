@@ -0,0 +1,46 @@
+package edu.grinnell.csc207.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for a query against a chain: a balance, the list of users, or a full
+ * check.
+ *
+ * @author Sal & Koast
+ */
+@Name("edu.grinnell.csc207.Query")
+@Label("Chain Query")
+@Category("Blockchain")
+@Description("A read of a chain's state")
+public class QueryEvent extends jdk.jfr.Event {
+  /** The kind of query. */
+  @Label("Kind")
+  private String kind;
+
+  /** The user asked about, if any. */
+  @Label("User")
+  private String user;
+
+  /** The number of the last block when the query ran. */
+  @Label("Height")
+  private int height;
+
+  /**
+   * Finish the event and record it, if anyone is recording.
+   *
+   * @param what The kind of query.
+   * @param who The user asked about, or null.
+   * @param blockNum The number of the last block.
+   */
+  public void finish(String what, String who, int blockNum) {
+    if (shouldCommit()) {
+      this.kind = what;
+      this.user = who;
+      this.height = blockNum;
+      commit();
+    } // if
+  } // finish(String, String, int)
+} // class QueryEvent
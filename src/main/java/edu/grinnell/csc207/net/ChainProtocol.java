@@ -0,0 +1,219 @@
+package edu.grinnell.csc207.net;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.Transaction;
+import edu.grinnell.csc207.metrics.ChainMetrics;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The line protocol for remote access to a chain. Each request is one line holding a command and
+ * its arguments, separated by whitespace; a deposit is written with a source of "-". Each
+ * response starts with a line that begins with OK or ERR. Commands that return a list answer
+ * "OK n" and then n more lines.
+ *
+ * <pre>
+ *   mine SOURCE TARGET AMOUNT           OK nonce
+ *   append SOURCE TARGET AMOUNT NONCE   OK number hash
+ *   remove                              OK removed
+ *   check                               OK valid | OK invalid
+ *   users                               OK n, then n names
+ *   balance USER                        OK balance
+ *   top K                               OK n, then n lines of user and balance
+ *   transactions                        OK n, then n transactions
+ *   blocks                              OK n, then n blocks
+ * </pre>
+ *
+ * <p>Everything but the search for a nonce is synchronized on the chain.
+ *
+ * @author Sal & Koast
+ */
+public class ChainProtocol {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** How a deposit's empty source is written. */
+  public static final String DEPOSIT = "-";
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Turn a source argument into a source.
+   *
+   * @param arg The argument.
+   * @return the source, which is empty for a deposit.
+   */
+  static String source(String arg) {
+    return DEPOSIT.equals(arg) ? "" : arg;
+  } // source(String)
+
+  /**
+   * Check the number of arguments to a command.
+   *
+   * @param args The command and its arguments.
+   * @param count The number of arguments expected, not counting the command.
+   * @param usage The usage message for the command.
+   * @throws IllegalArgumentException if the count is wrong.
+   */
+  static void expect(String[] args, int count, String usage) {
+    if (args.length != count + 1) {
+      throw new IllegalArgumentException("usage: " + usage);
+    } // if
+  } // expect(String[], int, String)
+
+  /**
+   * Print a list response.
+   *
+   * @param lines The lines of the response.
+   * @param out Where to print the response.
+   */
+  static void list(List<String> lines, StringBuilder out) {
+    out.append("OK ").append(lines.size()).append('\n');
+    for (String line : lines) {
+      out.append(line).append('\n');
+    } // for
+  } // list(List<String>, StringBuilder)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Split a request into its command and arguments.
+   *
+   * @param line The request.
+   * @return the command and arguments, which is empty for a blank line.
+   */
+  public static String[] parse(String line) {
+    String trimmed = line.trim();
+    return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+  } // parse(String)
+
+  /**
+   * Run one request against a chain, printing the response.
+   *
+   * @param chain The chain.
+   * @param args The command and its arguments.
+   * @param out Where to print the response.
+   */
+  public static void execute(BlockChain chain, String[] args, StringBuilder out) {
+    try {
+      if (args.length == 0) {
+        throw new IllegalArgumentException("empty request");
+      } // if
+      switch (args[0].toLowerCase()) {
+        case "mine" -> {
+          expect(args, 3, "mine SOURCE TARGET AMOUNT");
+          Transaction t = new Transaction(source(args[1]), args[2], Integer.parseInt(args[3]));
+          Block last;
+          synchronized (chain) {
+            last = chain.getLast();
+          } // synchronized
+          long start = System.nanoTime();
+          Block mined = new Block(last.getNum() + 1, t, last.getHash(), chain.getValidator());
+          ChainMetrics metrics = chain.getMetrics();
+          if (metrics != null) {
+            metrics.recordMine(mined.getNonce() + 1, System.nanoTime() - start);
+          } // if
+          out.append("OK ").append(mined.getNonce()).append('\n');
+        } // case
+
+        case "append" -> {
+          expect(args, 4, "append SOURCE TARGET AMOUNT NONCE");
+          Transaction t = new Transaction(source(args[1]), args[2], Integer.parseInt(args[3]));
+          long nonce = Long.parseLong(args[4]);
+          Block blk;
+          synchronized (chain) {
+            blk = new Block(chain.getSize(), t, chain.getHash(), nonce);
+            chain.append(blk);
+          } // synchronized
+          out.append("OK ").append(blk.getNum()).append(' ').append(blk.getHash()).append('\n');
+        } // case
+
+        case "remove" -> {
+          expect(args, 0, "remove");
+          boolean removed;
+          synchronized (chain) {
+            removed = chain.removeLast();
+          } // synchronized
+          out.append(removed ? "OK removed\n" : "ERR cannot remove the genesis block\n");
+        } // case
+
+        case "check" -> {
+          expect(args, 0, "check");
+          boolean correct;
+          synchronized (chain) {
+            correct = chain.isCorrect();
+          } // synchronized
+          out.append(correct ? "OK valid\n" : "OK invalid\n");
+        } // case
+
+        case "users" -> {
+          expect(args, 0, "users");
+          List<String> lines = new ArrayList<String>();
+          synchronized (chain) {
+            Iterator<String> users = chain.users();
+            while (users.hasNext()) {
+              lines.add(users.next());
+            } // while
+          } // synchronized
+          list(lines, out);
+        } // case
+
+        case "balance" -> {
+          expect(args, 1, "balance USER");
+          int balance;
+          synchronized (chain) {
+            balance = chain.balance(args[1]);
+          } // synchronized
+          out.append("OK ").append(balance).append('\n');
+        } // case
+
+        case "top" -> {
+          expect(args, 1, "top K");
+          int k = Integer.parseInt(args[1]);
+          List<String> lines = new ArrayList<String>();
+          synchronized (chain) {
+            for (String user : chain.topN(k)) {
+              lines.add(user + " " + chain.balance(user));
+            } // for
+          } // synchronized
+          list(lines, out);
+        } // case
+
+        case "transactions" -> {
+          expect(args, 0, "transactions");
+          List<String> lines = new ArrayList<String>();
+          synchronized (chain) {
+            for (Transaction t : chain) {
+              lines.add(t.toString());
+            } // for
+          } // synchronized
+          list(lines, out);
+        } // case
+
+        case "blocks" -> {
+          expect(args, 0, "blocks");
+          List<String> lines = new ArrayList<String>();
+          synchronized (chain) {
+            Iterator<Block> blocks = chain.blocks();
+            while (blocks.hasNext()) {
+              lines.add(blocks.next().toString());
+            } // while
+          } // synchronized
+          list(lines, out);
+        } // case
+
+        default -> throw new IllegalArgumentException("unknown command: " + args[0]);
+      } // switch/case
+    } catch (IllegalArgumentException | IllegalStateException | UncheckedIOException e) {
+      out.append("ERR ").append(e.getMessage()).append('\n');
+    } // try/catch
+  } // execute(BlockChain, String[], StringBuilder)
+} // class ChainProtocol
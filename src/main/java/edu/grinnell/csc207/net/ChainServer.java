@@ -0,0 +1,385 @@
+package edu.grinnell.csc207.net;
+
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.GenesisCache;
+import edu.grinnell.csc207.blockchains.HashValidator;
+import edu.grinnell.csc207.metrics.ChainMetrics;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A non-blocking server for the chain protocol (see ChainProtocol). One selector thread handles
+ * every connection: it reads requests and writes the responses, so clients may pipeline as many
+ * requests as they like. Every command locks the chain, and a scan or a search for a nonce may
+ * hold it for a long time, so the selector never runs commands itself. Instead it hands each
+ * connection's waiting requests to a pool, which runs them in order; later requests on the same
+ * connection wait for them, but the selector keeps accepting, reading, and writing for every
+ * other connection. A connection whose responses are not being read stops being read until they
+ * drain.
+ *
+ * @author Sal & Koast
+ */
+public class ChainServer implements Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The size of each connection's read buffer. */
+  static final int READ_BUFFER = 8192;
+
+  /** The longest request we accept. */
+  static final int MAX_LINE = 65536;
+
+  /** The number of pending connections the operating system may queue. */
+  static final int BACKLOG = 4096;
+
+  /** The fewest threads that run requests, so one long scan does not hold up every client. */
+  static final int MIN_WORKERS = 4;
+
+  // +---------------+-----------------------------------------------
+  // | Local classes |
+  // +---------------+
+
+  /** The state of one client connection. */
+  static class Connection {
+    /** The channel to the client. */
+    final SocketChannel channel;
+
+    /** The bytes of the current, incomplete request. */
+    byte[] line = new byte[128];
+
+    /** The number of bytes in line. */
+    int lineLength = 0;
+
+    /** Complete requests we have not yet run. */
+    final ArrayDeque<String> requests = new ArrayDeque<String>();
+
+    /** Responses we have not yet encoded. */
+    final StringBuilder pending = new StringBuilder();
+
+    /** The encoded responses we are writing. */
+    ByteBuffer out = null;
+
+    /** Whether a worker is running some of our requests. */
+    boolean busy = false;
+
+    /** The responses to the requests the worker ran, once it finishes. */
+    volatile String answer = null;
+
+    /**
+     * Create the state for a connection.
+     *
+     * @param chan The channel to the client.
+     */
+    Connection(SocketChannel chan) {
+      this.channel = chan;
+    } // Connection(SocketChannel)
+  } // class Connection
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The chain we serve. */
+  private final BlockChain chain;
+
+  /** The channel we accept clients on. */
+  private final ServerSocketChannel server;
+
+  /** The selector for every channel. */
+  private final Selector selector;
+
+  /** Threads that run requests. */
+  private final ExecutorService workers;
+
+  /** Connections whose requests have finished running. */
+  private final ConcurrentLinkedQueue<Connection> finished;
+
+  /** The buffer we read into. */
+  private final ByteBuffer readBuffer;
+
+  /** Whether we have been closed. */
+  private volatile boolean closed;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a server for a chain.
+   *
+   * @param blocks The chain to serve.
+   * @param port The port to listen on, or 0 for any free port.
+   * @throws IOException if we cannot listen on the port.
+   */
+  public ChainServer(BlockChain blocks, int port) throws IOException {
+    this.chain = blocks;
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    this.server.bind(new InetSocketAddress(port), BACKLOG);
+    this.server.configureBlocking(false);
+    this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    this.workers = Executors.newFixedThreadPool(
+        Math.max(MIN_WORKERS, Runtime.getRuntime().availableProcessors()),
+        (r) -> SyncNode.daemon(r, "server-work"));
+    this.finished = new ConcurrentLinkedQueue<Connection>();
+    this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER);
+    this.closed = false;
+  } // ChainServer(BlockChain, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Accept every waiting client.
+   *
+   * @throws IOException if accepting fails.
+   */
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = server.accept()) != null) {
+      channel.configureBlocking(false);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    } // while
+  } // accept()
+
+  /**
+   * Read what a client has sent and split it into requests.
+   *
+   * @param key The client's key.
+   * @param conn The client's connection.
+   * @throws IOException if the read fails or the client sends too long a request.
+   */
+  private void read(SelectionKey key, Connection conn) throws IOException {
+    readBuffer.clear();
+    int count = conn.channel.read(readBuffer);
+    if (count < 0) {
+      close(key);
+      return;
+    } // if
+    readBuffer.flip();
+    while (readBuffer.hasRemaining()) {
+      byte b = readBuffer.get();
+      if (b == '\n') {
+        int len = conn.lineLength;
+        if (len > 0 && conn.line[len - 1] == '\r') {
+          len--;
+        } // if
+        conn.requests.add(new String(conn.line, 0, len, StandardCharsets.UTF_8));
+        conn.lineLength = 0;
+      } else {
+        if (conn.lineLength == conn.line.length) {
+          if (conn.line.length >= MAX_LINE) {
+            throw new IOException("Request too long.");
+          } // if
+          conn.line = Arrays.copyOf(conn.line, conn.line.length * 2);
+        } // if
+        conn.line[conn.lineLength++] = b;
+      } // if/else
+    } // while
+    run(key, conn);
+  } // read(SelectionKey, Connection)
+
+  /**
+   * Hand a client's waiting requests to a worker, unless one is already running some, and write
+   * whatever responses are ready.
+   *
+   * @param key The client's key.
+   * @param conn The client's connection.
+   * @throws IOException if writing the responses fails.
+   */
+  private void run(SelectionKey key, Connection conn) throws IOException {
+    if (!conn.busy && !conn.requests.isEmpty()) {
+      List<String[]> batch = new ArrayList<String[]>();
+      while (!conn.requests.isEmpty()) {
+        String[] args = ChainProtocol.parse(conn.requests.poll());
+        if (args.length > 0) {
+          batch.add(args);
+        } // if
+      } // while
+      if (!batch.isEmpty()) {
+        conn.busy = true;
+        workers.execute(() -> {
+          StringBuilder response = new StringBuilder();
+          for (String[] args : batch) {
+            ChainProtocol.execute(chain, args, response);
+          } // for
+          conn.answer = response.toString();
+          finished.add(conn);
+          selector.wakeup();
+        });
+      } // if
+    } // if
+    write(key, conn);
+  } // run(SelectionKey, Connection)
+
+  /**
+   * Write as many responses as the client will take.
+   *
+   * @param key The client's key.
+   * @param conn The client's connection.
+   * @throws IOException if the write fails.
+   */
+  private void write(SelectionKey key, Connection conn) throws IOException {
+    while (true) {
+      if (conn.out != null && conn.out.hasRemaining()) {
+        conn.channel.write(conn.out);
+        if (conn.out.hasRemaining()) {
+          // The client is behind; stop reading from it until it catches up.
+          key.interestOps(SelectionKey.OP_WRITE);
+          return;
+        } // if
+      } // if
+      if (conn.pending.length() == 0) {
+        break;
+      } // if
+      conn.out = StandardCharsets.UTF_8.encode(conn.pending.toString());
+      conn.pending.setLength(0);
+    } // while
+    key.interestOps(SelectionKey.OP_READ);
+  } // write(SelectionKey, Connection)
+
+  /**
+   * Close a client.
+   *
+   * @param key The client's key.
+   */
+  private void close(SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      // Nothing more to do.
+    } // try/catch
+  } // close(SelectionKey)
+
+  /**
+   * Handle events until we are closed.
+   */
+  private void loop() {
+    while (!closed) {
+      try {
+        selector.select();
+      } catch (IOException | ClosedSelectorException e) {
+        return;
+      } // try/catch
+      if (closed) {
+        break;
+      } // if
+
+      Connection done;
+      while ((done = finished.poll()) != null) {
+        SelectionKey key = done.channel.keyFor(selector);
+        done.pending.append(done.answer);
+        done.busy = false;
+        if (key != null && key.isValid()) {
+          try {
+            run(key, done);
+          } catch (IOException | CancelledKeyException e) {
+            close(key);
+          } // try/catch
+        } // if
+      } // while
+
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        try {
+          if (!key.isValid()) {
+            continue;
+          } // if
+          if (key.isAcceptable()) {
+            accept();
+          } else if (key.isWritable()) {
+            write(key, (Connection) key.attachment());
+          } else if (key.isReadable()) {
+            read(key, (Connection) key.attachment());
+          } // if/else
+        } catch (IOException | CancelledKeyException e) {
+          if (key.channel() != server) {
+            close(key);
+          } // if
+        } // try/catch
+      } // while
+    } // while
+  } // loop()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Start serving in the background.
+   */
+  public void start() {
+    SyncNode.daemon(this::loop, "server-select").start();
+  } // start()
+
+  /**
+   * Get the port we are listening on.
+   *
+   * @return the port.
+   */
+  public int getPort() {
+    return server.socket().getLocalPort();
+  } // getPort()
+
+  /**
+   * Stop serving and close every connection.
+   *
+   * @throws IOException if the channels cannot be closed.
+   */
+  public void close() throws IOException {
+    closed = true;
+    selector.wakeup();
+    workers.shutdownNow();
+    for (SelectionKey key : selector.keys()) {
+      key.channel().close();
+    } // for
+    selector.close();
+  } // close()
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Serve a new chain.
+   *
+   * @param args The port (default 2070) and the number of zero bytes hashes need (default 3).
+   * @throws Exception if the server cannot start.
+   */
+  public static void main(String[] args) throws Exception {
+    int port = (args.length > 0) ? Integer.parseInt(args[0]) : 2070;
+    int zeros = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+    BlockChain chain =
+        GenesisCache.standard().open(HashValidator.leadingZeroBytes(zeros), "zeros-" + zeros);
+    ChainMetrics metrics = new ChainMetrics();
+    metrics.register("server-" + port);
+    chain.setMetrics(metrics);
+    ChainServer server = new ChainServer(chain, port);
+    System.out.println("Serving on port " + server.getPort());
+    server.loop();
+  } // main(String[])
+} // class ChainServer
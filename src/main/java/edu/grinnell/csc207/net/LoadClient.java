@@ -0,0 +1,227 @@
+package edu.grinnell.csc207.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A load generator for ChainServer. It opens many connections from a single selector thread,
+ * keeps a fixed number of balance requests in flight on each one, and reports throughput and
+ * latency percentiles.
+ *
+ * <pre>
+ *   java edu.grinnell.csc207.net.LoadClient HOST PORT CONNECTIONS REQUESTS PIPELINE
+ * </pre>
+ *
+ * @author Sal & Koast
+ */
+public class LoadClient {
+  // +---------------+-----------------------------------------------
+  // | Local classes |
+  // +---------------+
+
+  /** The state of one connection. */
+  static class Client {
+    /** The channel to the server. */
+    final SocketChannel channel;
+
+    /** When each request in flight was sent, oldest first. */
+    final long[] sent;
+
+    /** The index in sent of the oldest request in flight. */
+    int head = 0;
+
+    /** The number of requests in flight. */
+    int inFlight = 0;
+
+    /** The number of requests sent so far. */
+    int count = 0;
+
+    /** Bytes waiting to be written. */
+    ByteBuffer out = ByteBuffer.allocate(0);
+
+    /**
+     * Create the state for a connection.
+     *
+     * @param chan The channel to the server.
+     * @param pipeline The number of requests to keep in flight.
+     */
+    Client(SocketChannel chan, int pipeline) {
+      this.channel = chan;
+      this.sent = new long[pipeline];
+    } // Client(SocketChannel, int)
+  } // class Client
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The number of requests to send on each connection. */
+  private final int requests;
+
+  /** The number of requests to keep in flight on each connection. */
+  private final int pipeline;
+
+  /** Every latency we have measured, in nanoseconds. */
+  private final long[] latencies;
+
+  /** The number of latencies measured. */
+  private int measured = 0;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a load generator.
+   *
+   * @param connections The number of connections.
+   * @param perConnection The number of requests to send on each connection.
+   * @param depth The number of requests to keep in flight on each connection.
+   */
+  LoadClient(int connections, int perConnection, int depth) {
+    this.requests = perConnection;
+    this.pipeline = depth;
+    this.latencies = new long[connections * perConnection];
+  } // LoadClient(int, int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Send requests until the connection's pipeline is full.
+   *
+   * @param key The connection's key.
+   * @param client The connection.
+   * @throws IOException if writing fails.
+   */
+  void fill(SelectionKey key, Client client) throws IOException {
+    StringBuilder batch = new StringBuilder();
+    long now = System.nanoTime();
+    while (client.inFlight < pipeline && client.count < requests) {
+      batch.append("balance user").append(client.count % 1000).append('\n');
+      client.sent[(client.head + client.inFlight) % pipeline] = now;
+      client.inFlight++;
+      client.count++;
+    } // while
+    if (batch.length() > 0) {
+      ByteBuffer more = StandardCharsets.UTF_8.encode(batch.toString());
+      ByteBuffer joined = ByteBuffer.allocate(client.out.remaining() + more.remaining());
+      joined.put(client.out).put(more).flip();
+      client.out = joined;
+    } // if
+    client.channel.write(client.out);
+    key.interestOps(client.out.hasRemaining()
+        ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+  } // fill(SelectionKey, Client)
+
+  /**
+   * Read responses, recording their latencies.
+   *
+   * @param key The connection's key.
+   * @param client The connection.
+   * @param in A buffer to read into.
+   * @return true if every request on this connection has been answered.
+   * @throws IOException if reading fails.
+   */
+  boolean drain(SelectionKey key, Client client, ByteBuffer in) throws IOException {
+    in.clear();
+    if (client.channel.read(in) < 0) {
+      throw new IOException("Server closed the connection.");
+    } // if
+    in.flip();
+    long now = System.nanoTime();
+    while (in.hasRemaining()) {
+      if (in.get() == '\n') {
+        latencies[measured++] = now - client.sent[client.head];
+        client.head = (client.head + 1) % pipeline;
+        client.inFlight--;
+      } // if
+    } // while
+    fill(key, client);
+    return client.count == requests && client.inFlight == 0;
+  } // drain(SelectionKey, Client, ByteBuffer)
+
+  /**
+   * Find a percentile of the sorted latencies.
+   *
+   * @param p The percentile, between 0 and 100.
+   * @return the latency in microseconds.
+   */
+  double percentile(double p) {
+    int i = (int) Math.min(measured - 1, Math.ceil(p / 100 * measured) - 1);
+    return latencies[Math.max(0, i)] / 1000.0;
+  } // percentile(double)
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Run the load generator.
+   *
+   * @param args The host, port, number of connections, requests per connection, and pipeline
+   *     depth.
+   * @throws Exception if the server cannot be reached.
+   */
+  public static void main(String[] args) throws Exception {
+    String host = (args.length > 0) ? args[0] : "localhost";
+    int port = (args.length > 1) ? Integer.parseInt(args[1]) : 2070;
+    int connections = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+    int perConnection = (args.length > 3) ? Integer.parseInt(args[3]) : 1000;
+    int depth = (args.length > 4) ? Integer.parseInt(args[4]) : 16;
+    LoadClient load = new LoadClient(connections, perConnection, depth);
+
+    Selector selector = Selector.open();
+    for (int i = 0; i < connections; i++) {
+      SocketChannel channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      channel.connect(new InetSocketAddress(host, port));
+      channel.register(selector, SelectionKey.OP_CONNECT, new Client(channel, depth));
+    } // for
+
+    ByteBuffer in = ByteBuffer.allocateDirect(65536);
+    int remaining = connections;
+    long start = System.nanoTime();
+    while (remaining > 0) {
+      selector.select();
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        Client client = (Client) key.attachment();
+        if (key.isConnectable()) {
+          client.channel.finishConnect();
+          load.fill(key, client);
+        } else {
+          if (key.isWritable()) {
+            load.fill(key, client);
+          } // if
+          if (key.isReadable() && load.drain(key, client, in)) {
+            key.cancel();
+            client.channel.close();
+            remaining--;
+          } // if
+        } // if/else
+      } // while
+    } // while
+    double seconds = (System.nanoTime() - start) / 1e9;
+    selector.close();
+
+    Arrays.sort(load.latencies, 0, load.measured);
+    System.out.printf("%d connections, %d requests in %.2f s: %.0f requests/s%n",
+        connections, load.measured, seconds, load.measured / seconds);
+    System.out.printf("latency (us): p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+        load.percentile(50), load.percentile(90), load.percentile(99), load.percentile(99.9),
+        load.percentile(100));
+  } // main(String[])
+} // class LoadClient
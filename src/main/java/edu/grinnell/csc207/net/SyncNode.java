@@ -0,0 +1,485 @@
+package edu.grinnell.csc207.net;
+
+import edu.grinnell.csc207.blockchains.BatchAppendException;
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.BlockCodec;
+import edu.grinnell.csc207.blockchains.Hash;
+import edu.grinnell.csc207.blockchains.HashValidator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A node that serves its chain to peers over TCP and catches up from them.
+ *
+ * <p>The protocol is simple. The node that wants to catch up connects and sends its tip height
+ * and hash; the peer answers with its own. If the peer is higher, the node sends a locator
+ * (hashes at exponentially spaced heights down to the genesis block), the peer answers with the
+ * highest locator height on its chain, and then streams every block above that height in batches
+ * without waiting for acknowledgements. The receiver verifies several batches in parallel while
+ * it reads the next ones, and switches to the peer's blocks only once they have all arrived.
+ * A peer can only send blocks that are still in memory with their transactions, so if every
+ * block we share lies below the peer's pruning or archiving point, it answers -1 as though we
+ * shared nothing, and if those blocks go away while it streams, it sends GONE in place of a batch.
+ *
+ * <p>All access to the chain is synchronized on the chain itself, so other code that uses the
+ * chain while the node is running should do the same.
+ *
+ * @author Sal & Koast
+ */
+public class SyncNode implements Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** The first word of every connection. */
+  static final int MAGIC = 0x42435331;
+
+  /** The number of blocks in each batch. */
+  static final int BATCH_SIZE = 1024;
+
+  /** The number of batches we verify ahead of the one we are appending. */
+  static final int PIPELINE_DEPTH = 8;
+
+  /** The number of locator entries before we start skipping exponentially. */
+  static final int LOCATOR_DENSE = 10;
+
+  /** The most bytes we accept in one batch. */
+  static final int MAX_BATCH_BYTES = 1 << 26;
+
+  /** Sent in place of a batch when the blocks to send have been pruned or archived. */
+  static final int GONE = -1;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The chain we serve and extend. */
+  private final BlockChain chain;
+
+  /** The socket we accept peers on. */
+  private final ServerSocket server;
+
+  /** Threads that serve peers. */
+  private final ExecutorService handlers;
+
+  /** Threads that verify incoming batches. */
+  private final ExecutorService verifiers;
+
+  /** Whether we have been closed. */
+  private volatile boolean closed;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a node for a chain.
+   *
+   * @param blocks The chain to serve and extend.
+   * @param port The port to listen on, or 0 for any free port.
+   * @throws IOException if we cannot listen on the port.
+   */
+  public SyncNode(BlockChain blocks, int port) throws IOException {
+    this.chain = blocks;
+    this.server = new ServerSocket(port);
+    this.handlers = Executors.newCachedThreadPool((r) -> daemon(r, "sync-serve"));
+    this.verifiers = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), (r) -> daemon(r, "sync-verify"));
+    this.closed = false;
+  } // SyncNode(BlockChain, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make a daemon thread.
+   *
+   * @param r What the thread runs.
+   * @param name The name of the thread.
+   * @return the thread.
+   */
+  static Thread daemon(Runnable r, String name) {
+    Thread thread = new Thread(r, name);
+    thread.setDaemon(true);
+    return thread;
+  } // daemon(Runnable, String)
+
+  /**
+   * Build a locator for a branch: the ten most recent hashes, then hashes at exponentially
+   * larger steps, and finally the genesis hash. Blocks that have been archived are no longer
+   * linked to the tip, so the locator stops at the first of them.
+   *
+   * @param tip The end of the branch.
+   * @return the locator.
+   */
+  static List<Hash> locator(Block tip) {
+    List<Hash> result = new ArrayList<Hash>();
+    int step = 1;
+    for (int height = tip.getNum(); height > 0; height -= step) {
+      Block blk = tip.ancestorAt(height);
+      if (blk == null) {
+        return result;
+      } // if
+      result.add(blk.getHash());
+      if (result.size() >= LOCATOR_DENSE) {
+        step *= 2;
+      } // if
+    } // for
+    Block genesis = tip.ancestorAt(0);
+    if (genesis != null) {
+      result.add(genesis.getHash());
+    } // if
+    return result;
+  } // locator(Block)
+
+  /**
+   * Collect a run of blocks to send, unless some of them have been pruned or archived.
+   *
+   * @param tip The end of the branch we are sending.
+   * @param end The number of the last block in the run.
+   * @param batch Where to put the blocks, in order.
+   * @param len The number of blocks in the run.
+   * @return true if every block could be collected, false otherwise.
+   */
+  static boolean collect(Block tip, int end, Block[] batch, int len) {
+    Block blk = tip.ancestorAt(end);
+    for (int i = len - 1; i >= 0; i--) {
+      if (blk == null || blk.isPruned()) {
+        return false;
+      } // if
+      batch[i] = blk;
+      blk = blk.getPrevBlock();
+    } // for
+    return true;
+  } // collect(Block, int, Block[], int)
+
+  /**
+   * Serve one peer.
+   *
+   * @param socket The connection to the peer.
+   */
+  private void serve(Socket socket) {
+    try (socket;
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+      if (in.readInt() != MAGIC) {
+        return;
+      } // if
+      in.readInt();
+      BlockCodec.readHash(in);
+
+      Block tip;
+      synchronized (chain) {
+        tip = chain.getLast();
+      } // synchronized
+      out.writeInt(MAGIC);
+      out.writeInt(tip.getNum());
+      BlockCodec.writeHash(out, tip.getHash());
+      out.flush();
+
+      // Find the highest locator entry on our branch.
+      int count = in.readInt();
+      if (count < 0) {
+        return;
+      } // if
+      int ancestor = -1;
+      for (int i = 0; i < count; i++) {
+        Hash hash = BlockCodec.readHash(in);
+        if (ancestor < 0) {
+          Block found;
+          synchronized (chain) {
+            found = chain.find(hash);
+          } // synchronized
+          if (found != null && tip.ancestorAt(found.getNum()) == found) {
+            ancestor = found.getNum();
+          } // if
+        } // if
+      } // for
+      if (ancestor >= 0 && ancestor < tip.getNum()) {
+        Block first = tip.ancestorAt(ancestor + 1);
+        if (first == null || first.isPruned()) {
+          // We no longer have the blocks above the ancestor.
+          ancestor = -1;
+        } // if
+      } // if
+      out.writeInt(ancestor);
+      if (ancestor < 0) {
+        out.flush();
+        return;
+      } // if
+
+      // Stream everything above it.
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream batchOut = new DataOutputStream(bytes);
+      Block[] batch = new Block[BATCH_SIZE];
+      for (int start = ancestor + 1; start <= tip.getNum(); start += BATCH_SIZE) {
+        int end = Math.min(start + BATCH_SIZE - 1, tip.getNum());
+        int len = end - start + 1;
+        if (!collect(tip, end, batch, len)) {
+          out.writeInt(GONE);
+          out.flush();
+          return;
+        } // if
+        bytes.reset();
+        for (int i = 0; i < len; i++) {
+          BlockCodec.write(batchOut, batch[i]);
+        } // for
+        out.writeInt(len);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+      } // for
+      out.writeInt(0);
+      out.flush();
+    } catch (IOException | IllegalStateException e) {
+      // The peer went away or asked for blocks we no longer have; nothing more to do.
+    } // try/catch
+  } // serve(Socket)
+
+  /**
+   * Decode and verify a batch of blocks.
+   *
+   * @param payload The encoded blocks.
+   * @param count The number of blocks.
+   * @param validator The validator for the chain.
+   * @return the blocks.
+   * @throws IOException if a block is malformed, invalid, or not linked to the one before it.
+   */
+  static List<Block> verify(byte[] payload, int count, HashValidator validator)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    List<Block> result = new ArrayList<Block>(count);
+    for (int i = 0; i < count; i++) {
+      Block blk = BlockCodec.read(in);
+      if (!validator.isValid(blk.getHash())) {
+        throw new IOException("Block " + blk.getNum() + " has an invalid hash.");
+      } // if
+      if (i > 0 && !blk.getPrevHash().equals(result.get(i - 1).getHash())) {
+        throw new IOException("Block " + blk.getNum() + " does not follow the one before it.");
+      } // if
+      result.add(blk);
+    } // for
+    return result;
+  } // verify(byte[], int, HashValidator)
+
+  /**
+   * Wait for a verified batch and add it to the blocks we have staged.
+   *
+   * @param batch The pending batch.
+   * @param staged The blocks staged so far, which the batch must follow.
+   * @throws IOException if the batch failed to verify or does not follow the staged blocks.
+   */
+  private static void stageBatch(Future<List<Block>> batch, List<Block> staged)
+      throws IOException {
+    List<Block> blocks;
+    try {
+      blocks = batch.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while verifying blocks.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      } // if
+      throw new IOException("Could not verify blocks.", e.getCause());
+    } // try/catch
+    if (!staged.isEmpty() && !blocks.isEmpty()) {
+      Block first = blocks.get(0);
+      if (!first.getPrevHash().equals(staged.get(staged.size() - 1).getHash())) {
+        throw new IOException("Block " + first.getNum() + " does not follow the one before it.");
+      } // if
+    } // if
+    staged.addAll(blocks);
+  } // stageBatch(Future<List<Block>>, List<Block>)
+
+  /**
+   * Replace our blocks above the common ancestor with the peer's. If anything goes wrong, put
+   * our own blocks back.
+   *
+   * @param tip Our tip when we started syncing.
+   * @param ancestor The height of the common ancestor.
+   * @param staged The peer's blocks above the ancestor.
+   * @throws IOException if our chain changed while we synced or the peer's blocks do not fit it.
+   */
+  private void commit(Block tip, int ancestor, List<Block> staged) throws IOException {
+    synchronized (chain) {
+      if (chain.getLast() != tip) {
+        throw new IOException("Our chain changed while we were syncing.");
+      } // if
+      ArrayList<Block> undone = new ArrayList<Block>();
+      try {
+        while (chain.getSize() - 1 > ancestor) {
+          undone.add(chain.getLast());
+          chain.removeLast();
+        } // while
+        chain.appendAll(staged);
+      } catch (Exception e) {
+        int base = tip.getNum() - undone.size();
+        while (chain.getSize() - 1 > base) {
+          chain.removeLast();
+        } // while
+        Collections.reverse(undone);
+        chain.appendAll(undone);
+        if (e instanceof BatchAppendException) {
+          Block bad = ((BatchAppendException) e).getBlock();
+          throw new IOException("Could not append block " + bad.getNum() + ": "
+              + e.getMessage());
+        } // if
+        throw new IOException("Could not switch to the peer's blocks: " + e.getMessage(), e);
+      } // try/catch
+    } // synchronized
+  } // commit(Block, int, List<Block>)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Start accepting peers in the background.
+   */
+  public void start() {
+    Thread acceptor = daemon(() -> {
+      while (!closed) {
+        try {
+          Socket socket = server.accept();
+          handlers.execute(() -> serve(socket));
+        } catch (SocketException e) {
+          return;
+        } catch (IOException e) {
+          // Try the next peer.
+        } // try/catch
+      } // while
+    }, "sync-accept");
+    acceptor.start();
+  } // start()
+
+  /**
+   * Get the port we are listening on.
+   *
+   * @return the port.
+   */
+  public int getPort() {
+    return server.getLocalPort();
+  } // getPort()
+
+  /**
+   * Catch up from a peer. If the peer's chain is higher than ours, we read and verify all of the
+   * peer's blocks above the common ancestor. Only once they arrive and reach above our tip do we
+   * remove our own blocks above the ancestor and append the peer's. If anything goes wrong, our
+   * chain is left as it was.
+   *
+   * @param host The peer's host.
+   * @param port The peer's port.
+   * @return the number of blocks appended.
+   * @throws IOException if we cannot talk to the peer or it sends a bad block.
+   */
+  public int syncFrom(String host, int port) throws IOException {
+    try (Socket socket = new Socket(host, port);
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+      Block tip;
+      synchronized (chain) {
+        tip = chain.getLast();
+      } // synchronized
+      out.writeInt(MAGIC);
+      out.writeInt(tip.getNum());
+      BlockCodec.writeHash(out, tip.getHash());
+      out.flush();
+
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Peer does not speak the sync protocol.");
+      } // if
+      int peerHeight = in.readInt();
+      BlockCodec.readHash(in);
+      if (peerHeight <= tip.getNum()) {
+        out.writeInt(-1);
+        out.flush();
+        return 0;
+      } // if
+
+      List<Hash> locator = locator(tip);
+      out.writeInt(locator.size());
+      for (Hash hash : locator) {
+        BlockCodec.writeHash(out, hash);
+      } // for
+      out.flush();
+      int ancestor = in.readInt();
+      if (ancestor < 0) {
+        throw new IOException(
+            "Peer shares no block with us, or none that it can still send blocks above.");
+      } // if
+
+      if (ancestor > tip.getNum()) {
+        throw new IOException("Peer named ancestor " + ancestor + " above our tip.");
+      } // if
+
+      // Nothing touches our chain until every block has arrived and checks out.
+      List<Block> staged = new ArrayList<Block>();
+      ArrayDeque<Future<List<Block>>> pending = new ArrayDeque<Future<List<Block>>>();
+      HashValidator validator = chain.getValidator();
+      for (int count = in.readInt(); count != 0; count = in.readInt()) {
+        if (count == GONE) {
+          throw new IOException("Peer no longer has the blocks it was sending.");
+        } // if
+        if (count < 0 || count > BATCH_SIZE) {
+          throw new IOException("Peer sent a batch of " + count + " blocks.");
+        } // if
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_BATCH_BYTES) {
+          throw new IOException("Peer sent a batch of " + length + " bytes.");
+        } // if
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        final int n = count;
+        pending.add(verifiers.submit(() -> verify(payload, n, validator)));
+        if (pending.size() > PIPELINE_DEPTH) {
+          stageBatch(pending.poll(), staged);
+        } // if
+      } // for
+      while (!pending.isEmpty()) {
+        stageBatch(pending.poll(), staged);
+      } // while
+      if (ancestor + staged.size() <= tip.getNum()) {
+        throw new IOException("Peer sent " + staged.size() + " blocks above " + ancestor
+            + ", which does not pass our height of " + tip.getNum() + ".");
+      } // if
+      commit(tip, ancestor, staged);
+      int appended = staged.size();
+      return appended;
+    } // try
+  } // syncFrom(String, int)
+
+  /**
+   * Stop accepting peers.
+   *
+   * @throws IOException if the socket cannot be closed.
+   */
+  public void close() throws IOException {
+    closed = true;
+    server.close();
+    handlers.shutdownNow();
+    verifiers.shutdownNow();
+  } // close()
+} // class SyncNode
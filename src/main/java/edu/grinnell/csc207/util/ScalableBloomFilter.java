@@ -0,0 +1,219 @@
+package edu.grinnell.csc207.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of strings that answers "definitely not present" or "probably present" in a few
+ * nanoseconds and a few bits per string. It is a scalable Bloom filter (Almeida et al., 2007):
+ * when the current filter is full, a new one twice as large, with a tighter error rate, is added,
+ * so the overall false-positive rate stays below the target however many strings are added.
+ * Strings cannot be removed.
+ *
+ * @author Sal & Koast
+ */
+public class ScalableBloomFilter {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** How much each new filter tightens the error rate of the one before it. */
+  static final double TIGHTENING = 0.5;
+
+  /** How much larger each new filter is than the one before it. */
+  static final int GROWTH = 2;
+
+  // +---------------+-----------------------------------------------
+  // | Local classes |
+  // +---------------+
+
+  /** One fixed-size Bloom filter. */
+  static class Stage {
+    /** The bits. */
+    final long[] bits;
+
+    /** The number of bits. */
+    final long size;
+
+    /** The number of bits set for each string. */
+    final int probes;
+
+    /** The number of strings this stage holds before it is full. */
+    final int capacity;
+
+    /** The number of strings added. */
+    int count = 0;
+
+    /**
+     * Create an empty stage.
+     *
+     * @param room The number of strings to hold.
+     * @param rate The false-positive rate when full.
+     */
+    Stage(int room, double rate) {
+      long m = (long) Math.ceil(-room * Math.log(rate) / (Math.log(2) * Math.log(2)));
+      this.bits = new long[(int) Math.max(1, (m + 63) / 64)];
+      this.size = 64L * this.bits.length;
+      this.probes = Math.max(1, (int) Math.ceil(-Math.log(rate) / Math.log(2)));
+      this.capacity = room;
+    } // Stage(int, double)
+
+    /**
+     * Set the bits for a string.
+     *
+     * @param h1 The first hash of the string.
+     * @param h2 The second hash of the string.
+     */
+    void add(long h1, long h2) {
+      for (int i = 0; i < probes; i++) {
+        long bit = Long.remainderUnsigned(h1 + i * h2, size);
+        bits[(int) (bit >>> 6)] |= 1L << bit;
+      } // for
+      count++;
+    } // add(long, long)
+
+    /**
+     * Check the bits for a string.
+     *
+     * @param h1 The first hash of the string.
+     * @param h2 The second hash of the string.
+     * @return true if every bit is set.
+     */
+    boolean mightContain(long h1, long h2) {
+      for (int i = 0; i < probes; i++) {
+        long bit = Long.remainderUnsigned(h1 + i * h2, size);
+        if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+          return false;
+        } // if
+      } // for
+      return true;
+    } // mightContain(long, long)
+  } // class Stage
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The stages, oldest first. */
+  private final List<Stage> stages = new ArrayList<Stage>();
+
+  /** The target false-positive rate. */
+  private final double rate;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an empty filter.
+   *
+   * @param falsePositiveRate The largest acceptable chance that mightContain says yes for a
+   *     string that was never added, between 0 and 1.
+   * @param expected The number of strings to make room for at first; the filter grows as needed.
+   * @throws IllegalArgumentException if the rate is not between 0 and 1 or expected is not
+   *     positive.
+   */
+  public ScalableBloomFilter(double falsePositiveRate, int expected) {
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1) || expected < 1) {
+      throw new IllegalArgumentException("Need a rate between 0 and 1 and a positive size");
+    } // if
+    this.rate = falsePositiveRate;
+    this.stages.add(new Stage(expected, falsePositiveRate * (1 - TIGHTENING)));
+  } // ScalableBloomFilter(double, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Hash a string to 64 bits (FNV-1a over its characters, then a finalizer to spread the bits).
+   *
+   * @param str The string.
+   * @return the hash.
+   */
+  static long hash(String str) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < str.length(); i++) {
+      h = (h ^ str.charAt(i)) * 0x100000001b3L;
+    } // for
+    return mix(h);
+  } // hash(String)
+
+  /**
+   * Spread the bits of a hash (the MurmurHash3 finalizer).
+   *
+   * @param h The hash.
+   * @return the mixed hash.
+   */
+  static long mix(long h) {
+    h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+    h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return h ^ (h >>> 33);
+  } // mix(long)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a string.
+   *
+   * @param str The string.
+   */
+  public void add(String str) {
+    long h1 = hash(str);
+    long h2 = mix(h1) | 1;
+    for (Stage stage : stages) {
+      if (stage.mightContain(h1, h2)) {
+        return;
+      } // if
+    } // for
+    Stage last = stages.get(stages.size() - 1);
+    if (last.count >= last.capacity) {
+      int n = stages.size();
+      last = new Stage((int) Math.min(Integer.MAX_VALUE / 2, (long) last.capacity * GROWTH),
+          rate * (1 - TIGHTENING) * Math.pow(TIGHTENING, n));
+      stages.add(last);
+    } // if
+    last.add(h1, h2);
+  } // add(String)
+
+  /**
+   * Determine if a string might have been added.
+   *
+   * @param str The string.
+   * @return false if str was definitely never added, true if it probably was.
+   */
+  public boolean mightContain(String str) {
+    long h1 = hash(str);
+    long h2 = mix(h1) | 1;
+    for (int i = stages.size() - 1; i >= 0; i--) {
+      if (stages.get(i).mightContain(h1, h2)) {
+        return true;
+      } // if
+    } // for
+    return false;
+  } // mightContain(String)
+
+  /**
+   * Get the target false-positive rate.
+   *
+   * @return the rate.
+   */
+  public double falsePositiveRate() {
+    return rate;
+  } // falsePositiveRate()
+
+  /**
+   * Get the number of bytes the filter uses for its bits.
+   *
+   * @return the number of bytes.
+   */
+  public long memory() {
+    long bytes = 0;
+    for (Stage stage : stages) {
+      bytes += 8L * stage.bits.length;
+    } // for
+    return bytes;
+  } // memory()
+} // class ScalableBloomFilter
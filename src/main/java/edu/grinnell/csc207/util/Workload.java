@@ -0,0 +1,137 @@
+package edu.grinnell.csc207.util;
+
+import edu.grinnell.csc207.blockchains.Transaction;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+
+/**
+ * An endless, deterministic stream of synthetic transactions. Users are chosen with a Zipf
+ * distribution, so a few users appear in most transactions, as in real payment systems. The
+ * workload tracks balances, so every transfer is one its source can afford and the stream is
+ * valid even on a chain that enforces funds. The same seed always gives the same stream.
+ *
+ * @author Sal & Koast
+ */
+public class Workload implements Iterator<Transaction> {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The source of randomness. */
+  private final SplittableRandom random;
+
+  /** The name of each user. */
+  private final String[] names;
+
+  /** The probability of choosing each user or any user before it. */
+  private final double[] cumulative;
+
+  /** Each user's balance. */
+  private final long[] balances;
+
+  /** The fraction of transactions that are deposits. */
+  private final double deposits;
+
+  /** The largest amount deposited or transferred. */
+  private final int maxAmount;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a workload.
+   *
+   * @param seed The seed.
+   * @param users The number of distinct users.
+   * @param skew The Zipf exponent; 0 chooses users uniformly and 1 is typical.
+   * @param depositFraction The fraction of transactions that are deposits.
+   * @param largest The largest amount deposited or transferred.
+   * @throws IllegalArgumentException if there are fewer than two users or largest is not
+   *     positive.
+   */
+  public Workload(long seed, int users, double skew, double depositFraction, int largest) {
+    if (users < 2 || largest < 1) {
+      throw new IllegalArgumentException("Need at least two users and a positive amount");
+    } // if
+    this.random = new SplittableRandom(seed);
+    this.names = new String[users];
+    this.cumulative = new double[users];
+    this.balances = new long[users];
+    this.deposits = depositFraction;
+    this.maxAmount = largest;
+    double total = 0;
+    for (int i = 0; i < users; i++) {
+      this.names[i] = "user" + i;
+      total += 1 / Math.pow(i + 1, skew);
+      this.cumulative[i] = total;
+    } // for
+    for (int i = 0; i < users; i++) {
+      this.cumulative[i] /= total;
+    } // for
+  } // Workload(long, int, double, double, int)
+
+  /**
+   * Create a workload with typical settings: 10,000 users, a skew of 1, a quarter of
+   * transactions deposits, and amounts up to 1,000.
+   *
+   * @param seed The seed.
+   */
+  public Workload(long seed) {
+    this(seed, 10000, 1.0, 0.25, 1000);
+  } // Workload(long)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Choose a user.
+   *
+   * @return the index of the user.
+   */
+  int user() {
+    int i = Arrays.binarySearch(cumulative, random.nextDouble());
+    return Math.min((i < 0) ? -i - 1 : i, names.length - 1);
+  } // user()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if there are more transactions. There always are.
+   *
+   * @return true.
+   */
+  public boolean hasNext() {
+    return true;
+  } // hasNext()
+
+  /**
+   * Generate the next transaction. A transfer whose source turns out to have no funds becomes a
+   * deposit to that source instead.
+   *
+   * @return the transaction.
+   */
+  public Transaction next() {
+    int target = user();
+    if (random.nextDouble() >= deposits) {
+      int source = user();
+      while (source == target) {
+        source = user();
+      } // while
+      if (balances[source] > 0) {
+        int amount = 1 + random.nextInt((int) Math.min(maxAmount, balances[source]));
+        balances[source] -= amount;
+        balances[target] += amount;
+        return new Transaction(names[source], names[target], amount);
+      } // if
+      target = source;
+    } // if
+    int amount = 1 + random.nextInt(maxAmount);
+    balances[target] += amount;
+    return new Transaction("", names[target], amount);
+  } // next()
+} // class Workload
@@ -1,6 +1,7 @@
 package edu.grinnell.csc207.blockchains;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -257,4 +258,29 @@ public class TestBlock {
   public void toStringDepositTest() {
   } // toStringDepositTest()
 
+
+  /**
+   * Hashes use UTF-8 for names, whatever the platform charset, and do not depend on which
+   * thread computes them.
+   */
+  @Test
+  public void utf8HashTest() throws Exception {
+    Transaction t = new Transaction("Zoë", "Łukasz 家", 1234567);
+    Hash ph = new Block(0, t, new Hash(new byte[] {}), 0).getHash();
+    Block b = new Block(1 << 20, t, ph, -3L);
+
+    md.update(intToBytes(b.getNum()));
+    md.update(t.getSource().getBytes(StandardCharsets.UTF_8));
+    md.update(t.getTarget().getBytes(StandardCharsets.UTF_8));
+    md.update(intToBytes(t.getAmount()));
+    md.update(ph.getBytes());
+    md.update(longToBytes(b.getNonce()));
+    assertArrayEquals(md.digest(), b.getHash().getBytes(), "hash of non-ASCII block");
+
+    Hash[] other = new Hash[1];
+    Thread thread = new Thread(() -> other[0] = new Block(1 << 20, t, ph, -3L).getHash());
+    thread.start();
+    thread.join();
+    assertEquals(b.getHash(), other[0], "same hash on another thread");
+  } // utf8HashTest()
 } // class TestBlock
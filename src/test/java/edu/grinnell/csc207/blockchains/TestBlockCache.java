@@ -0,0 +1,109 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Some simple tests of our BlockCache class.
+ *
+ * @author Sal & Koast
+ */
+public class TestBlockCache {
+  /**
+   * Build a chain and archive all but its last few blocks.
+   *
+   * @param dir Where to put the archive.
+   * @return the chain.
+   */
+  static BlockChain archived(Path dir) throws Exception {
+    BlockChain chain = TestSegmentArchive.build(4000);
+    chain.setArchive(new SegmentArchive(dir));
+    chain.archive(3990);
+    return chain;
+  } // archived(Path)
+
+  /**
+   * Lookups in the same chunk hit, and the cache never grows past its capacity.
+   */
+  @Test
+  public void boundedTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = archived(dir);
+    chain.setCacheCapacity(4 * SegmentArchive.CHUNK);
+    BlockCache cache = chain.getBlockCache();
+    Block blk = chain.blockAt(130);
+    assertEquals(1, cache.misses(), "first lookup misses");
+    assertEquals(blk, chain.blockAt(130), "same block again");
+    assertEquals(chain.blockAt(129).getHash(), chain.blockAt(130).getPrevHash(),
+        "neighbors link up");
+    assertEquals(3, cache.hits(), "lookups in the same chunk hit");
+    for (int i = 0; i < 3990; i += 7) {
+      assertEquals(i, chain.blockAt(i).getNum(), "block " + i);
+      assertTrue(cache.size() <= cache.capacity(), "cache within capacity at block " + i);
+    } // for
+    assertTrue(cache.evictions() > 0, "chunks evicted");
+    assertTrue(cache.meanLoadMicros() > 0, "load time measured");
+    assertThrows(IndexOutOfBoundsException.class, () -> cache.get(3995),
+        "block past the archive");
+  } // boundedTest(Path)
+
+  /**
+   * Chunks that are used often survive a sweep of chunks used once, and scans of the whole
+   * chain do not touch the cache.
+   */
+  @Test
+  public void scanResistanceTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = archived(dir);
+    chain.setCacheCapacity(10 * SegmentArchive.CHUNK);
+    BlockCache cache = chain.getBlockCache();
+    for (int round = 0; round < 2; round++) {
+      for (int c = 0; c < 4; c++) {
+        chain.blockAt(c * SegmentArchive.CHUNK);
+      } // for
+    } // for
+    for (int i = 4 * SegmentArchive.CHUNK; i < 3990; i += SegmentArchive.CHUNK) {
+      chain.blockAt(i);
+    } // for
+    long misses = cache.misses();
+    for (int c = 0; c < 4; c++) {
+      chain.blockAt(c * SegmentArchive.CHUNK + 1);
+    } // for
+    assertEquals(misses, cache.misses(), "frequent chunks survive the sweep");
+
+    long lookups = cache.hits() + cache.misses();
+    Iterator<Block> blocks = chain.blocks();
+    int count = 0;
+    while (blocks.hasNext()) {
+      assertEquals(count++, blocks.next().getNum(), "blocks in order");
+    } // while
+    assertEquals(chain.getSize(), count, "scan sees every block");
+    assertEquals(lookups, cache.hits() + cache.misses(), "scan bypasses the cache");
+  } // scanResistanceTest(Path)
+
+  /**
+   * The smallest cache still keeps a frequent chunk through a sweep, and a smaller one is
+   * refused.
+   */
+  @Test
+  public void smallTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = archived(dir);
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.setCacheCapacity(SegmentArchive.CHUNK), "one chunk is too small");
+    chain.setCacheCapacity(BlockCache.MIN_BLOCKS);
+    BlockCache cache = chain.getBlockCache();
+    chain.blockAt(0);
+    chain.blockAt(1);
+    for (int i = SegmentArchive.CHUNK; i < 3990; i += SegmentArchive.CHUNK) {
+      chain.blockAt(i);
+      assertTrue(cache.size() <= cache.capacity(), "cache within capacity at block " + i);
+    } // for
+    long misses = cache.misses();
+    chain.blockAt(2);
+    assertEquals(misses, cache.misses(), "the frequent chunk survives the sweep");
+  } // smallTest(Path)
+} // class TestBlockCache
@@ -1,7 +1,17 @@
 package edu.grinnell.csc207.blockchains;
 
-import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 
 
@@ -11,4 +21,239 @@ import org.junit.jupiter.api.Test;
  * @author Samuel A. Rebelsky
  */
 public class TestBlockChain {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Gather the users of a chain into a set.
+   *
+   * @param chain The chain.
+   * @return the set of users.
+   */
+  static Set<String> users(BlockChain chain) {
+    Set<String> result = new HashSet<String>();
+    Iterator<String> it = chain.users();
+    while (it.hasNext()) {
+      result.add(it.next());
+    } // while
+    return result;
+  } // users(BlockChain)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Balances follow appends and removals.
+   */
+  @Test
+  public void balancesTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    chain.append(chain.mine(new Transaction("", "Alpha", 100)));
+    chain.append(chain.mine(new Transaction("Alpha", "Beta", 30)));
+    chain.append(chain.mine(new Transaction("Beta", "Gamma", 5)));
+    assertEquals(70, chain.balance("Alpha"), "Alpha after transfers");
+    assertEquals(25, chain.balance("Beta"), "Beta after transfers");
+    assertEquals(5, chain.balance("Gamma"), "Gamma after transfers");
+    assertEquals(0, chain.balance("Delta"), "unknown user");
+    assertEquals(Set.of("", "Alpha", "Beta", "Gamma"), users(chain), "users");
+
+    assertTrue(chain.removeLast(), "remove transfer to Gamma");
+    assertEquals(30, chain.balance("Beta"), "Beta after removal");
+    assertEquals(0, chain.balance("Gamma"), "Gamma after removal");
+    assertEquals(Set.of("", "Alpha", "Beta"), users(chain), "users after removal");
+    assertEquals(3, chain.getSize(), "size after removal");
+
+    chain.append(chain.mine(new Transaction("Beta", "Gamma", 7)));
+    assertEquals(23, chain.balance("Beta"), "Beta after new transfer");
+    assertTrue(chain.isCorrect(), "chain is still correct");
+  } // balancesTest()
+
+  /**
+   * Removing everything leaves just the genesis block.
+   */
+  @Test
+  public void removeAllTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    chain.append(chain.mine(new Transaction("", "Alpha", 10)));
+    chain.append(chain.mine(new Transaction("Alpha", "Beta", 4)));
+    assertTrue(chain.removeLast(), "first removal");
+    assertTrue(chain.removeLast(), "second removal");
+    assertFalse(chain.removeLast(), "cannot remove genesis");
+    assertEquals(1, chain.getSize(), "only genesis remains");
+    assertEquals(Set.of(""), users(chain), "only the genesis user remains");
+    Iterator<Block> blocks = chain.blocks();
+    assertEquals(0, blocks.next().getNum(), "genesis block");
+    assertFalse(blocks.hasNext(), "nothing after genesis");
+  } // removeAllTest()
+
+  /**
+   * Overdrafts are rejected only when funds are enforced.
+   */
+  @Test
+  public void enforceFundsTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    chain.append(chain.mine(new Transaction("", "Alpha", 10)));
+    Block overdraft = chain.mine(new Transaction("Alpha", "Beta", 11));
+
+    chain.setEnforceFunds(true);
+    assertThrows(IllegalArgumentException.class, () -> chain.append(overdraft),
+        "overdraft is rejected by append");
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.mine(new Transaction("Alpha", "Beta", 11)),
+        "overdraft is rejected by mine");
+    assertEquals(2, chain.getSize(), "rejected block was not added");
+    chain.append(chain.mine(new Transaction("Alpha", "Beta", 10)));
+    assertEquals(0, chain.balance("Alpha"), "Alpha spent everything");
+
+    chain.setEnforceFunds(false);
+    chain.append(chain.mine(new Transaction("Alpha", "Beta", 1)));
+    assertEquals(-1, chain.balance("Alpha"), "overdraft allowed without enforcement");
+  } // enforceFundsTest()
+
+  /**
+   * Pruned blocks keep their headers and balances.
+   */
+  @Test
+  public void pruneTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    chain.setPruneDepth(2);
+    for (int i = 1; i <= 10; i++) {
+      chain.append(chain.mine(new Transaction("", "User" + (i % 3), i)));
+    } // for
+    assertEquals(11, chain.getSize(), "size with pruning");
+    assertEquals(3 + 6 + 9, chain.balance("User0"), "balance of User0");
+    assertEquals(1 + 4 + 7 + 10, chain.balance("User1"), "balance of User1");
+
+    int count = 0;
+    for (Transaction t : chain) {
+      count++;
+    } // for
+    assertEquals(2, count, "only recent transactions remain");
+
+    Iterator<Block> blocks = chain.blocks();
+    for (int i = 0; i < 9; i++) {
+      assertTrue(blocks.next().isPruned(), "block " + i + " is pruned");
+    } // for
+    assertFalse(blocks.next().isPruned(), "block 9 is not pruned");
+    assertTrue(chain.isCorrect(), "pruned chain checks out");
+
+    assertTrue(chain.removeLast(), "remove unpruned block");
+    assertTrue(chain.removeLast(), "remove unpruned block");
+    assertThrows(IllegalStateException.class, () -> chain.removeLast(), "remove pruned block");
+    chain.append(chain.mine(new Transaction("", "User1", 100)));
+    assertEquals(1 + 4 + 7 + 100, chain.balance("User1"), "balance after new block");
+  } // pruneTest()
+
+  /**
+   * Check notices a broken link anywhere in the chain.
+   */
+  @Test
+  public void checkTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    for (int i = 1; i <= 5; i++) {
+      chain.append(chain.mine(new Transaction("", "User", i)));
+    } // for
+    assertTrue(chain.isCorrect(), "chain checks out");
+    Iterator<Block> blocks = chain.blocks();
+    blocks.next();
+    blocks.next();
+    blocks.next().previousHash = new Hash(new byte[] {1, 2, 3});
+    assertFalse(chain.isCorrect(), "broken link in the middle");
+  } // checkTest()
+
+  /**
+   * We can find every block by number.
+   */
+  @Test
+  public void blockAtTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    for (int i = 1; i < 1000; i++) {
+      chain.append(chain.mine(new Transaction("", "User", i)));
+    } // for
+    Iterator<Block> blocks = chain.blocks();
+    for (int i = 0; i < 1000; i++) {
+      assertSame(blocks.next(), chain.blockAt(i), "block " + i);
+    } // for
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.blockAt(1000), "past the end");
+    Block last = chain.getLast();
+    assertSame(chain.blockAt(517), last.ancestorAt(517), "ancestor of the last block");
+    assertNull(last.ancestorAt(1000), "no ancestor above a block");
+  } // blockAtTest()
+
+  /**
+   * Blocks must be numbered in sequence.
+   */
+  @Test
+  public void numberTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    Block wrong = new Block(5, new Transaction("", "User", 1), chain.getHash(), 0);
+    assertThrows(IllegalArgumentException.class, () -> chain.append(wrong), "wrong number");
+  } // numberTest()
+
+  /**
+   * Every user who appears passes the filter, and most strangers do not.
+   */
+  @Test
+  public void mightContainTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    for (int i = 0; i < 5000; i++) {
+      chain.append(chain.mine(new Transaction("", "user" + i, 1)));
+    } // for
+    chain.append(chain.mine(new Transaction("user1", "user2", 1)));
+    int strangers = 0;
+    for (int i = 0; i < 5000; i++) {
+      assertTrue(chain.mightContain("user" + i), "user " + i);
+      if (chain.mightContain("stranger" + i)) {
+        strangers++;
+      } // if
+    } // for
+    assertTrue(strangers < 150, "false positives: " + strangers);
+    assertEquals(0, chain.balance("stranger"), "balance of a stranger");
+    chain.setUserFilterRate(0.001);
+    assertTrue(chain.mightContain("user4999"), "user after rebuilding");
+    assertEquals(2, chain.balance("user2"), "balance after rebuilding");
+  } // mightContainTest()
+
+  /**
+   * A batch appends as a whole, with funds checked against the balances earlier blocks in the
+   * batch leave, or not at all.
+   */
+  @Test
+  public void appendAllTest() {
+    BlockChain source = new BlockChain((h) -> true);
+    source.append(source.mine(new Transaction("", "alice", 5)));
+    source.append(source.mine(new Transaction("alice", "bob", 5)));
+    source.append(source.mine(new Transaction("bob", "carol", 2)));
+    source.append(source.mine(new Transaction("alice", "carol", 1)));
+    List<Block> blocks = new ArrayList<Block>();
+    Iterator<Block> it = source.blocks();
+    it.next();
+    it.forEachRemaining(blocks::add);
+
+    BlockChain chain = new BlockChain((h) -> true, source.getGenesisNonce());
+    chain.setEnforceFunds(true);
+    BatchAppendException e =
+        assertThrows(BatchAppendException.class, () -> chain.appendAll(blocks), "overdrawn");
+    assertEquals(3, e.getIndex(), "index of the overdraft");
+    assertSame(blocks.get(3), e.getBlock(), "the overdraft");
+    assertEquals(1, chain.getSize(), "nothing appended");
+    assertEquals(0, chain.balance("alice"), "nothing applied");
+
+    chain.appendAll(blocks.subList(0, 3).iterator());
+    assertEquals(4, chain.getSize(), "size after the batch");
+    assertEquals(source.blockAt(3).getHash(), chain.getHash(), "hash after the batch");
+    assertEquals(3, chain.balance("bob"), "bob's balance");
+    assertEquals(2, chain.balance("carol"), "carol's balance");
+    assertSame(blocks.get(1), chain.find(blocks.get(1).getHash()), "indexed");
+    assertTrue(chain.isCorrect(), "chain checks out");
+
+    BlockChain other = new BlockChain((h) -> true, source.getGenesisNonce());
+    Block tampered = blocks.get(1);
+    tampered.transactionF = new Transaction("alice", "bob", 4);
+    e = assertThrows(BatchAppendException.class, () -> other.appendAll(blocks), "tampered");
+    assertEquals(1, e.getIndex(), "index of the tampered block");
+    assertEquals(1, other.getSize(), "nothing appended");
+  } // appendAllTest()
 } // class TestBlockChain
@@ -0,0 +1,202 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our BlockTree class.
+ *
+ * @author Sal & Koast
+ */
+public class TestBlockTree {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make a block that follows another one, using a trivial validator.
+   *
+   * @param parent The previous block.
+   * @param t The transaction.
+   * @return the new block.
+   */
+  static Block after(Block parent, Transaction t) {
+    return new Block(parent.getNum() + 1, t, parent.getHash(), 0);
+  } // after(Block, Transaction)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * A longer side branch takes over, and balances follow it.
+   */
+  @Test
+  public void reorganizeTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    BlockTree tree = new BlockTree(chain);
+    Block base = after(chain.getLast(), new Transaction("", "Alpha", 100));
+    assertTrue(tree.add(base), "extend the chain");
+
+    Block a1 = after(base, new Transaction("Alpha", "Beta", 10));
+    Block a2 = after(a1, new Transaction("Alpha", "Beta", 20));
+    assertTrue(tree.add(a1), "first block of branch a");
+    assertTrue(tree.add(a2), "second block of branch a");
+    assertEquals(30, chain.balance("Beta"), "Beta on branch a");
+
+    Block b1 = after(base, new Transaction("Alpha", "Gamma", 1));
+    Block b2 = after(b1, new Transaction("Alpha", "Gamma", 2));
+    Block b3 = after(b2, new Transaction("Alpha", "Gamma", 3));
+    assertFalse(tree.add(b1), "side branch is shorter");
+    assertFalse(tree.add(b2), "side branch ties");
+    assertSame(a2, tree.getTip(), "ties keep the first branch");
+    assertTrue(tree.add(b3), "side branch overtakes");
+
+    assertSame(b3, tree.getTip(), "new tip");
+    assertEquals(5, chain.getSize(), "size after reorganization");
+    assertEquals(0, chain.balance("Beta"), "Beta after reorganization");
+    assertEquals(6, chain.balance("Gamma"), "Gamma after reorganization");
+    assertEquals(94, chain.balance("Alpha"), "Alpha after reorganization");
+    assertTrue(chain.isCorrect(), "chain is correct after reorganization");
+    assertEquals(7, tree.size(), "tree keeps every block");
+
+    Block a3 = after(a2, new Transaction("Alpha", "Beta", 1));
+    Block a4 = after(a3, new Transaction("Alpha", "Beta", 1));
+    assertFalse(tree.add(a3), "old branch ties");
+    assertTrue(tree.add(a4), "old branch overtakes again");
+    assertEquals(32, chain.balance("Beta"), "Beta back on branch a");
+    assertEquals(0, chain.balance("Gamma"), "Gamma back on branch a");
+  } // reorganizeTest()
+
+  /**
+   * A branch that fails validation leaves the chain as it was.
+   */
+  @Test
+  public void failedReorganizeTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    chain.setEnforceFunds(true);
+    BlockTree tree = new BlockTree(chain);
+    Block base = after(chain.getLast(), new Transaction("", "Alpha", 10));
+    Block a1 = after(base, new Transaction("Alpha", "Beta", 10));
+    tree.add(base);
+    tree.add(a1);
+
+    Block b1 = after(base, new Transaction("Alpha", "Gamma", 5));
+    Block b2 = after(b1, new Transaction("Alpha", "Gamma", 50));
+    assertFalse(tree.add(b1), "side branch ties");
+    assertThrows(IllegalArgumentException.class, () -> tree.add(b2), "overdraft on branch");
+    assertSame(a1, tree.getTip(), "old tip restored");
+    assertEquals(10, chain.balance("Beta"), "Beta restored");
+    assertEquals(0, chain.balance("Gamma"), "Gamma restored");
+    assertTrue(chain.isCorrect(), "chain is correct after failed reorganization");
+  } // failedReorganizeTest()
+
+  /**
+   * A branch that forks below the pruned blocks cannot take over, and leaves the chain as it
+   * was.
+   */
+  @Test
+  public void prunedReorganizeTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    BlockTree tree = new BlockTree(chain);
+    Block base = after(chain.getLast(), new Transaction("", "Alpha", 10));
+    Block a1 = after(base, new Transaction("Alpha", "Beta", 1));
+    Block a2 = after(a1, new Transaction("Alpha", "Beta", 2));
+    Block a3 = after(a2, new Transaction("Alpha", "Beta", 3));
+    tree.add(base);
+    tree.add(a1);
+    tree.add(a2);
+    tree.add(a3);
+    chain.prune(3);
+
+    Block b = base;
+    for (int i = 1; i <= 3; i++) {
+      b = after(b, new Transaction("Alpha", "Gamma", i));
+      assertFalse(tree.add(b), "side branch " + i + " is not higher");
+    } // for
+    Block b4 = after(b, new Transaction("Alpha", "Gamma", 4));
+    assertThrows(IllegalStateException.class, () -> tree.add(b4), "fork below pruned blocks");
+    assertSame(a3, tree.getTip(), "old tip restored");
+    assertEquals(5, chain.getSize(), "removed blocks restored");
+    assertEquals(6, chain.balance("Beta"), "Beta restored");
+    assertEquals(0, chain.balance("Gamma"), "Gamma untouched");
+    assertTrue(chain.isCorrect(), "chain is correct after refused reorganization");
+    assertNull(tree.find(b4.getHash()), "refused tip forgotten");
+    assertNull(tree.find(b.getHash()), "refused branch forgotten");
+    assertSame(a3, tree.find(a3.getHash()), "old branch kept");
+  } // prunedReorganizeTest()
+
+  /**
+   * Common ancestors are found on long branches.
+   */
+  @Test
+  public void commonAncestorTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    BlockTree tree = new BlockTree(chain);
+    Block fork = chain.getLast();
+    for (int i = 1; i <= 300; i++) {
+      fork = after(fork, new Transaction("", "Main", i));
+      tree.add(fork);
+    } // for
+    Block a = fork;
+    Block b = fork;
+    for (int i = 1; i <= 700; i++) {
+      a = after(a, new Transaction("", "A", i));
+      tree.add(a);
+      if (i <= 450) {
+        b = after(b, new Transaction("", "B", i));
+        tree.add(b);
+      } // if
+    } // for
+    assertSame(fork, Block.commonAncestor(a, b), "fork point");
+    assertSame(fork, Block.commonAncestor(b, a), "fork point, reversed");
+    assertSame(b.ancestorAt(10), Block.commonAncestor(b.ancestorAt(10), a), "on one branch");
+    assertSame(a, Block.commonAncestor(a, a), "same block");
+    assertEquals(300, b.ancestorAt(300).getNum(), "ancestor on a side branch");
+    assertSame(fork, b.ancestorAt(300), "side branch reaches the fork");
+  } // commonAncestorTest()
+
+  /**
+   * Common ancestors are found wherever the fork is, including just below the tip.
+   */
+  @Test
+  public void forkHeightTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    BlockTree tree = new BlockTree(chain);
+    for (int i = 1; i <= 1000; i++) {
+      tree.add(after(chain.getLast(), new Transaction("", "Main", i)));
+    } // for
+    Block tip = chain.getLast();
+    for (int height : new int[] {0, 1, 2, 63, 64, 65, 511, 512, 777, 995, 996}) {
+      Block fork = chain.blockAt(height);
+      Block side = fork;
+      for (int i = 1; i <= 3; i++) {
+        side = after(side, new Transaction("", "Side" + height, i));
+        tree.add(side);
+      } // for
+      assertSame(fork, Block.commonAncestor(side, tip), "fork at " + height);
+      assertSame(fork, Block.commonAncestor(tip, side), "fork at " + height + ", reversed");
+    } // for
+
+    BlockChain other = new BlockChain((h) -> true, 99);
+    other.append(other.mine(new Transaction("", "Other", 1)));
+    assertNull(Block.commonAncestor(other.getLast(), tip), "different genesis blocks");
+  } // forkHeightTest()
+
+  /**
+   * Blocks with unknown parents are rejected.
+   */
+  @Test
+  public void orphanTest() {
+    BlockTree tree = new BlockTree(new BlockChain((h) -> true));
+    Block orphan = new Block(1, new Transaction("", "Alpha", 1), new Hash(new byte[] {1}), 0);
+    assertThrows(IllegalArgumentException.class, () -> tree.add(orphan), "orphan");
+  } // orphanTest()
+} // class TestBlockTree
@@ -0,0 +1,58 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Some simple tests of pre-mined genesis blocks and our GenesisCache class.
+ *
+ * @author Sal & Koast
+ */
+public class TestGenesisCache {
+  /** A validator that takes a few hundred attempts. */
+  static final HashValidator ZERO = HashValidator.leadingZeroBytes(1);
+
+  /**
+   * A chain built from a known nonce matches one that mined it, and a wrong nonce is refused.
+   */
+  @Test
+  public void nonceTest() {
+    BlockChain mined = new BlockChain(ZERO);
+    BlockChain known = new BlockChain(ZERO, mined.getGenesisNonce());
+    assertEquals(mined.getHash(), known.getHash(), "same genesis block");
+    assertTrue(known.isCorrect(), "known nonce checks out");
+    assertThrows(IllegalArgumentException.class,
+        () -> new BlockChain(ZERO, mined.getGenesisNonce() + 1), "wrong nonce refused");
+  } // nonceTest()
+
+  /**
+   * The cache saves a nonce the first time and reuses it after that, and recovers from a bad
+   * file.
+   */
+  @Test
+  public void cacheTest(@TempDir Path dir) throws Exception {
+    GenesisCache cache = new GenesisCache(dir.resolve("sub"));
+    BlockChain first = cache.open(ZERO, "zeros-1");
+    Path file = dir.resolve("sub").resolve("zeros-1.genesis");
+    assertEquals(first.getGenesisNonce(), Long.parseLong(Files.readString(file).trim()),
+        "nonce saved");
+    assertEquals(first.getHash(), cache.open(ZERO, "zeros-1").getHash(), "nonce reused");
+
+    Files.writeString(file, "12345\n");
+    BlockChain again = cache.open(ZERO, "zeros-1");
+    assertEquals(first.getHash(), again.getHash(), "wrong nonce mined again");
+    assertEquals(first.getGenesisNonce(), Long.parseLong(Files.readString(file).trim()),
+        "wrong nonce replaced");
+
+    Files.writeString(file, "garbage");
+    assertEquals(first.getHash(), cache.open(ZERO, "zeros-1").getHash(), "garbage replaced");
+    assertThrows(IllegalArgumentException.class, () -> cache.open(ZERO, "../escape"),
+        "key outside the directory refused");
+  } // cacheTest(Path)
+} // class TestGenesisCache
@@ -5,7 +5,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 
 
@@ -106,5 +111,89 @@ public class TestHash {
     assertFalse(h.equals(new Hash(bytes)), 
        "a hash does not equal a hash made from its modified bytes");
   } // testReturnBytes
-  
+
+  /**
+   * Make a SHA-256 sized hash with predictable bytes.
+   *
+   * @param first The first byte.
+   * @return the hash.
+   */
+  static Hash wide(int first) {
+    byte[] bytes = new byte[32];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (first + 37 * i);
+    } // for
+    return new Hash(bytes);
+  } // wide(int)
+
+  /**
+   * 32-byte hashes behave just like other hashes.
+   */
+  @Test
+  public void testWideHashes() {
+    Hash h = wide(200);
+    byte[] bytes = h.getBytes();
+    assertEquals(32, h.length(), "length of wide hash");
+    for (int i = 0; i < bytes.length; i++) {
+      assertEquals((byte) (200 + 37 * i), h.get(i), "byte " + i + " of wide hash");
+    } // for
+    assertTrue(h.equals(new Hash(bytes)), "wide hash equals its bytes");
+    assertEquals(h.hashCode(), new Hash(bytes).hashCode(), "equal hashes have equal codes");
+    bytes[31]++;
+    assertFalse(h.equals(new Hash(bytes)), "wide hash differs in last byte");
+    assertFalse(h.equals(new Hash(Arrays.copyOf(bytes, 31))),
+        "wide hash does not equal its prefix");
+  } // testWideHashes()
+
+  /**
+   * Hex round trips through parse, in either case.
+   */
+  @Test
+  public void testParse() {
+    for (Hash h : new Hash[] {wide(0), wide(255), new Hash(new byte[] {}),
+        new Hash(new byte[] {(byte) 0xAB, 0x0C})}) {
+      assertEquals(h, Hash.parse(h.toString()), "parse " + h);
+      assertEquals(h, Hash.parse(h.toString().toLowerCase()), "parse lower " + h);
+    } // for
+    assertEquals("AB0C", Hash.parse("ab0c").toString(), "mixed case");
+    assertThrows(IllegalArgumentException.class, () -> Hash.parse("ABC"), "odd length");
+    assertThrows(IllegalArgumentException.class, () -> Hash.parse("0G"), "bad digit");
+  } // testParse()
+
+  /**
+   * Hashes compare as unsigned bytes, shorter first on a tie.
+   */
+  @Test
+  public void testCompare() {
+    assertTrue(new Hash(new byte[] {(byte) 0x80}).compareTo(new Hash(new byte[] {0x7F})) > 0,
+        "0x80 is above 0x7F");
+    assertTrue(new Hash(new byte[] {1}).compareTo(new Hash(new byte[] {1, 0})) < 0,
+        "prefix comes first");
+    assertEquals(0, wide(3).compareTo(wide(3)), "equal wide hashes");
+    byte[] bytes = wide(3).getBytes();
+    bytes[0] = (byte) 0xFF;
+    assertTrue(new Hash(bytes).compareTo(wide(3)) > 0, "high first byte wins");
+    assertTrue(wide(3).compareTo(new Hash(bytes)) < 0, "and the reverse");
+  } // testCompare()
+
+  /**
+   * Writing to a digest or buffer produces the same bytes as getBytes.
+   */
+  @Test
+  public void testWriteTo() throws Exception {
+    for (Hash h : new Hash[] {wide(9), new Hash(new byte[] {1, 2, 3})}) {
+      MessageDigest a = MessageDigest.getInstance("SHA-256");
+      MessageDigest b = MessageDigest.getInstance("SHA-256");
+      h.writeTo(a);
+      b.update(h.getBytes());
+      assertArrayEquals(b.digest(), a.digest(), "digest of " + h);
+      for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN,
+          ByteOrder.LITTLE_ENDIAN}) {
+        ByteBuffer buf = ByteBuffer.allocate(h.length()).order(order);
+        h.writeTo(buf);
+        assertArrayEquals(h.getBytes(), buf.array(), "buffer for " + h);
+      } // for
+    } // for
+  } // testWriteTo()
+
 } // class TestHash
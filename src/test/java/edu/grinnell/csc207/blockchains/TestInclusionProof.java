@@ -0,0 +1,100 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of Merkle inclusion proofs.
+ *
+ * @author Sal & Koast
+ */
+public class TestInclusionProof {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build a chain of deposits with a trivial validator.
+   *
+   * @param n The number of blocks to add after the genesis block.
+   * @return the chain.
+   */
+  static BlockChain depositChain(int n) {
+    BlockChain chain = new BlockChain((h) -> true);
+    for (int i = 1; i <= n; i++) {
+      chain.append(chain.mine(new Transaction("", "User" + i, i)));
+    } // for
+    return chain;
+  } // depositChain(int)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Every transaction in the chain has a proof that verifies.
+   */
+  @Test
+  public void everyTransactionVerifiesTest() {
+    for (int n = 0; n < 12; n++) {
+      BlockChain chain = depositChain(n);
+      MerkleTree tree = chain.merkleTree(n);
+      for (int i = 1; i <= n; i++) {
+        InclusionProof proof = chain.prove(new Transaction("", "User" + i, i), tree);
+        assertEquals(i, proof.getHeader().getNum(), "block of proof " + i + " of " + n);
+        assertTrue(proof.verify(tree.root(), (h) -> true), "proof " + i + " of " + n);
+      } // for
+    } // for
+  } // everyTransactionVerifiesTest()
+
+  /**
+   * Proofs fail when anything is changed.
+   */
+  @Test
+  public void tamperedProofsFailTest() {
+    BlockChain chain = depositChain(9);
+    MerkleTree tree = chain.merkleTree(9);
+    InclusionProof proof = chain.prove(new Transaction("", "User4", 4), tree);
+    InclusionProof forged =
+        new InclusionProof(new Transaction("", "User4", 400), proof.getHeader(), 9,
+            List.of(), List.of());
+    assertFalse(forged.verify(tree.root(), (h) -> true), "forged transaction");
+    assertFalse(proof.verify(chain.merkleTree(8).root(), (h) -> true), "wrong root");
+    assertFalse(proof.verify(tree.root(), (h) -> false), "invalid block hash");
+
+    List<Hash> siblings = new ArrayList<Hash>(proof.getSiblings());
+    InclusionProof copy = new InclusionProof(proof.getTransaction(), proof.getHeader(),
+        proof.getCheckpoint(), siblings, proof.getSides());
+    assertTrue(copy.verify(tree.root(), (h) -> true), "unchanged copy");
+    for (int i = 0; i < siblings.size(); i++) {
+      List<Hash> flipped = new ArrayList<Hash>(siblings);
+      byte[] bytes = siblings.get(i).getBytes();
+      bytes[0] ^= 1;
+      flipped.set(i, new Hash(bytes));
+      InclusionProof bent = new InclusionProof(proof.getTransaction(), proof.getHeader(),
+          proof.getCheckpoint(), flipped, proof.getSides());
+      assertFalse(bent.verify(tree.root(), (h) -> true), "flipped sibling " + i);
+    } // for
+    assertTrue(siblings.size() > 0, "the proof has siblings to flip");
+  } // tamperedProofsFailTest()
+
+  /**
+   * Proving a transaction that is not in the chain fails.
+   */
+  @Test
+  public void missingTransactionTest() {
+    BlockChain chain = depositChain(3);
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.prove(new Transaction("", "Nobody", 1)), "transaction not in the chain");
+    assertThrows(IllegalArgumentException.class,
+        () -> chain.prove(new Transaction("", "User3", 3), chain.merkleTree(2)),
+        "transaction above the checkpoint");
+  } // missingTransactionTest()
+} // class TestInclusionProof
@@ -0,0 +1,97 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.grinnell.csc207.util.Workload;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of the leaderboard queries on BlockChain.
+ *
+ * @author Sal & Koast
+ */
+public class TestLeaderboard {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * List every user in leaderboard order the slow way.
+   *
+   * @param chain The chain.
+   * @return the users, richest first, with ties in alphabetical order.
+   */
+  static List<String> slowOrder(BlockChain chain) {
+    List<String> users = new ArrayList<String>();
+    Iterator<String> it = chain.users();
+    while (it.hasNext()) {
+      users.add(it.next());
+    } // while
+    users.sort(Comparator.comparing((String u) -> -chain.balance(u))
+        .thenComparing(Comparator.naturalOrder()));
+    return users;
+  } // slowOrder(BlockChain)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * A small, hand-checked example.
+   */
+  @Test
+  public void smallTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    chain.append(chain.mine(new Transaction("", "alice", 50)));
+    chain.append(chain.mine(new Transaction("", "bob", 30)));
+    chain.append(chain.mine(new Transaction("alice", "carol", 20)));
+    // The genesis block's empty target is a user with nothing.
+    assertEquals(List.of("alice", "bob", "carol", ""), chain.topN(5), "everyone, richest first");
+    assertEquals(List.of(), chain.topN(0), "nobody");
+    assertEquals(2, chain.rank("bob"), "rank of bob");
+    assertEquals(0, chain.rank("dave"), "rank of an unknown user");
+    assertEquals(List.of("alice", "bob"), chain.usersWithBalanceBetween(30, 30),
+        "ties in alphabetical order");
+    assertEquals(List.of("carol"), chain.usersWithBalanceBetween(1, 29), "a range of balances");
+    chain.removeLast();
+    assertEquals(List.of("alice", "bob"), chain.topN(2), "top two after removal");
+    assertEquals(0, chain.rank("carol"), "carol is gone after removal");
+  } // smallTest()
+
+  /**
+   * The leaderboard agrees with sorting the users, through many appends and removals.
+   */
+  @Test
+  public void randomTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    Workload workload = new Workload(3, 200, 0.8, 0.3, 50);
+    Random random = new Random(11);
+    for (int round = 0; round < 40; round++) {
+      for (int i = 0; i < 100; i++) {
+        chain.append(chain.mine(workload.next()));
+      } // for
+      for (int i = random.nextInt(60); i > 0; i--) {
+        chain.removeLast();
+      } // for
+      List<String> expected = slowOrder(chain);
+      assertEquals(expected, chain.topN(expected.size() + 10), "everyone in round " + round);
+      assertEquals(expected.subList(0, 5), chain.topN(5), "top five in round " + round);
+      for (int i = 0; i < expected.size(); i += 7) {
+        assertEquals(i + 1, chain.rank(expected.get(i)), "rank of " + expected.get(i));
+      } // for
+      List<String> middle = new ArrayList<String>();
+      for (String user : expected) {
+        if (chain.balance(user) >= 10 && chain.balance(user) <= 100) {
+          middle.add(user);
+        } // if
+      } // for
+      assertEquals(middle, chain.usersWithBalanceBetween(10, 100),
+          "balances between 10 and 100 in round " + round);
+    } // for
+  } // randomTest()
+} // class TestLeaderboard
@@ -0,0 +1,261 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.util.Workload;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Some simple tests of our BlockLog and LogFollower classes.
+ *
+ * @author Sal & Koast
+ */
+public class TestLogFollower {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /** A validator that accepts every hash, so the tests need not mine. */
+  static final HashValidator ANY = (h) -> true;
+
+  // +---------------+-----------------------------------------------
+  // | Local classes |
+  // +---------------+
+
+  /**
+   * A stream that holds up every write while it is shut, so that a test can stall a log.
+   */
+  static class Gate extends FilterOutputStream {
+    /** Whether writes wait. */
+    volatile boolean shut = false;
+
+    /**
+     * Create a gate in front of a stream.
+     *
+     * @param sink The stream.
+     */
+    Gate(OutputStream sink) {
+      super(sink);
+    } // Gate(OutputStream)
+
+    /**
+     * Wait until the gate opens.
+     *
+     * @throws IOException if we are interrupted.
+     */
+    void pass() throws IOException {
+      while (shut) {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        } // try/catch
+      } // while
+    } // pass()
+
+    @Override
+    public void write(int b) throws IOException {
+      pass();
+      out.write(b);
+    } // write(int)
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      pass();
+      out.write(b, off, len);
+    } // write(byte[], int, int)
+  } // class Gate
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Wait until a follower's chain ends with a given hash.
+   *
+   * @param follower The follower.
+   * @param hash The hash.
+   * @return true if it got there within ten seconds.
+   */
+  static boolean caughtUp(LogFollower follower, Hash hash) throws InterruptedException {
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    while (System.nanoTime() < deadline) {
+      synchronized (follower.getChain()) {
+        if (follower.getChain().getHash().equals(hash)) {
+          return true;
+        } // if
+      } // synchronized
+      Thread.sleep(1);
+    } // while
+    return false;
+  } // caughtUp(LogFollower, Hash)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * A follower sees the blocks the leader had, and then its appends and removals.
+   */
+  @Test
+  public void followTest(@TempDir Path dir) throws Exception {
+    BlockChain leader = new BlockChain(ANY);
+    Workload work = new Workload(207, 100, 1.0, 0.25, 1000);
+    for (int i = 0; i < 500; i++) {
+      leader.append(leader.mine(work.next()));
+    } // for
+    Path file = dir.resolve("chain.log");
+    BlockLog log = new BlockLog(leader, file);
+    LogFollower follower = new LogFollower(file, ANY);
+    assertEquals(leader.getHash(), follower.getChain().getHash(), "follower starts caught up");
+    assertEquals(500, follower.getRecords(), "one record per block");
+
+    synchronized (leader) {
+      for (int i = 0; i < 200; i++) {
+        leader.append(leader.mine(work.next()));
+      } // for
+      leader.removeLast();
+      leader.removeLast();
+      leader.append(leader.mine(new Transaction("", "user0", 7)));
+    } // synchronized
+    log.close();
+    assertTrue(log.isHealthy(), "the log wrote everything");
+    assertEquals(203, follower.poll(), "appends and removals applied");
+    BlockChain copy = follower.getChain();
+    assertEquals(leader.getSize(), copy.getSize(), "same size");
+    assertEquals(leader.getHash(), copy.getHash(), "same hash");
+    assertEquals(leader.balance("user0"), copy.balance("user0"), "same balance");
+    assertTrue(copy.isCorrect(), "the copy checks out");
+    assertEquals(0, follower.poll(), "nothing more to apply");
+    follower.close();
+  } // followTest()
+
+  /**
+   * A follower in the background keeps up with a leader that keeps appending.
+   */
+  @Test
+  public void tailTest(@TempDir Path dir) throws Exception {
+    BlockChain leader = new BlockChain(ANY);
+    Path file = dir.resolve("chain.log");
+    BlockLog log = new BlockLog(leader, file);
+    LogFollower follower = new LogFollower(file, ANY);
+    follower.start();
+    Workload work = new Workload(1);
+    for (int i = 0; i < 100; i++) {
+      synchronized (leader) {
+        leader.append(leader.mine(work.next()));
+      } // synchronized
+      if (i % 25 == 0) {
+        assertTrue(caughtUp(follower, leader.getHash()), "caught up to block " + i);
+      } // if
+    } // for
+    assertTrue(caughtUp(follower, leader.getHash()), "caught up to the end");
+    follower.close();
+    log.close();
+  } // tailTest()
+
+  /**
+   * A record that is only partly written is left for later, and a damaged one is refused.
+   */
+  @Test
+  public void tornTest(@TempDir Path dir) throws Exception {
+    BlockChain leader = new BlockChain(ANY);
+    leader.append(leader.mine(new Transaction("", "alice", 5)));
+    Path file = dir.resolve("chain.log");
+    new BlockLog(leader, file).close();
+    byte[] whole = Files.readAllBytes(file);
+
+    Path torn = dir.resolve("torn.log");
+    Files.write(torn, Arrays.copyOf(whole, whole.length - 3));
+    LogFollower follower = new LogFollower(torn, ANY);
+    assertEquals(1, follower.getChain().getSize(), "partial record left for later");
+    Files.write(torn, Arrays.copyOfRange(whole, whole.length - 3, whole.length),
+        StandardOpenOption.APPEND);
+    assertEquals(1, follower.poll(), "completed record applied");
+    assertEquals(leader.getHash(), follower.getChain().getHash(), "follower caught up");
+    follower.close();
+
+    whole[whole.length - 6] ^= 1;
+    Path bad = dir.resolve("bad.log");
+    Files.write(bad, whole);
+    assertThrows(IOException.class, () -> new LogFollower(bad, ANY), "damaged record refused");
+  } // tornTest()
+
+  /**
+   * Nothing is pruned while a log is open, since the log may not have written it yet.
+   */
+  @Test
+  public void pruneTest(@TempDir Path dir) throws Exception {
+    BlockChain leader = new BlockChain(ANY);
+    for (int i = 1; i <= 10; i++) {
+      leader.append(leader.mine(new Transaction("", "alice", i)));
+    } // for
+    BlockLog log = new BlockLog(leader, dir.resolve("chain.log"));
+    assertThrows(IllegalStateException.class, () -> leader.setPruneDepth(2),
+        "no pruning depth while logging");
+    assertThrows(IllegalStateException.class, () -> leader.prune(5), "no pruning while logging");
+    leader.prune(0);
+    log.close();
+    assertTrue(log.isHealthy(), "the log wrote everything");
+    leader.setPruneDepth(2);
+    assertThrows(IllegalStateException.class,
+        () -> new BlockLog(leader, dir.resolve("pruning.log")),
+        "no logging a chain that prunes as it appends");
+    leader.setPruneDepth(-1);
+    assertThrows(IllegalStateException.class,
+        () -> new BlockLog(leader, dir.resolve("pruned.log")), "no logging pruned blocks");
+    leader.setPruneDepth(0);
+    assertEquals(11, leader.getSize(), "pruning after the log closes still works");
+  } // pruneTest()
+
+  /**
+   * A log that falls a whole event ring behind ends with a record that stops its followers, and
+   * closing it reports the failure.
+   */
+  @Test
+  public void overrunTest(@TempDir Path dir) throws Exception {
+    BlockChain leader = new BlockChain(ANY);
+    Path file = dir.resolve("chain.log");
+    Gate gate = new Gate(Files.newOutputStream(file));
+    BlockLog log = new BlockLog(leader, gate);
+    LogFollower follower = new LogFollower(file, ANY);
+    follower.start();
+
+    gate.shut = true;
+    synchronized (leader) {
+      for (int i = 0; i < BlockChain.EVENT_CAPACITY + 2 * BlockLog.BATCH; i++) {
+        leader.append(leader.mine(new Transaction("", "alice", 1)));
+      } // for
+    } // synchronized
+    gate.shut = false;
+
+    assertThrows(IOException.class, () -> log.close(), "closing reports the overrun");
+    assertFalse(log.isHealthy(), "the log is not complete");
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    while (follower.getFailure() == null && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    } // while
+    assertTrue(follower.getFailure() != null, "the follower learns the log stopped");
+    assertTrue(follower.getFailure().getMessage().contains("stopped logging"),
+        "the follower says why");
+    synchronized (follower.getChain()) {
+      assertTrue(follower.getChain().getSize() < leader.getSize(),
+          "the follower is missing blocks");
+    } // synchronized
+    assertThrows(IOException.class, () -> new LogFollower(file, ANY),
+        "a new follower refuses the log");
+    follower.close();
+  } // overrunTest()
+} // class TestLogFollower
@@ -0,0 +1,220 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.util.Workload;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Some simple tests of our SegmentArchive class and of archiving old blocks.
+ *
+ * @author Sal & Koast
+ */
+public class TestSegmentArchive {
+  /** A validator that accepts every hash, so the tests need not mine. */
+  static final HashValidator ANY = (h) -> true;
+
+  /**
+   * Build a chain from a workload.
+   *
+   * @param blocks The number of blocks after the genesis block.
+   * @return the chain.
+   */
+  static BlockChain build(int blocks) {
+    BlockChain chain = new BlockChain(ANY);
+    Workload work = new Workload(207, 200, 1.0, 0.25, 1000);
+    for (int i = 0; i < blocks; i++) {
+      chain.append(chain.mine(work.next()));
+    } // for
+    return chain;
+  } // build(int)
+
+  /**
+   * List the hashes of every block in a chain.
+   *
+   * @param chain The chain.
+   * @return the hashes, in order.
+   */
+  static List<Hash> hashes(BlockChain chain) {
+    List<Hash> result = new ArrayList<Hash>();
+    Iterator<Block> blocks = chain.blocks();
+    while (blocks.hasNext()) {
+      result.add(blocks.next().getHash());
+    } // while
+    return result;
+  } // hashes(BlockChain)
+
+  /**
+   * List every transaction in a chain.
+   *
+   * @param chain The chain.
+   * @return the transactions, in order.
+   */
+  static List<Transaction> transactions(BlockChain chain) {
+    List<Transaction> result = new ArrayList<Transaction>();
+    for (Transaction t : chain) {
+      result.add(t);
+    } // for
+    return result;
+  } // transactions(BlockChain)
+
+  /**
+   * Archiving changes nothing we can see except find, and takes far less space than the raw
+   * blocks.
+   */
+  @Test
+  public void archiveTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = build(3000);
+    List<Hash> before = hashes(chain);
+    List<Transaction> transactions = transactions(chain);
+    Block kept = chain.blockAt(2500);
+    Hash old = chain.blockAt(100).getHash();
+    int balance = chain.balance("user0");
+    MerkleTree tree = chain.merkleTree(chain.getSize() - 1);
+
+    SegmentArchive archive = new SegmentArchive(dir);
+    chain.setArchive(archive);
+    chain.archive(2000);
+    assertEquals(2000, archive.size(), "blocks archived");
+    assertEquals(3001, chain.getSize(), "size unchanged");
+    assertEquals(before, hashes(chain), "hashes unchanged");
+    assertEquals(transactions, transactions(chain), "transactions unchanged");
+    assertTrue(chain.isCorrect(), "chain still correct");
+    assertEquals(balance, chain.balance("user0"), "balance unchanged");
+    assertEquals(old, chain.blockAt(100).getHash(), "archived block by number");
+    assertEquals(transactions.get(100), chain.blockAt(100).getTransaction(),
+        "archived transaction by number");
+    assertEquals(kept, chain.blockAt(2500), "block in memory by number");
+    assertNull(chain.find(old), "archived block not found by hash");
+    assertEquals(kept, chain.find(kept.getHash()), "block in memory found by hash");
+    assertEquals(tree.root(), chain.merkleTree(chain.getSize() - 1).root(), "same Merkle root");
+    assertTrue(chain.prove(transactions.get(50)).verify(tree.root(), ANY),
+        "archived transaction proved");
+    assertEquals(before.get(0), new BlockChain(ANY, chain.getGenesisNonce()).getHash(),
+        "genesis nonce from the archive");
+
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(raw);
+    for (int i = 0; i < 2000; i++) {
+      BlockCodec.write(out, chain.blockAt(i));
+    } // for
+    assertTrue(archive.diskBytes() * 4 < raw.size(),
+        archive.diskBytes() + " bytes archived, " + raw.size() + " raw");
+
+    while (chain.getSize() > 2001) {
+      assertTrue(chain.removeLast(), "remove block " + (chain.getSize() - 1));
+    } // while
+    assertThrows(IllegalStateException.class, () -> chain.removeLast(),
+        "first block after the archive kept");
+    assertTrue(chain.isCorrect(), "chain correct after removals");
+    chain.append(chain.mine(new Transaction("", "user0", 5)));
+    assertEquals(before.subList(0, 2001), hashes(chain).subList(0, 2001), "old blocks kept");
+    assertTrue(chain.isCorrect(), "chain correct after appending");
+    archive.close();
+  } // archiveTest(Path)
+
+  /**
+   * With a depth set, appending moves blocks into the archive a segment at a time.
+   */
+  @Test
+  public void depthTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = build(10);
+    chain.setArchive(new SegmentArchive(dir));
+    chain.setArchiveDepth(4);
+    assertEquals(Block.class, chain.blockAt(6).getClass(), "archived block by number");
+    assertNull(chain.find(chain.blockAt(6).getHash()), "block 6 archived");
+    assertEquals(chain.blockAt(7), chain.find(chain.blockAt(7).getHash()), "block 7 in memory");
+    Workload work = new Workload(1);
+    for (int i = 0; i < BlockChain.SEGMENT_BLOCKS; i++) {
+      chain.append(chain.mine(work.next()));
+    } // for
+    assertNull(chain.find(chain.blockAt(chain.getSize() - 5).getHash()),
+        "fifth newest block archived");
+    assertTrue(chain.find(chain.blockAt(chain.getSize() - 4).getHash()) != null,
+        "fourth newest block in memory");
+    assertTrue(chain.isCorrect(), "chain still correct");
+  } // depthTest(Path)
+
+  /**
+   * A batch is linked in whole before its old blocks are archived.
+   */
+  @Test
+  public void batchDepthTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = build(10);
+    SegmentArchive archive = new SegmentArchive(dir);
+    chain.setArchive(archive);
+    chain.setArchiveDepth(4);
+    List<Block> batch = new ArrayList<Block>();
+    Block prev = chain.getLast();
+    Workload work = new Workload(1);
+    for (int i = 0; i < BlockChain.SEGMENT_BLOCKS + 100; i++) {
+      prev = new Block(prev.getNum() + 1, work.next(), prev.getHash(), 0);
+      batch.add(prev);
+    } // for
+    chain.appendAll(batch);
+    assertEquals(prev, chain.getLast(), "the whole batch is appended");
+    assertEquals(chain.getSize() - 4, archive.size(), "all but the last four archived");
+    assertNull(chain.find(batch.get(0).getHash()), "early blocks archived");
+    assertEquals(prev, chain.find(prev.getHash()), "late blocks in memory");
+    assertTrue(chain.isCorrect(), "chain still correct");
+    archive.close();
+  } // batchDepthTest(Path)
+
+  /**
+   * Blocks whose transactions have been pruned cannot be archived, even if the newest blocks to
+   * archive still have theirs.
+   */
+  @Test
+  public void prunedTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = build(100);
+    List<Hash> before = hashes(chain);
+    SegmentArchive archive = new SegmentArchive(dir);
+    chain.setArchive(archive);
+    chain.prune(10);
+    assertThrows(IllegalStateException.class, () -> chain.archive(50), "pruned blocks refused");
+    assertEquals(0, archive.size(), "nothing archived");
+    assertEquals(before, hashes(chain), "blocks unchanged");
+    assertTrue(chain.isCorrect(), "chain still correct");
+    archive.close();
+  } // prunedTest(Path)
+
+  /**
+   * A damaged segment makes the chain incorrect rather than quietly changing blocks.
+   */
+  @Test
+  public void corruptTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = build(500);
+    SegmentArchive archive = new SegmentArchive(dir);
+    chain.setArchive(archive);
+    chain.archive(400);
+    assertTrue(chain.isCorrect(), "chain correct before damage");
+
+    Path segment;
+    try (Stream<Path> files = Files.list(dir)) {
+      segment = files.filter((p) -> p.toString().endsWith(".seg")).findFirst().get();
+    } // try
+    try (FileChannel file = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      file.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), file.size() - 200);
+    } // try
+    assertFalse(chain.isCorrect(), "damage noticed");
+    assertEquals(chain.blockAt(450), chain.find(chain.blockAt(450).getHash()),
+        "blocks in memory unaffected");
+    archive.close();
+  } // corruptTest(Path)
+} // class TestSegmentArchive
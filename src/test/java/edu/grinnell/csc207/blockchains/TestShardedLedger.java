@@ -0,0 +1,142 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.util.Workload;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our ShardedLedger class.
+ *
+ * @author Sal & Koast
+ */
+public class TestShardedLedger {
+  /** A validator that accepts every hash, so the tests need not mine. */
+  static final HashValidator ANY = (h) -> true;
+
+  /**
+   * A sharded ledger ends up with the same balances as a single chain given the same
+   * transactions, and nothing is left in escrow.
+   */
+  @Test
+  public void oneChainTest() throws Exception {
+    BlockChain single = new BlockChain(ANY);
+    single.setEnforceFunds(true);
+    try (ShardedLedger ledger = new ShardedLedger(ANY, 4)) {
+      ledger.setEnforceFunds(true);
+      Workload work = new Workload(207, 50, 1.0, 0.25, 1000);
+      for (int i = 0; i < 2000; i++) {
+        Transaction t = work.next();
+        single.append(single.mine(t));
+        ledger.submit(t).get();
+      } // for
+      Iterator<String> users = single.users();
+      while (users.hasNext()) {
+        String user = users.next();
+        assertEquals(single.balance(user), ledger.balance(user), "balance of " + user);
+      } // while
+      assertEquals(0, ledger.escrowed(), "nothing left in escrow");
+      assertTrue(ledger.isCorrect(), "the shards check out");
+      int blocks = 0;
+      for (int i = 0; i < ledger.shards(); i++) {
+        blocks += ledger.shard(i).getSize() - 1;
+        assertTrue(ledger.shard(i).getSize() > 1, "shard " + i + " is used");
+      } // for
+      assertTrue(blocks > 2000, "transfers between shards take two blocks");
+    } // try
+  } // oneChainTest()
+
+  /**
+   * Many transactions submitted at once all land, and queries merge the shards.
+   */
+  @Test
+  public void parallelTest() throws Exception {
+    ShardedLedger ledger = new ShardedLedger(ANY, 3);
+    List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 0; i < 300; i++) {
+      futures.add(ledger.submit(new Transaction("", "user" + (i % 30), 10)));
+    } // for
+    for (int i = 0; i < 300; i++) {
+      futures.add(ledger.submit(new Transaction("user" + (i % 30), "user" + (i % 7), 1)));
+    } // for
+    ledger.flush();
+    for (CompletableFuture<Void> future : futures) {
+      assertTrue(future.isDone() && !future.isCompletedExceptionally(), "every transaction lands");
+    } // for
+    assertEquals(0, ledger.escrowed(), "nothing left in escrow");
+    long total = 0;
+    int count = 0;
+    Iterator<String> users = ledger.users();
+    while (users.hasNext()) {
+      String user = users.next();
+      assertFalse(user.equals(ShardedLedger.ESCROW), "ESCROW is not a user");
+      total += ledger.balance(user);
+      count++;
+    } // while
+    assertEquals(3000, total, "money is conserved");
+    assertEquals(31, count, "users merged across shards");
+    assertEquals(100 - 10 + 43, ledger.balance("user0"), "balance of user0");
+    ledger.close();
+    assertThrows(IllegalStateException.class,
+        () -> ledger.submit(new Transaction("", "late", 1)), "closed ledger refuses work");
+  } // parallelTest()
+
+  /**
+   * Unaffordable transfers fail without recording anything, and ESCROW is reserved.
+   */
+  @Test
+  public void refusalTest() throws Exception {
+    try (ShardedLedger ledger = new ShardedLedger(ANY, 2)) {
+      ledger.setEnforceFunds(true);
+      ledger.submit(new Transaction("", "alice", 5)).get();
+      ExecutionException e = assertThrows(ExecutionException.class,
+          () -> ledger.submit(new Transaction("alice", "bob", 6)).get(), "overdraft fails");
+      assertTrue(e.getCause() instanceof IllegalArgumentException, "overdraft is refused");
+      assertEquals(5, ledger.balance("alice"), "alice keeps the money");
+      assertEquals(0, ledger.balance("bob"), "bob gets nothing");
+      assertThrows(IllegalArgumentException.class,
+          () -> ledger.submit(new Transaction(ShardedLedger.ESCROW, "bob", 1)),
+          "ESCROW is reserved");
+      assertEquals(ledger.shardOf("alice"), ledger.shardOf("alice"), "shards are stable");
+    } // try
+  } // refusalTest()
+
+  /**
+   * A transfer whose credit cannot be handed to the target's shard is refunded to the source.
+   */
+  @Test
+  public void refundTest() throws Exception {
+    ShardedLedger ledger = new ShardedLedger(ANY, 2);
+    ledger.submit(new Transaction("", "alice", 10)).get();
+    String bob = "bob";
+    for (int i = 0; ledger.shardOf(bob) == ledger.shardOf("alice"); i++) {
+      bob = "bob" + i;
+    } // for
+    CompletableFuture<Void> transfer;
+    BlockChain source = ledger.shard(ledger.shardOf("alice"));
+    synchronized (source) {
+      // The debit waits for us, so the shards stop before it can hand off the credit.
+      transfer = ledger.submit(new Transaction("alice", bob, 4));
+      Thread.currentThread().interrupt();
+      ledger.close();
+      Thread.interrupted();
+    } // synchronized
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> transfer.get(10, TimeUnit.SECONDS), "the transfer fails");
+    assertTrue(e.getCause() instanceof RejectedExecutionException, "the credit was refused");
+    assertEquals(10, ledger.balance("alice"), "alice is refunded");
+    assertEquals(0, ledger.balance(bob), "bob gets nothing");
+    assertEquals(0, ledger.escrowed(), "nothing is left in escrow");
+    assertTrue(ledger.isCorrect(), "the shards check out");
+  } // refundTest()
+} // class TestShardedLedger
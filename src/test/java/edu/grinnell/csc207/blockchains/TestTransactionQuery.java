@@ -0,0 +1,140 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.util.Workload;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Some simple tests of BlockChain.query and our TransactionQuery class.
+ *
+ * @author Sal & Koast
+ */
+public class TestTransactionQuery {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the matching blocks by looking at every block.
+   *
+   * @param chain The chain.
+   * @param q The query.
+   * @return the hashes of the matching blocks.
+   */
+  static List<Hash> slow(BlockChain chain, TransactionQuery q) {
+    List<Hash> result = new ArrayList<Hash>();
+    Iterator<Block> blocks = chain.blocks();
+    while (blocks.hasNext()) {
+      Block blk = blocks.next();
+      if (q.matches(blk)) {
+        result.add(blk.getHash());
+      } // if
+    } // while
+    return result;
+  } // slow(BlockChain, TransactionQuery)
+
+  /**
+   * Find the matching blocks with query.
+   *
+   * @param chain The chain.
+   * @param q The query.
+   * @return the hashes of the matching blocks.
+   */
+  static List<Hash> fast(BlockChain chain, TransactionQuery q) {
+    List<Hash> result = new ArrayList<Hash>();
+    for (Block blk : chain.query(q)) {
+      result.add(blk.getHash());
+    } // for
+    return result;
+  } // fast(BlockChain, TransactionQuery)
+
+  /**
+   * Build some queries to check.
+   *
+   * @return the queries.
+   */
+  static List<TransactionQuery> queries() {
+    List<TransactionQuery> result = new ArrayList<TransactionQuery>();
+    result.add(new TransactionQuery());
+    result.add(new TransactionQuery().heights(1000, 4000).amountBetween(900, 1000));
+    result.add(new TransactionQuery().amountBetween(10000, Integer.MAX_VALUE));
+    result.add(new TransactionQuery().heights(2500, 2600).depositsOnly());
+    result.add(new TransactionQuery().heights(100, 3000).transfersOnly().amountBetween(0, 10));
+    result.add(new TransactionQuery().source("user0").amountBetween(500, 600));
+    result.add(new TransactionQuery().target("user3").heights(-5, 1_000_000));
+    result.add(new TransactionQuery().source("nobody"));
+    result.add(new TransactionQuery().heights(4000, 100));
+    result.add(new TransactionQuery().amountBetween(30, 10));
+    return result;
+  } // queries()
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Queries find exactly what a full scan finds, before and after the chain changes.
+   */
+  @Test
+  public void scanTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = new BlockChain((h) -> true);
+    Workload work = new Workload(207, 100, 1.0, 0.25, 1000);
+    for (int i = 1; i <= 5000; i++) {
+      Transaction t = (i % 997 == 0) ? new Transaction("", "whale", 50000) : work.next();
+      chain.append(chain.mine(t));
+    } // for
+    List<TransactionQuery> queries = queries();
+    for (int i = 0; i < queries.size(); i++) {
+      assertEquals(slow(chain, queries.get(i)), fast(chain, queries.get(i)), "query " + i);
+    } // for
+    assertEquals(5, chain.query(queries.get(2)).size(), "every whale deposit");
+    assertTrue(chain.query(queries.get(7)).isEmpty(), "unknown source");
+    assertTrue(chain.query(queries.get(9)).isEmpty(), "empty range of amounts");
+
+    for (int i = 0; i < 300; i++) {
+      chain.removeLast();
+    } // for
+    chain.append(chain.mine(new Transaction("", "whale", 70000)));
+    chain.setArchive(new SegmentArchive(dir));
+    chain.archive(2000);
+    chain.prune(2500);
+    for (int i = 0; i < queries.size(); i++) {
+      assertEquals(slow(chain, queries.get(i)), fast(chain, queries.get(i)),
+          "query " + i + " after changes");
+    } // for
+  } // scanTest(Path)
+
+  /**
+   * Totals use the bucket summaries but agree with adding up the blocks.
+   */
+  @Test
+  public void totalTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    Workload work = new Workload(1);
+    for (int i = 1; i <= 3000; i++) {
+      chain.append(chain.mine(work.next()));
+    } // for
+    for (int[] range : new int[][] {{0, 2999}, {5, 2047}, {1024, 2047}, {3000, 9000}}) {
+      long expected = 0;
+      for (int h = range[0]; h <= Math.min(range[1], 3000); h++) {
+        expected += chain.blockAt(h).getTransaction().getAmount();
+      } // for
+      assertEquals(expected, chain.totalAmount(range[0], range[1]),
+          "total from " + range[0] + " to " + range[1]);
+    } // for
+    chain.removeLast();
+    chain.prune(1500);
+    long expected = 0;
+    for (int h = 1500; h < chain.getSize(); h++) {
+      expected += chain.blockAt(h).getTransaction().getAmount();
+    } // for
+    assertEquals(expected, chain.totalAmount(0, chain.getSize()), "total after pruning");
+  } // totalTest()
+} // class TestTransactionQuery
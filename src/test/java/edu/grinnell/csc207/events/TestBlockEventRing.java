@@ -0,0 +1,121 @@
+package edu.grinnell.csc207.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.Hash;
+import edu.grinnell.csc207.blockchains.Transaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our BlockEventRing and Subscription classes.
+ *
+ * @author Sal & Koast
+ */
+public class TestBlockEventRing {
+  /**
+   * Subscribers see appends and removals in order, each at its own pace.
+   */
+  @Test
+  public void chainTest() {
+    BlockChain chain = new BlockChain((h) -> true);
+    Subscription fast = chain.subscribe(Subscription.Policy.LOSSY);
+    Subscription slow = chain.subscribe(Subscription.Policy.LOSSY);
+    chain.append(chain.mine(new Transaction("", "alice", 5)));
+    chain.append(chain.mine(new Transaction("alice", "bob", 2)));
+    chain.removeLast();
+
+    List<String> seen = new ArrayList<String>();
+    List<Boolean> ends = new ArrayList<Boolean>();
+    assertEquals(3, fast.poll((seq, kind, blk, end) -> {
+      seen.add(seq + " " + kind + " " + blk.getNum());
+      ends.add(end);
+    }, 10), "events for the fast subscriber");
+    assertEquals(List.of("0 APPENDED 1", "1 APPENDED 2", "2 REMOVED 2"), seen, "events in order");
+    assertEquals(List.of(false, false, true), ends, "end of batch");
+    assertEquals(0, fast.lag(), "fast subscriber caught up");
+    assertEquals(3, slow.lag(), "slow subscriber behind");
+    assertEquals(2, slow.poll((seq, kind, blk, end) -> { }, 2), "slow subscriber reads two");
+    assertEquals(1, slow.lag(), "slow subscriber one behind");
+  } // chainTest()
+
+  /**
+   * A lossy subscriber that falls behind skips to the oldest event still kept.
+   */
+  @Test
+  public void lossyTest() {
+    BlockEventRing ring = new BlockEventRing(4);
+    Subscription sub = ring.subscribe(Subscription.Policy.LOSSY);
+    Block blk = new Block(1, new Transaction("", "a", 1), new Hash(new byte[] {}), 0);
+    for (int i = 0; i < 10; i++) {
+      ring.publish(BlockEventRing.Kind.APPENDED, blk);
+    } // for
+    List<Long> seen = new ArrayList<Long>();
+    assertEquals(4, sub.poll((seq, kind, b, end) -> seen.add(seq), 100), "events still kept");
+    assertEquals(List.of(6L, 7L, 8L, 9L), seen, "the newest events");
+    assertEquals(6, sub.missed(), "events skipped");
+  } // lossyTest()
+
+  /**
+   * A disconnecting subscriber that falls behind stops receiving events.
+   */
+  @Test
+  public void disconnectTest() {
+    BlockEventRing ring = new BlockEventRing(4);
+    Subscription sub = ring.subscribe(Subscription.Policy.DISCONNECT);
+    Block blk = new Block(1, new Transaction("", "a", 1), new Hash(new byte[] {}), 0);
+    for (int i = 0; i < 5; i++) {
+      ring.publish(BlockEventRing.Kind.REMOVED, blk);
+    } // for
+    assertThrows(IllegalStateException.class, () -> sub.poll((seq, kind, b, end) -> { }, 100),
+        "poll after falling behind");
+    assertTrue(sub.isDisconnected(), "disconnected");
+    assertThrows(IllegalStateException.class, () -> sub.poll((seq, kind, b, end) -> { }, 100),
+        "poll after disconnecting");
+  } // disconnectTest()
+
+  /**
+   * A reader racing a fast publisher never sees a torn or out-of-order event.
+   */
+  @Test
+  public void concurrentTest() throws Exception {
+    int total = 2_000_000;
+    BlockEventRing ring = new BlockEventRing(256);
+    Block[] blocks = new Block[256];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = new Block(i, new Transaction("", "a", 1), new Hash(new byte[] {}), 0);
+    } // for
+    Subscription sub = ring.subscribe(Subscription.Policy.LOSSY);
+    AtomicReference<String> error = new AtomicReference<String>();
+    long[] last = {-1};
+    long[] read = {0};
+    Thread reader = new Thread(() -> {
+      while (last[0] < total - 1 && error.get() == null) {
+        sub.poll((seq, kind, blk, end) -> {
+          BlockEventRing.Kind expected =
+              (seq % 2 == 0) ? BlockEventRing.Kind.APPENDED : BlockEventRing.Kind.REMOVED;
+          if (seq <= last[0] || blk.getNum() != seq % 256 || kind != expected) {
+            error.set("bad event " + seq + " after " + last[0]);
+          } // if
+          last[0] = seq;
+          read[0]++;
+        }, 64);
+      } // while
+    });
+    reader.start();
+    for (int i = 0; i < total; i++) {
+      ring.publish((i % 2 == 0) ? BlockEventRing.Kind.APPENDED : BlockEventRing.Kind.REMOVED,
+          blocks[i % 256]);
+    } // for
+    reader.join(10000);
+    assertEquals(null, error.get(), "no torn or out-of-order events");
+    assertEquals(total - 1, last[0], "the reader saw the last event");
+    assertEquals(total, read[0] + sub.missed(), "every event read or counted as missed");
+  } // concurrentTest()
+} // class TestBlockEventRing
@@ -0,0 +1,90 @@
+package edu.grinnell.csc207.main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.SegmentArchive;
+import edu.grinnell.csc207.blockchains.Transaction;
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Some tests of the batch mode of our UI.
+ *
+ * @author Sal & Koast
+ */
+public class TestBlockChainUI {
+  /**
+   * A script runs to the end, reporting errors by line.
+   */
+  @Test
+  public void batchTest() throws Exception {
+    String script = """
+        # Set up some accounts.
+        append - Alpha 100 0
+        append Alpha Beta 30 0
+
+        balance Alpha
+        append Alpha
+        frobnicate
+        balance Beta
+        quit
+        balance Alpha
+        """;
+    StringWriter output = new StringWriter();
+    PrintWriter pen = new PrintWriter(output);
+    BlockChain chain = new BlockChain((h) -> true);
+    int failed = BlockChainUI.batch(chain, new BufferedReader(new StringReader(script)), pen);
+    assertEquals(2, failed, "two commands failed");
+    String[] lines = output.toString().split("\n");
+    assertEquals(6, lines.length, "one response per command before quit");
+    assertEquals("OK 70", lines[2], "balance of Alpha");
+    assertEquals("line 6: ERR usage: append SOURCE TARGET AMOUNT NONCE", lines[3],
+        "bad arguments");
+    assertEquals("line 7: ERR unknown command: frobnicate", lines[4], "bad command");
+    assertEquals("OK 30", lines[5], "balance of Beta");
+  } // batchTest()
+
+  /**
+   * A command that cannot read the archive fails alone, and the script goes on.
+   */
+  @Test
+  public void archiveErrorTest(@TempDir Path dir) throws Exception {
+    BlockChain chain = new BlockChain((h) -> true);
+    for (int i = 1; i <= 500; i++) {
+      chain.append(chain.mine(new Transaction("", "Alpha", 1)));
+    } // for
+    SegmentArchive archive = new SegmentArchive(dir);
+    chain.setArchive(archive);
+    chain.archive(400);
+    Path segment;
+    try (Stream<Path> files = Files.list(dir)) {
+      segment = files.filter((p) -> p.toString().endsWith(".seg")).findFirst().get();
+    } // try
+    try (FileChannel file = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      file.truncate(file.size() / 2);
+    } // try
+
+    StringWriter output = new StringWriter();
+    PrintWriter pen = new PrintWriter(output);
+    int failed = BlockChainUI.batch(chain,
+        new BufferedReader(new StringReader("blocks\nbalance Alpha\n")), pen);
+    String[] lines = output.toString().split("\n");
+    assertEquals(1, failed, "only the scan failed");
+    assertEquals(2, lines.length, "one response per command");
+    assertTrue(lines[0].startsWith("line 1: ERR "), "the scan reports the error");
+    assertEquals("OK 500", lines[1], "the script goes on");
+    archive.close();
+  } // archiveErrorTest(Path)
+} // class TestBlockChainUI
@@ -0,0 +1,42 @@
+package edu.grinnell.csc207.main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.util.Workload;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some tests of generating, saving, and loading chains.
+ *
+ * @author Sal & Koast
+ */
+public class TestGenerateChain {
+  /**
+   * A generated chain is valid when funds are enforced, and survives saving and loading.
+   */
+  @Test
+  public void saveTest() throws Exception {
+    BlockChain original = new BlockChain((h) -> true);
+    original.setEnforceFunds(true);
+    Workload w = new Workload(7, 50, 1.0, 0.2, 100);
+    for (int i = 0; i < 2000; i++) {
+      original.append(original.mine(w.next()));
+    } // for
+
+    Path file = Files.createTempFile("chain", ".bin");
+    try {
+      GenerateChain.save(GenerateChain.generate(new Workload(7, 50, 1.0, 0.2, 100), 2001,
+          (h) -> true), file);
+      BlockChain loaded = GenerateChain.load(file, (h) -> true);
+      assertEquals(original.getSize(), loaded.getSize(), "size after loading");
+      assertEquals(original.getHash(), loaded.getHash(), "hash after loading");
+      assertEquals(original.balance("user0"), loaded.balance("user0"), "balance after loading");
+    } finally {
+      Files.delete(file);
+    } // try/finally
+  } // saveTest()
+} // class TestGenerateChain
@@ -0,0 +1,82 @@
+package edu.grinnell.csc207.main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.HashValidator;
+import edu.grinnell.csc207.blockchains.Transaction;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some tests of background mining jobs.
+ *
+ * @author Sal & Koast
+ */
+public class TestMiningJob {
+  /**
+   * A job finds a nonce and appends its block.
+   */
+  @Test
+  public void completeTest() {
+    BlockChain chain = new BlockChain(HashValidator.leadingZeroBytes(1));
+    MiningJob job;
+    synchronized (chain) {
+      job = new MiningJob(1, chain, new Transaction("", "Alpha", 10));
+    } // synchronized
+    job.run();
+    assertEquals(MiningJob.Status.APPENDED, job.getStatus(), "the job finishes");
+    assertEquals(2, chain.getSize(), "the block is appended");
+    assertSame(job.getResult(), chain.getLast(), "the job's block is the new end");
+    assertEquals(job.getResult().getNonce() + 1, job.getAttempts(), "every nonce is counted");
+    assertEquals(0, job.getRetargets(), "nothing else landed");
+    assertEquals(10, chain.balance("Alpha"), "the deposit counts");
+  } // completeTest()
+
+  /**
+   * A cancelled job stops without appending anything.
+   */
+  @Test
+  public void cancelTest() {
+    boolean[] open = {true};
+    BlockChain chain = new BlockChain((h) -> open[0]);
+    open[0] = false;
+    MiningJob job;
+    synchronized (chain) {
+      job = new MiningJob(1, chain, new Transaction("", "Alpha", 10));
+    } // synchronized
+    job.cancel();
+    job.run();
+    assertEquals(MiningJob.Status.CANCELLED, job.getStatus(), "the job stops");
+    assertNull(job.getResult(), "no block was found");
+    assertEquals(MiningJob.REPORT_EVERY, job.getAttempts(), "the job stops at the first check");
+    assertEquals(1, chain.getSize(), "nothing is appended");
+  } // cancelTest()
+
+  /**
+   * A job whose block is beaten by another starts over on top of it.
+   */
+  @Test
+  public void staleTest() {
+    BlockChain chain = new BlockChain(HashValidator.leadingZeroBytes(1));
+    MiningJob first;
+    MiningJob second;
+    synchronized (chain) {
+      first = new MiningJob(1, chain, new Transaction("", "Alpha", 10));
+      second = new MiningJob(2, chain, new Transaction("", "Beta", 20));
+    } // synchronized
+    first.run();
+    second.run();
+    assertEquals(MiningJob.Status.APPENDED, first.getStatus(), "the first job wins");
+    assertEquals(MiningJob.Status.APPENDED, second.getStatus(), "the second job still lands");
+    assertEquals(1, second.getRetargets(), "the second job starts over once");
+    assertEquals(2, second.getResult().getNum(), "the second block follows the first");
+    assertSame(second.getResult(), chain.getLast(), "the second block is the new end");
+    assertEquals(3, chain.getSize(), "both blocks are appended");
+    assertEquals(20, chain.balance("Beta"), "the second deposit counts");
+    assertTrue(chain.isCorrect(), "the chain checks out");
+  } // staleTest()
+} // class TestMiningJob
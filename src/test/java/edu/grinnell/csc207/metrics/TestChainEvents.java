@@ -0,0 +1,78 @@
+package edu.grinnell.csc207.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.Transaction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our flight recorder events.
+ *
+ * @author Sal & Koast
+ */
+public class TestChainEvents {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Count the events of one type.
+   *
+   * @param events The events.
+   * @param name The name of the type.
+   * @return the number of events of that type.
+   */
+  static long count(List<RecordedEvent> events, String name) {
+    return events.stream().filter((e) -> e.getEventType().getName().equals(name)).count();
+  } // count(List<RecordedEvent>, String)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Operations on a chain show up in a recording, tagged with their heights.
+   */
+  @Test
+  public void recordTest() throws Exception {
+    BlockChain chain = new BlockChain((h) -> true);
+    Path file = Files.createTempFile("chain", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(MineEvent.class);
+      recording.enable(BlockEvent.class);
+      recording.enable(QueryEvent.class);
+      recording.start();
+      chain.append(chain.mine(new Transaction("", "alice", 5)));
+      chain.balance("alice");
+      chain.users();
+      chain.isCorrect();
+      chain.removeLast();
+      recording.stop();
+      recording.dump(file);
+    } // try
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+
+    assertEquals(1, count(events, "edu.grinnell.csc207.Mine"), "mine events");
+    assertEquals(2, count(events, "edu.grinnell.csc207.Block"), "block events");
+    assertEquals(3, count(events, "edu.grinnell.csc207.Query"), "query events");
+    for (RecordedEvent e : events) {
+      if (e.getEventType().getName().equals("edu.grinnell.csc207.Block")) {
+        assertEquals(1, e.getInt("height"), "block event height");
+      } else if (e.getEventType().getName().equals("edu.grinnell.csc207.Query")
+          && "balance".equals(e.getString("kind"))) {
+        assertEquals("alice", e.getString("user"), "balance event user");
+      } // if/else
+    } // for
+    assertTrue(events.stream().anyMatch((e) -> e.hasField("removed") && e.getBoolean("removed")),
+        "the removal is recorded");
+  } // recordTest()
+} // class TestChainEvents
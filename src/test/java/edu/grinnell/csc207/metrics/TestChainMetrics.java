@@ -0,0 +1,89 @@
+package edu.grinnell.csc207.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.Transaction;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our ChainMetrics and LatencyHistogram classes.
+ *
+ * @author Sal & Koast
+ */
+public class TestChainMetrics {
+  /**
+   * Percentiles fall in the right power-of-two bucket.
+   */
+  @Test
+  public void histogramTest() {
+    LatencyHistogram h = new LatencyHistogram();
+    for (int i = 0; i < 99; i++) {
+      h.record(100);
+    } // for
+    h.record(1_000_000);
+    assertEquals(100, h.count(), "count");
+    assertEquals(1_000_000, h.max(), "max");
+    assertEquals(127, h.percentile(50), "median");
+    assertEquals(127, h.percentile(99), "99th percentile");
+    assertEquals(1_000_000, h.percentile(100), "100th percentile");
+    assertEquals((99 * 100 + 1_000_000) / 100.0, h.mean(), 0.001, "mean");
+    h.reset();
+    assertEquals(0, h.count(), "count after reset");
+    assertEquals(0, h.max(), "max after reset");
+  } // histogramTest()
+
+  /**
+   * A chain with metrics counts what happens to it.
+   */
+  @Test
+  public void chainTest() throws Exception {
+    BlockChain chain = new BlockChain((h) -> (h.length() > 0) && (h.get(0) == 0));
+    ChainMetrics metrics = new ChainMetrics();
+    chain.setMetrics(metrics);
+    Block blk = chain.mine(new Transaction("", "alice", 10));
+    chain.append(blk);
+    assertThrows(IllegalArgumentException.class, () -> chain.append(blk), "duplicate block");
+    chain.balance("alice");
+    chain.users();
+    chain.check();
+    chain.removeLast();
+
+    assertEquals(1, metrics.getBlocksMined(), "blocks mined");
+    assertEquals(blk.getNonce() + 1, metrics.getHashesAttempted(), "hashes attempted");
+    assertEquals(1, metrics.getAppends(), "appends");
+    assertEquals(1, metrics.getValidationFailures(), "validation failures");
+    assertEquals(3, metrics.getQueries(), "queries");
+    assertEquals(1, metrics.getRemoves(), "removes");
+    Map<String, Number> snapshot = metrics.snapshot();
+    assertEquals(1L, snapshot.get("appends"), "appends in the snapshot");
+    assertTrue(snapshot.containsKey("queryP99Nanos"), "latencies in the snapshot");
+  } // chainTest()
+
+  /**
+   * The metrics are visible through JMX.
+   */
+  @Test
+  public void registerTest() throws Exception {
+    ChainMetrics metrics = new ChainMetrics();
+    metrics.recordRemove();
+    metrics.register("test");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name =
+        new ObjectName("edu.grinnell.csc207.blockchains:type=ChainMetrics,name=test");
+    try {
+      assertEquals(1L, server.getAttribute(name, "Removes"), "removes through JMX");
+      server.invoke(name, "reset", null, null);
+      assertEquals(0L, server.getAttribute(name, "Removes"), "removes after reset");
+    } finally {
+      server.unregisterMBean(name);
+    } // try/finally
+  } // registerTest()
+} // class TestChainMetrics
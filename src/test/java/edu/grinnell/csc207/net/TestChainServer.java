@@ -0,0 +1,97 @@
+package edu.grinnell.csc207.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.Transaction;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some tests of the chain server.
+ *
+ * @author Sal & Koast
+ */
+public class TestChainServer {
+  /**
+   * Pipelined requests are answered in order.
+   */
+  @Test
+  public void pipelineTest() throws Exception {
+    BlockChain chain = new BlockChain((h) -> true);
+    try (ChainServer server = new ChainServer(chain, 0)) {
+      server.start();
+      try (Socket socket = new Socket("localhost", server.getPort());
+          PrintWriter pen = new PrintWriter(socket.getOutputStream());
+          BufferedReader eyes =
+              new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+        pen.print("mine - Alpha 10\nappend - Alpha 10 0\nappend Alpha Beta 4 0\n"
+            + "balance Alpha\nusers\nbogus\nremove\nbalance Beta\ncheck\n");
+        pen.flush();
+        assertEquals("OK 0", eyes.readLine(), "mine");
+        assertTrue(eyes.readLine().startsWith("OK 1 "), "first append");
+        assertTrue(eyes.readLine().startsWith("OK 2 "), "second append");
+        assertEquals("OK 6", eyes.readLine(), "balance of Alpha");
+        assertEquals("OK 3", eyes.readLine(), "number of users");
+        for (int i = 0; i < 3; i++) {
+          eyes.readLine();
+        } // for
+        assertEquals("ERR unknown command: bogus", eyes.readLine(), "unknown command");
+        assertEquals("OK removed", eyes.readLine(), "remove");
+        assertEquals("OK 0", eyes.readLine(), "balance of Beta");
+        assertEquals("OK valid", eyes.readLine(), "check");
+      } // try
+    } // try
+  } // pipelineTest()
+
+  /**
+   * A scan that is waiting for the chain does not hold up the selector, and a request on another
+   * connection is answered once the chain is free.
+   */
+  @Test
+  public void concurrentTest() throws Exception {
+    BlockChain chain = new BlockChain((h) -> true);
+    for (int i = 0; i < 20; i++) {
+      chain.append(chain.mine(new Transaction("", "Alpha", 1)));
+    } // for
+    try (ChainServer server = new ChainServer(chain, 0)) {
+      server.start();
+      try (Socket first = new Socket("localhost", server.getPort());
+          Socket second = new Socket("localhost", server.getPort());
+          PrintWriter scan = new PrintWriter(first.getOutputStream());
+          PrintWriter ask = new PrintWriter(second.getOutputStream());
+          BufferedReader scanned =
+              new BufferedReader(new InputStreamReader(first.getInputStream()));
+          BufferedReader answered =
+              new BufferedReader(new InputStreamReader(second.getInputStream()))) {
+        synchronized (chain) {
+          scan.print("blocks\n");
+          scan.flush();
+          ask.print("balance Alpha\n");
+          ask.flush();
+          long stop = System.currentTimeMillis() + 200;
+          while (System.currentTimeMillis() < stop) {
+            for (Thread t : Thread.getAllStackTraces().keySet()) {
+              if (t.getName().equals("server-select")) {
+                assertNotEquals(Thread.State.BLOCKED, t.getState(),
+                    "the selector never waits for the chain");
+              } // if
+            } // for
+            Thread.sleep(10);
+          } // while
+        } // synchronized
+        assertEquals("OK 20", answered.readLine(), "balance of Alpha");
+        assertEquals("OK 21", scanned.readLine(), "number of blocks");
+        for (int i = 0; i < 21; i++) {
+          assertTrue(scanned.readLine().startsWith("Block " + i + " ("), "block " + i);
+        } // for
+      } // try
+    } // try
+  } // concurrentTest()
+} // class TestChainServer
@@ -0,0 +1,284 @@
+package edu.grinnell.csc207.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.grinnell.csc207.blockchains.Block;
+import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.BlockCodec;
+import edu.grinnell.csc207.blockchains.Hash;
+import edu.grinnell.csc207.blockchains.SegmentArchive;
+import edu.grinnell.csc207.blockchains.Transaction;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Some tests of syncing nodes over loopback.
+ *
+ * @author Sal & Koast
+ */
+public class TestSyncNode {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build a chain of a number of deposits.
+   *
+   * @param genesis The genesis nonce.
+   * @param n The number of blocks after the genesis block.
+   * @param who Who gets the deposits.
+   * @return the chain.
+   */
+  static BlockChain build(long genesis, int n, String who) {
+    BlockChain chain = new BlockChain((h) -> true, genesis);
+    for (int i = 1; i <= n; i++) {
+      chain.append(chain.mine(new Transaction("", who, i)));
+    } // for
+    return chain;
+  } // build(long, int, String)
+
+  /**
+   * Start a peer that claims a height, names an ancestor, and sends one batch of blocks no matter
+   * what it is asked.
+   *
+   * @param height The height the peer claims.
+   * @param ancestor The ancestor the peer names.
+   * @param blocks The blocks the peer sends, which may be empty.
+   * @return the socket the peer listens on.
+   * @throws IOException if the socket cannot be opened.
+   */
+  static ServerSocket liar(int height, int ancestor, List<Block> blocks) throws IOException {
+    ServerSocket server = new ServerSocket(0);
+    Thread thread = new Thread(() -> {
+      try (Socket socket = server.accept();
+          DataInputStream in =
+              new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+          DataOutputStream out =
+              new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+        in.readInt();
+        in.readInt();
+        Hash hash = BlockCodec.readHash(in);
+        out.writeInt(SyncNode.MAGIC);
+        out.writeInt(height);
+        BlockCodec.writeHash(out, hash);
+        out.flush();
+        for (int i = in.readInt(); i > 0; i--) {
+          BlockCodec.readHash(in);
+        } // for
+        out.writeInt(ancestor);
+        if (!blocks.isEmpty()) {
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          DataOutputStream batchOut = new DataOutputStream(bytes);
+          for (Block blk : blocks) {
+            BlockCodec.write(batchOut, blk);
+          } // for
+          out.writeInt(blocks.size());
+          out.writeInt(bytes.size());
+          bytes.writeTo(out);
+        } // if
+        out.writeInt(0);
+        out.flush();
+      } catch (IOException e) {
+        // The test will notice.
+      } // try/catch
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return server;
+  } // liar(int, int, List<Block>)
+
+  /**
+   * Start a peer that claims to be far ahead, names the genesis block as the ancestor, and then
+   * sends the header of one batch but no blocks.
+   *
+   * @param count The number of blocks the peer claims the batch holds.
+   * @param length The number of bytes the peer claims the batch holds.
+   * @return the socket the peer listens on.
+   * @throws IOException if the socket cannot be opened.
+   */
+  static ServerSocket header(int count, int length) throws IOException {
+    ServerSocket server = new ServerSocket(0);
+    Thread thread = new Thread(() -> {
+      try (Socket socket = server.accept();
+          DataInputStream in =
+              new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+          DataOutputStream out =
+              new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+        in.readInt();
+        in.readInt();
+        Hash hash = BlockCodec.readHash(in);
+        out.writeInt(SyncNode.MAGIC);
+        out.writeInt(1000);
+        BlockCodec.writeHash(out, hash);
+        out.flush();
+        for (int i = in.readInt(); i > 0; i--) {
+          BlockCodec.readHash(in);
+        } // for
+        out.writeInt(0);
+        out.writeInt(count);
+        out.writeInt(length);
+        out.flush();
+        in.read();
+      } catch (IOException e) {
+        // The test will notice.
+      } // try/catch
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return server;
+  } // header(int, int)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Three nodes converge on the highest chain.
+   */
+  @Test
+  public void convergeTest() throws Exception {
+    BlockChain a = new BlockChain((h) -> true);
+    BlockChain b = new BlockChain((h) -> true);
+    BlockChain c = new BlockChain((h) -> true);
+    for (int i = 1; i <= 5000; i++) {
+      a.append(a.mine(new Transaction("", "A" + (i % 17), i)));
+    } // for
+    for (int i = 1; i <= 100; i++) {
+      c.append(c.mine(new Transaction("", "C", i)));
+    } // for
+
+    try (SyncNode nodeA = new SyncNode(a, 0);
+        SyncNode nodeB = new SyncNode(b, 0);
+        SyncNode nodeC = new SyncNode(c, 0)) {
+      nodeA.start();
+      nodeB.start();
+      nodeC.start();
+
+      assertEquals(5000, nodeB.syncFrom("localhost", nodeA.getPort()), "B catches up");
+      assertEquals(a.getHash(), b.getHash(), "B matches A");
+      assertEquals(0, nodeA.syncFrom("localhost", nodeB.getPort()), "A is already caught up");
+
+      for (int i = 1; i <= 10; i++) {
+        a.append(a.mine(new Transaction("A1", "A2", i)));
+      } // for
+      assertEquals(10, nodeB.syncFrom("localhost", nodeA.getPort()), "B gets the new blocks");
+
+      assertEquals(5010, nodeC.syncFrom("localhost", nodeB.getPort()), "C switches branches");
+      assertEquals(a.getHash(), c.getHash(), "C matches A");
+      assertEquals(0, c.balance("C"), "C's old branch is gone");
+      assertEquals(a.balance("A2"), c.balance("A2"), "balances follow the new branch");
+      assertTrue(c.isCorrect(), "C checks out");
+    } // try
+  } // convergeTest()
+
+  /**
+   * A peer that sends too few blocks, or blocks that do not fit, leaves our chain alone.
+   */
+  @Test
+  public void restoreTest() throws Exception {
+    BlockChain ours = build(1, 10, "Ours");
+    Hash tip = ours.getHash();
+    BlockChain theirs = build(2, 20, "Theirs");
+    List<Block> foreign = new ArrayList<Block>();
+    Iterator<Block> blocks = theirs.blocks();
+    blocks.next();
+    while (blocks.hasNext()) {
+      foreign.add(blocks.next());
+    } // while
+
+    try (SyncNode node = new SyncNode(ours, 0);
+        ServerSocket empty = liar(1000, 0, List.of());
+        ServerSocket shorter = liar(1000, 2, foreign.subList(0, 5));
+        ServerSocket unlinked = liar(20, 0, foreign)) {
+      assertThrows(IOException.class, () -> node.syncFrom("localhost", empty.getLocalPort()),
+          "an empty stream fails");
+      assertEquals(tip, ours.getHash(), "an empty stream leaves the chain alone");
+      assertEquals(11, ours.getSize(), "an empty stream removes nothing");
+
+      assertThrows(IOException.class, () -> node.syncFrom("localhost", shorter.getLocalPort()),
+          "a short stream fails");
+      assertEquals(tip, ours.getHash(), "a short stream leaves the chain alone");
+      assertEquals(11, ours.getSize(), "a short stream removes nothing");
+
+      assertThrows(IOException.class, () -> node.syncFrom("localhost", unlinked.getLocalPort()),
+          "blocks from another genesis fail");
+      assertEquals(tip, ours.getHash(), "the removed blocks are put back");
+      assertEquals(11, ours.getSize(), "every removed block is put back");
+      assertEquals(55, ours.balance("Ours"), "the balances are put back");
+      assertEquals(0, ours.balance("Theirs"), "none of the bad blocks stay");
+      assertTrue(ours.isCorrect(), "the restored chain checks out");
+    } // try
+  } // restoreTest()
+
+  /**
+   * A peer that announces an impossible batch is refused before we allocate anything.
+   */
+  @Test
+  public void boundsTest() throws Exception {
+    BlockChain ours = build(1, 10, "Ours");
+    try (SyncNode node = new SyncNode(ours, 0);
+        ServerSocket huge = header(1, Integer.MAX_VALUE);
+        ServerSocket negative = header(1, -8);
+        ServerSocket many = header(SyncNode.BATCH_SIZE + 1, 100);
+        ServerSocket backwards = header(-5, 100)) {
+      assertThrows(IOException.class, () -> node.syncFrom("localhost", huge.getLocalPort()),
+          "a huge batch fails");
+      assertThrows(IOException.class, () -> node.syncFrom("localhost", negative.getLocalPort()),
+          "a negative length fails");
+      assertThrows(IOException.class, () -> node.syncFrom("localhost", many.getLocalPort()),
+          "too many blocks in a batch fails");
+      assertThrows(IOException.class, () -> node.syncFrom("localhost", backwards.getLocalPort()),
+          "a negative count fails");
+      assertEquals(11, ours.getSize(), "the chain is left alone");
+      assertTrue(ours.isCorrect(), "the chain checks out");
+    } // try
+  } // boundsTest()
+
+  /**
+   * A peer whose blocks above the common ancestor have been pruned or archived refuses to send
+   * them, and keeps serving peers it can help.
+   */
+  @Test
+  public void goneTest(@TempDir Path dir) throws Exception {
+    BlockChain pruned = build(1, 300, "X");
+    pruned.setPruneDepth(50);
+    BlockChain archived = build(1, 300, "X");
+    archived.setArchive(new SegmentArchive(dir));
+    archived.archive(250);
+    BlockChain behind = build(1, 100, "X");
+    BlockChain close = build(1, 280, "X");
+
+    try (SyncNode prunedNode = new SyncNode(pruned, 0);
+        SyncNode archivedNode = new SyncNode(archived, 0);
+        SyncNode behindNode = new SyncNode(behind, 0);
+        SyncNode closeNode = new SyncNode(close, 0)) {
+      prunedNode.start();
+      archivedNode.start();
+      assertThrows(IOException.class,
+          () -> behindNode.syncFrom("localhost", prunedNode.getPort()),
+          "pruned blocks cannot be sent");
+      assertThrows(IOException.class,
+          () -> behindNode.syncFrom("localhost", archivedNode.getPort()),
+          "archived blocks cannot be sent");
+      assertEquals(101, behind.getSize(), "the chain is left alone");
+      assertEquals(20, closeNode.syncFrom("localhost", prunedNode.getPort()),
+          "the pruned peer still serves unpruned blocks");
+      assertEquals(pruned.getHash(), close.getHash(), "the close chain catches up");
+    } // try
+  } // goneTest(Path)
+} // class TestSyncNode
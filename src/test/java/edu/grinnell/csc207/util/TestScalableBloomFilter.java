@@ -0,0 +1,47 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our ScalableBloomFilter class.
+ *
+ * @author Sal & Koast
+ */
+public class TestScalableBloomFilter {
+  /**
+   * A filter that grows far past its first stage has no false negatives and keeps its
+   * false-positive rate.
+   */
+  @Test
+  public void growTest() {
+    ScalableBloomFilter filter = new ScalableBloomFilter(0.01, 100);
+    int n = 200000;
+    for (int i = 0; i < n; i++) {
+      filter.add("member" + i);
+    } // for
+    for (int i = 0; i < n; i++) {
+      assertTrue(filter.mightContain("member" + i), "member " + i);
+    } // for
+    int wrong = 0;
+    for (int i = 0; i < n; i++) {
+      if (filter.mightContain("other" + i)) {
+        wrong++;
+      } // if
+    } // for
+    assertTrue(wrong < 0.01 * n, "false positives: " + wrong);
+    // Roughly 10 bits per member at 1%, plus the slack of the last stage.
+    assertTrue(filter.memory() < 4L * n, "memory: " + filter.memory());
+  } // growTest()
+
+  /**
+   * Rates outside (0, 1) are rejected.
+   */
+  @Test
+  public void rateTest() {
+    assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(0, 10), "rate 0");
+    assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(1, 10), "rate 1");
+  } // rateTest()
+} // class TestScalableBloomFilter
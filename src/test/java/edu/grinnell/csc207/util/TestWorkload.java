@@ -0,0 +1,54 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our Workload class.
+ *
+ * @author Sal & Koast
+ */
+public class TestWorkload {
+  /**
+   * The same seed gives the same transactions, and a different seed does not.
+   */
+  @Test
+  public void seedTest() {
+    Workload a = new Workload(42);
+    Workload b = new Workload(42);
+    Workload c = new Workload(43);
+    StringBuilder fromA = new StringBuilder();
+    StringBuilder fromB = new StringBuilder();
+    StringBuilder fromC = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      fromA.append(a.next());
+      fromB.append(b.next());
+      fromC.append(c.next());
+    } // for
+    assertEquals(fromA.toString(), fromB.toString(), "same seed, same transactions");
+    assertNotEquals(fromA.toString(), fromC.toString(), "different seed, different transactions");
+  } // seedTest()
+
+  /**
+   * Popular users appear far more often than unpopular ones.
+   */
+  @Test
+  public void skewTest() {
+    Workload w = new Workload(1, 1000, 1.0, 1.0, 10);
+    int first = 0;
+    int last = 0;
+    for (int i = 0; i < 100000; i++) {
+      String target = w.next().getTarget();
+      if (target.equals("user0")) {
+        first++;
+      } else if (target.equals("user999")) {
+        last++;
+      } // if/else
+    } // for
+    assertTrue(first > 100 * Math.max(1, last),
+        "user0 appeared " + first + " times, user999 " + last + " times");
+  } // skewTest()
+} // class TestWorkload